@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+
+package com.example.jmeter.modbus;
+
+import org.apache.jmeter.util.JMeterUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Circuit breaker shared by all threads talking to the same host:port.
+ * After {@code modbus.breaker.failureThreshold} consecutive device failures (default 5, 0 disables the breaker)
+ * requests fail fast for {@code modbus.breaker.openMs} (default 5000 ms). After that a single trial request is let
+ * through; its success closes the breaker and its failure keeps it open for another period.
+ */
+public class ModbusCircuitBreaker {
+    private static final Logger log = LogManager.getLogger(ModbusCircuitBreaker.class);
+
+    private static final int FAILURE_THRESHOLD = JMeterUtils.getPropDefault("modbus.breaker.failureThreshold", 5);
+    private static final long OPEN_NANOS = TimeUnit.MILLISECONDS.toNanos(JMeterUtils.getPropDefault("modbus.breaker.openMs", 5000L));
+
+    private static final Map<String, ModbusCircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+    private final String key;
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    // 0 while closed, otherwise the System.nanoTime() at which the next trial request is allowed
+    private final AtomicLong openUntil = new AtomicLong();
+
+    private ModbusCircuitBreaker(String key) {
+        this.key = key;
+    }
+
+    public static ModbusCircuitBreaker forEndpoint(String host, int port) {
+        return breakers.computeIfAbsent(host + ":" + port, ModbusCircuitBreaker::new);
+    }
+
+    /**
+     * Resets every breaker. Called when the test ends.
+     */
+    public static void resetAll() {
+        breakers.clear();
+    }
+
+    /**
+     * Throws if the breaker is open. Once the open period has passed, exactly one caller is let through as a trial.
+     */
+    public void acquire() throws ModbusCircuitOpenException {
+        long until = openUntil.get();
+        if (until == 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (now - until < 0 || !openUntil.compareAndSet(until, now + OPEN_NANOS)) {
+            throw new ModbusCircuitOpenException("Circuit breaker for " + key + " is open after " + consecutiveFailures.get() + " consecutive failures");
+        }
+        log.info("Circuit breaker for {} is half-open, sending a trial request", key);
+    }
+
+    public void recordSuccess() {
+        if (consecutiveFailures.get() != 0) {
+            consecutiveFailures.set(0);
+        }
+        if (openUntil.get() != 0) {
+            openUntil.set(0);
+            log.info("Circuit breaker for {} closed", key);
+        }
+    }
+
+    public void recordFailure() {
+        int failures = consecutiveFailures.incrementAndGet();
+        if (FAILURE_THRESHOLD > 0 && failures >= FAILURE_THRESHOLD) {
+            if (openUntil.getAndSet(System.nanoTime() + OPEN_NANOS) == 0) {
+                log.warn("Circuit breaker for {} opened after {} consecutive failures", key, failures);
+            }
+        }
+    }
+
+    public boolean isOpen() {
+        return openUntil.get() != 0;
+    }
+}
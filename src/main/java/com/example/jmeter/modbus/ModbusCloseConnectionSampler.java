@@ -42,9 +42,15 @@ public class ModbusCloseConnectionSampler extends AbstractSampler {
         result.sampleStart();
 
         try {
-            TCPMasterConnection connection = (TCPMasterConnection) JMeterContextService.getContext().getVariables().getObject("modbusConnection");
-            if (connection != null && connection.isConnected()) {
-                connection.close();
+            Object existing = JMeterContextService.getContext().getVariables().getObject("modbusConnection");
+            if (existing instanceof ModbusUdpChannel && ((ModbusUdpChannel) existing).isConnected()) {
+                ((ModbusUdpChannel) existing).close();
+                JMeterContextService.getContext().getVariables().remove("modbusConnection");
+                log.info("Closed Modbus UDP channel.");
+                result.setResponseMessage("Closed Modbus UDP channel.");
+                result.setSuccessful(true);
+            } else if (existing instanceof TCPMasterConnection && ((TCPMasterConnection) existing).isConnected()) {
+                ((TCPMasterConnection) existing).close();
                 JMeterContextService.getContext().getVariables().remove("modbusConnection");
                 log.info("Closed Modbus connection.");
                 result.setResponseMessage("Closed Modbus connection.");
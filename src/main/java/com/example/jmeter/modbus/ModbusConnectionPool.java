@@ -0,0 +1,295 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+package com.example.jmeter.modbus;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import com.ghgande.j2mod.modbus.net.TCPMasterConnection;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded pool of Modbus TCP connections shared by all JMeter threads, keyed by host:port and transport.
+ * Waiting borrowers are served in FIFO order and idle connections are closed after the idle timeout. Every open
+ * reserves one of the maxSize slots first, so pre-filling and borrowing together never open more than maxSize sockets.
+ */
+public class ModbusConnectionPool {
+    private static final Logger log = LogManager.getLogger(ModbusConnectionPool.class);
+
+    private static final Map<String, ModbusConnectionPool> pools = new ConcurrentHashMap<>();
+
+    private final String host;
+    private final int port;
+    private final int timeout;
+    private final String transport;
+    private final int minSize;
+    private final int maxSize;
+    private final long idleTimeout;
+
+    private final Semaphore permits;
+    private final ConcurrentLinkedDeque<PooledConnection> idle = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger openCount = new AtomicInteger();
+    private final AtomicBoolean filling = new AtomicBoolean();
+
+    private volatile ModbusTimerWheel.Timeout evictionTimeout;
+    private volatile boolean closed;
+
+    private ModbusConnectionPool(String host, int port, int timeout, String transport, int minSize, int maxSize, long idleTimeout) {
+        this.host = host;
+        this.port = port;
+        this.timeout = timeout;
+        this.transport = transport;
+        this.maxSize = Math.max(1, maxSize);
+        this.minSize = Math.max(0, Math.min(minSize, this.maxSize));
+        this.idleTimeout = idleTimeout;
+        this.permits = new Semaphore(this.maxSize, true);
+    }
+
+    /**
+     * Returns the pool for host:port and transport, creating it on first use. The sizing of the first caller wins.
+     */
+    public static ModbusConnectionPool getPool(String host, int port, int timeout, String transport, int minSize, int maxSize, long idleTimeout) {
+        String key = host + ":" + port + "/" + transport;
+        ModbusConnectionPool pool = pools.get(key);
+        if (pool == null) {
+            pool = pools.computeIfAbsent(key, k -> {
+                ModbusConnectionPool created = new ModbusConnectionPool(host, port, timeout, transport, minSize, maxSize, idleTimeout);
+                created.start();
+                return created;
+            });
+        }
+        return pool;
+    }
+
+    /**
+     * Closes every pooled connection. Called when the test ends.
+     */
+    public static void closeAll() {
+        for (ModbusConnectionPool pool : pools.values()) {
+            pool.close();
+        }
+        pools.clear();
+    }
+
+    private void start() {
+        log.info("Created Modbus connection pool for {}:{} (min={}, max={}, idleTimeout={} ms)", host, port, minSize, maxSize, idleTimeout);
+        fillToMinSize();
+        scheduleEviction();
+    }
+
+    private void scheduleEviction() {
+        if (idleTimeout > 0 && !closed) {
+            long period = Math.max(idleTimeout / 2, 100);
+            evictionTimeout = ModbusTimerWheel.getInstance().schedule(this::evictIdle, period, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void fillToMinSize() {
+        // Connecting blocks inside j2mod, so it runs on its own platform thread rather than the timer wheel thread
+        if (!closed && openCount.get() < minSize && filling.compareAndSet(false, true)) {
+            ModbusThreads.newPlatformThread("modbus-pool-fill-" + host + ":" + port, () -> {
+                try {
+                    ensureMinIdle();
+                } finally {
+                    filling.set(false);
+                }
+            }).start();
+        }
+    }
+
+    /**
+     * Borrows a connected connection, waiting up to waitMillis for one to become available.
+     */
+    public TCPMasterConnection borrow(long waitMillis) throws Exception {
+        if (closed) {
+            throw new IllegalStateException("Modbus connection pool for " + host + ":" + port + " is closed.");
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitMillis);
+        if (!permits.tryAcquire(waitMillis, TimeUnit.MILLISECONDS)) {
+            throw timeout(waitMillis);
+        }
+        try {
+            while (true) {
+                PooledConnection pooled;
+                while ((pooled = idle.pollFirst()) != null) {
+                    if (pooled.connection.isConnected()) {
+                        return pooled.connection;
+                    }
+                    discard(pooled.connection);
+                }
+                if (reserve(maxSize)) {
+                    return open();
+                }
+                // All slots are open but this permit is free, so a connection is about to be offered to the idle deque
+                if (System.nanoTime() - deadline > 0) {
+                    throw timeout(waitMillis);
+                }
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+            }
+        } catch (Exception ex) {
+            permits.release();
+            throw ex;
+        }
+    }
+
+    /**
+     * Returns a healthy connection to the pool.
+     */
+    public void release(TCPMasterConnection connection) {
+        if (closed || !connection.isConnected()) {
+            discard(connection);
+        } else {
+            idle.offerFirst(new PooledConnection(connection, System.currentTimeMillis()));
+        }
+        permits.release();
+    }
+
+    /**
+     * Closes a connection that failed during use instead of returning it to the pool.
+     */
+    public void invalidate(TCPMasterConnection connection) {
+        discard(connection);
+        permits.release();
+    }
+
+    public int getOpenCount() {
+        return openCount.get();
+    }
+
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    private TimeoutException timeout(long waitMillis) {
+        return new TimeoutException("Timed out after " + waitMillis + " ms waiting for a pooled connection to " + host + ":" + port);
+    }
+
+    /**
+     * Takes one of the open connection slots if fewer than limit are in use.
+     */
+    private boolean reserve(int limit) {
+        while (true) {
+            int open = openCount.get();
+            if (open >= limit) {
+                return false;
+            }
+            if (openCount.compareAndSet(open, open + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Connects a new connection in a slot taken by {@link #reserve}, giving the slot back if connecting fails.
+     */
+    private TCPMasterConnection open() throws Exception {
+        try {
+            TCPMasterConnection connection = ModbusTransports.newConnection(host, port, timeout, transport);
+            connection.connect();
+            log.debug("Opened pooled connection to {}:{} ({} open)", host, port, openCount.get());
+            return connection;
+        } catch (Exception ex) {
+            openCount.decrementAndGet();
+            throw ex;
+        }
+    }
+
+    private void discard(TCPMasterConnection connection) {
+        try {
+            connection.close();
+        } catch (Exception ex) {
+            log.debug("Error closing pooled connection", ex);
+        }
+        openCount.decrementAndGet();
+    }
+
+    private void evictIdle() {
+        if (closed) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        Iterator<PooledConnection> it = idle.descendingIterator();
+        while (it.hasNext() && openCount.get() > minSize) {
+            PooledConnection pooled = it.next();
+            if (now - pooled.lastUsed >= idleTimeout && idle.removeFirstOccurrence(pooled)) {
+                discard(pooled.connection);
+                log.debug("Evicted idle connection to {}:{}", host, port);
+            }
+        }
+        fillToMinSize();
+        scheduleEviction();
+    }
+
+    /**
+     * Opens idle connections up to minSize. Each open holds a permit like a borrower; when every permit is taken the
+     * borrowers open what they need themselves.
+     */
+    private void ensureMinIdle() {
+        while (!closed && permits.tryAcquire()) {
+            try {
+                if (!reserve(minSize)) {
+                    return;
+                }
+                idle.offerLast(new PooledConnection(open(), System.currentTimeMillis()));
+            } catch (Exception ex) {
+                log.warn("Could not pre-open pooled connection to {}:{}: {}", host, port, ex.getMessage());
+                return;
+            } finally {
+                permits.release();
+            }
+        }
+    }
+
+    private void close() {
+        closed = true;
+        if (evictionTimeout != null) {
+            evictionTimeout.cancel();
+        }
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            discard(pooled.connection);
+        }
+        log.info("Closed Modbus connection pool for {}:{}", host, port);
+    }
+
+    private static final class PooledConnection {
+        private final TCPMasterConnection connection;
+        private final long lastUsed;
+
+        private PooledConnection(TCPMasterConnection connection, long lastUsed) {
+            this.connection = connection;
+            this.lastUsed = lastUsed;
+        }
+    }
+}
@@ -27,27 +27,28 @@ package com.example.jmeter.modbus;
 import org.apache.jmeter.samplers.AbstractSampler;
 import org.apache.jmeter.samplers.Entry;
 import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.testelement.TestStateListener;
 import org.apache.jmeter.threads.JMeterContextService;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import java.net.InetAddress;
 import java.net.UnknownHostException;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import com.ghgande.j2mod.modbus.net.TCPMasterConnection;
 
-public class ModbusConnectionSampler extends AbstractSampler {
+public class ModbusConnectionSampler extends AbstractSampler implements TestStateListener {
     private static final Logger log = LogManager.getLogger(ModbusConnectionSampler.class);
 
     public static final String IP_ADDRESS = "ModbusConnectionSampler.ipAddress";
     public static final String PORT = "ModbusConnectionSampler.port";
     public static final String TIMEOUT = "ModbusConnectionSampler.timeout";
     public static final String KEEP_ALIVE = "ModbusConnectionSampler.keepAlive";
+    public static final String TRANSPORT = "ModbusConnectionSampler.transport";
+    public static final String RETRANSMIT_TIMEOUT = "ModbusConnectionSampler.retransmitTimeout";
     public static final String RETRY_COUNT = "ModbusConnectionSampler.retryCount";
-
-    private ScheduledExecutorService scheduler;
+    public static final String RETRY_POLICY = "ModbusConnectionSampler.retryPolicy";
+    public static final String RETRY_DELAY = "ModbusConnectionSampler.retryDelay";
+    public static final String RETRY_MAX_DELAY = "ModbusConnectionSampler.retryMaxDelay";
 
     public void setIpAddress(String ipAddress) {
         setProperty(IP_ADDRESS, ipAddress);
@@ -81,6 +82,22 @@ public class ModbusConnectionSampler extends AbstractSampler {
         return getPropertyAsString(KEEP_ALIVE);
     }
 
+    public void setTransport(String transport) {
+        setProperty(TRANSPORT, transport);
+    }
+
+    public String getTransport() {
+        return getPropertyAsString(TRANSPORT, ModbusTransports.TRANSPORT_TCP);
+    }
+
+    public void setRetransmitTimeout(String retransmitTimeout) {
+        setProperty(RETRANSMIT_TIMEOUT, retransmitTimeout);
+    }
+
+    public String getRetransmitTimeout() {
+        return getPropertyAsString(RETRANSMIT_TIMEOUT, "0");
+    }
+
     public void setRetryCount(String retryCount) {
         setProperty(RETRY_COUNT, retryCount);
     }
@@ -89,37 +106,79 @@ public class ModbusConnectionSampler extends AbstractSampler {
         return getPropertyAsString(RETRY_COUNT);
     }
 
+    public void setRetryPolicy(String retryPolicy) {
+        setProperty(RETRY_POLICY, retryPolicy);
+    }
+
+    public String getRetryPolicy() {
+        return getPropertyAsString(RETRY_POLICY, ModbusRetryPolicy.FIXED);
+    }
+
+    public void setRetryDelay(String retryDelay) {
+        setProperty(RETRY_DELAY, retryDelay);
+    }
+
+    public String getRetryDelay() {
+        return getPropertyAsString(RETRY_DELAY, "1000");
+    }
+
+    public void setRetryMaxDelay(String retryMaxDelay) {
+        setProperty(RETRY_MAX_DELAY, retryMaxDelay);
+    }
+
+    public String getRetryMaxDelay() {
+        return getPropertyAsString(RETRY_MAX_DELAY, "1000");
+    }
+
     @Override
     public SampleResult sample(Entry e) {
         SampleResult result = new SampleResult();
         result.setSampleLabel(getName());
+        String ipAddress = getIpAddress();
+
+        // Resolve outside the measured time; an unknown host is reported by the first attempt below
+        long resolveStart = System.nanoTime();
+        try {
+            ModbusEndpointCache.resolve(ipAddress);
+        } catch (UnknownHostException ex) {
+            log.debug("Could not resolve {}: {}", ipAddress, ex.getMessage());
+        }
+        long resolveNanos = System.nanoTime() - resolveStart;
         result.sampleStart();
+        ModbusSampleMetrics.addMillis(result, "Resolve-ms", resolveNanos);
 
-        String ipAddress = getIpAddress();
         int port = Integer.parseInt(getPort());
         int timeout = Integer.parseInt(getTimeout());
         int keepAlive = Integer.parseInt(getKeepAlive());
+        String transport = getTransport();
         int retryCount = Integer.parseInt(getRetryCount());
+        if (ModbusTransports.isUdp(transport)) {
+            openUdpChannel(result, ipAddress, port, timeout, keepAlive);
+            return result;
+        }
 
         TCPMasterConnection connection = null;
         boolean success = false;
+        ModbusTimerWheel timerWheel = ModbusTimerWheel.getInstance();
 
         try {
-            scheduler = Executors.newScheduledThreadPool(1);
-
+            ModbusRetryPolicy retryPolicy = ModbusRetryPolicy.create(getRetryPolicy(),
+                    Long.parseLong(getRetryDelay()), Long.parseLong(getRetryMaxDelay()));
+            ModbusCircuitBreaker breaker = ModbusCircuitBreaker.forEndpoint(ipAddress, port);
+            long retryDelay = 0;
             for (int attempt = 0; attempt <= retryCount; attempt++) {
                 try {
-                    InetAddress address = InetAddress.getByName(ipAddress);
-                    connection = new TCPMasterConnection(address);
-                    connection.setPort(port);
-                    connection.setTimeout(timeout);
+                    breaker.acquire();
+                    connection = ModbusTransports.newConnection(ipAddress, port, timeout, transport);
                     connection.connect();
 
                     if (connection.isConnected()) {
                         log.info("Connected to Modbus server at {}:{}", ipAddress, port);
                         result.setResponseMessage("Connected to Modbus server.");
+                        ModbusTransports.recordHandshake(result, connection);
                         result.setSuccessful(true);
                         success = true;
+                        breaker.recordSuccess();
                         break; // Exit the retry loop if connection is successful
                     }
                 } catch (UnknownHostException ex) {
@@ -129,12 +188,26 @@ public class ModbusConnectionSampler extends AbstractSampler {
                     break;
                 } catch (Exception ex) {
                     log.error("Attempt {} failed: ", attempt + 1, ex);
-                    if (attempt >= retryCount) {
+                    if (ModbusErrorClassifier.isDeviceFailure(ex)) {
+                        breaker.recordFailure();
+                    }
+                    if (attempt >= retryCount || !ModbusErrorClassifier.isRetryable(ex)) {
                         result.setResponseMessage("Error connecting to Modbus server after retries: " + ex.getMessage());
                         result.setSuccessful(false);
-                    } else {
-                        // Schedule the next retry
-                        scheduler.schedule(() -> log.info("Retrying connection to Modbus server..."), 1, TimeUnit.SECONDS);
+                        break;
+                    }
+                    retryDelay = retryPolicy.nextDelay(attempt + 1, retryDelay);
+                    log.info("Retrying connection to Modbus server in {} ms...", retryDelay);
+                    if (retryDelay > 0) {
+                        try {
+                            TimeUnit.MILLISECONDS.sleep(retryDelay);
+                        } catch (InterruptedException interrupted) {
+                            // The test is stopping; give up and keep the interrupt for JMeter
+                            Thread.currentThread().interrupt();
+                            result.setResponseMessage("Interrupted while waiting to retry: " + ex.getMessage());
+                            result.setSuccessful(false);
+                            break;
+                        }
                     }
                 }
             }
@@ -145,10 +218,11 @@ public class ModbusConnectionSampler extends AbstractSampler {
                 if (keepAlive > 0) {
                     log.info("Connection will be kept alive for {} milliseconds", keepAlive);
                     TCPMasterConnection finalConnection = connection;
-                    scheduler.schedule(() -> {
+                    timerWheel.schedule(() -> {
                         finalConnection.close();
                         log.info("Connection closed after {} milliseconds", keepAlive);
                     }, keepAlive, TimeUnit.MILLISECONDS);
+                    ModbusSampleMetrics.add(result, "Pending-Timers", timerWheel.getPendingTimers());
                 }
             } else {
                 if (connection != null && connection.isConnected()) {
@@ -165,11 +239,59 @@ public class ModbusConnectionSampler extends AbstractSampler {
                 connection.close();
                 log.info("Connection closed.");
             }
-            if (scheduler != null && !scheduler.isShutdown()) {
-                scheduler.shutdown();
-            }
         }
 
         return result;
     }
+
+    /**
+     * Opens this thread's own UDP channel. There is no handshake to measure or retry; opening only binds a local port.
+     */
+    private void openUdpChannel(SampleResult result, String ipAddress, int port, int timeout, int keepAlive) {
+        try {
+            // A channel from the previous iteration would otherwise keep its socket and reader thread until the test ends
+            Object previous = JMeterContextService.getContext().getVariables().getObject("modbusConnection");
+            if (previous instanceof ModbusUdpChannel) {
+                ((ModbusUdpChannel) previous).close();
+                JMeterContextService.getContext().getVariables().remove("modbusConnection");
+            }
+            ModbusUdpChannel channel = ModbusUdpChannel.open(ipAddress, port, timeout, Integer.parseInt(getRetransmitTimeout()));
+            if (keepAlive < 0) {
+                channel.close();
+            } else {
+                JMeterContextService.getContext().getVariables().putObject("modbusConnection", channel);
+                if (keepAlive > 0) {
+                    ModbusTimerWheel.getInstance().schedule(channel::close, keepAlive, TimeUnit.MILLISECONDS);
+                }
+            }
+            result.setResponseMessage("Opened Modbus UDP channel.");
+            result.setSuccessful(true);
+        } catch (Exception ex) {
+            log.error("Error opening Modbus UDP channel", ex);
+            result.setResponseMessage("Error opening Modbus UDP channel: " + ex.getMessage());
+            result.setSuccessful(false);
+        } finally {
+            result.sampleEnd();
+        }
+    }
+
+    @Override
+    public void testStarted() {
+        // Channels are opened by the samples themselves
+    }
+
+    @Override
+    public void testStarted(String host) {
+        testStarted();
+    }
+
+    @Override
+    public void testEnded() {
+        ModbusUdpChannel.closeAll();
+    }
+
+    @Override
+    public void testEnded(String host) {
+        testEnded();
+    }
 }
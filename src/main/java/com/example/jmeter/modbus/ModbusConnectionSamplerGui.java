@@ -44,7 +44,12 @@ public class ModbusConnectionSamplerGui extends AbstractSamplerGui {
     private JTextField portField;
     private JTextField timeoutField;
     private JTextField keepAliveField;
+    private JComboBox<String> transportDropdown;
+    private JTextField retransmitTimeoutField;
     private JTextField retryCountField;
+    private JComboBox<String> retryPolicyDropdown;
+    private JTextField retryDelayField;
+    private JTextField retryMaxDelayField;
 
     public ModbusConnectionSamplerGui() {
         init();
@@ -61,7 +66,14 @@ public class ModbusConnectionSamplerGui extends AbstractSamplerGui {
         portField = new JTextField(5);
         timeoutField = new JTextField(10);
         keepAliveField = new JTextField(5);
+        transportDropdown = new JComboBox<>(new String[]{ModbusTransports.TRANSPORT_TCP, ModbusTransports.TRANSPORT_RTU_OVER_TCP, ModbusTransports.TRANSPORT_UDP, ModbusTransports.TRANSPORT_TLS});
+        retransmitTimeoutField = new JTextField(5);
+        retransmitTimeoutField.setEnabled(false);
+        transportDropdown.addActionListener(e -> retransmitTimeoutField.setEnabled(ModbusTransports.isUdp((String) transportDropdown.getSelectedItem())));
         retryCountField = new JTextField(5);
+        retryPolicyDropdown = new JComboBox<>(new String[]{ModbusRetryPolicy.FIXED, ModbusRetryPolicy.EXPONENTIAL, ModbusRetryPolicy.DECORRELATED_JITTER});
+        retryDelayField = new JTextField(5);
+        retryMaxDelayField = new JTextField(5);
 
         JPanel fieldsPanel = new JPanel(new GridBagLayout());
         GridBagConstraints gbc = new GridBagConstraints();
@@ -99,6 +111,36 @@ public class ModbusConnectionSamplerGui extends AbstractSamplerGui {
         gbc.gridx = 1;
         fieldsPanel.add(retryCountField, gbc);
 
+        gbc.gridx = 0;
+        gbc.gridy = 5;
+        fieldsPanel.add(new JLabel("Retry Policy:"), gbc);
+        gbc.gridx = 1;
+        fieldsPanel.add(retryPolicyDropdown, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 6;
+        fieldsPanel.add(new JLabel("Retry Delay (ms):"), gbc);
+        gbc.gridx = 1;
+        fieldsPanel.add(retryDelayField, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 7;
+        fieldsPanel.add(new JLabel("Max Retry Delay (ms):"), gbc);
+        gbc.gridx = 1;
+        fieldsPanel.add(retryMaxDelayField, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 8;
+        fieldsPanel.add(new JLabel("Transport:"), gbc);
+        gbc.gridx = 1;
+        fieldsPanel.add(transportDropdown, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 9;
+        fieldsPanel.add(new JLabel("Retransmit Timeout (ms):"), gbc);
+        gbc.gridx = 1;
+        fieldsPanel.add(retransmitTimeoutField, gbc);
+
         mainPanel.add(fieldsPanel);
         add(mainPanel, BorderLayout.CENTER);
 
@@ -155,6 +197,11 @@ public class ModbusConnectionSamplerGui extends AbstractSamplerGui {
             sampler.setTimeout(timeoutField.getText().isEmpty() ? "2000" : timeoutField.getText());
             sampler.setKeepAlive(keepAliveField.getText().isEmpty() ? "0" : keepAliveField.getText());
             sampler.setRetryCount(retryCountField.getText().isEmpty() ? "3" : retryCountField.getText());
+            sampler.setRetryPolicy(retryPolicyDropdown.getSelectedItem() != null ? retryPolicyDropdown.getSelectedItem().toString() : ModbusRetryPolicy.FIXED);
+            sampler.setRetryDelay(retryDelayField.getText().isEmpty() ? "1000" : retryDelayField.getText());
+            sampler.setRetryMaxDelay(retryMaxDelayField.getText().isEmpty() ? "1000" : retryMaxDelayField.getText());
+            sampler.setTransport(transportDropdown.getSelectedItem() != null ? transportDropdown.getSelectedItem().toString() : ModbusTransports.TRANSPORT_TCP);
+            sampler.setRetransmitTimeout(retransmitTimeoutField.getText().isEmpty() ? "0" : retransmitTimeoutField.getText());
         }
         super.configureTestElement(element);
     }
@@ -169,6 +216,11 @@ public class ModbusConnectionSamplerGui extends AbstractSamplerGui {
             timeoutField.setText(sampler.getTimeout());
             keepAliveField.setText(sampler.getKeepAlive());
             retryCountField.setText(sampler.getRetryCount());
+            retryPolicyDropdown.setSelectedItem(sampler.getRetryPolicy());
+            retryDelayField.setText(sampler.getRetryDelay());
+            retryMaxDelayField.setText(sampler.getRetryMaxDelay());
+            transportDropdown.setSelectedItem(sampler.getTransport());
+            retransmitTimeoutField.setText(sampler.getRetransmitTimeout());
         }
     }
 
@@ -180,5 +232,10 @@ public class ModbusConnectionSamplerGui extends AbstractSamplerGui {
         timeoutField.setText("");
         keepAliveField.setText("");
         retryCountField.setText("");
+        retryPolicyDropdown.setSelectedIndex(0);
+        retryDelayField.setText("");
+        retryMaxDelayField.setText("");
+        transportDropdown.setSelectedIndex(0);
+        retransmitTimeoutField.setText("");
     }
 }
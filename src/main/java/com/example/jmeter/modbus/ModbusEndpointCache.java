@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+
+package com.example.jmeter.modbus;
+
+import org.apache.jmeter.util.JMeterUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caches host name lookups for all threads so that name resolution stays out of the measured Modbus time.
+ * Entries live for the JMeter property {@code modbus.dns.ttlMs} (default 60000 ms, 0 disables caching).
+ * Failed lookups are not cached.
+ */
+public final class ModbusEndpointCache {
+    private static final Logger log = LogManager.getLogger(ModbusEndpointCache.class);
+
+    private static final long TTL_NANOS = TimeUnit.MILLISECONDS.toNanos(JMeterUtils.getPropDefault("modbus.dns.ttlMs", 60000L));
+
+    private static final Map<String, Entry> cache = new ConcurrentHashMap<>();
+
+    private ModbusEndpointCache() {
+    }
+
+    public static InetAddress resolve(String host) throws UnknownHostException {
+        long now = System.nanoTime();
+        Entry entry = cache.get(host);
+        if (entry != null && now - entry.resolvedAt < TTL_NANOS) {
+            return entry.address;
+        }
+        InetAddress address = InetAddress.getByName(host);
+        if (TTL_NANOS > 0) {
+            cache.put(host, new Entry(address, now));
+        }
+        log.debug("Resolved {} to {}", host, address);
+        return address;
+    }
+
+    public static void clear() {
+        cache.clear();
+    }
+
+    private static final class Entry {
+        private final InetAddress address;
+        private final long resolvedAt;
+
+        private Entry(InetAddress address, long resolvedAt) {
+            this.address = address;
+            this.resolvedAt = resolvedAt;
+        }
+    }
+}
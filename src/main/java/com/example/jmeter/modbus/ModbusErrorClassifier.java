@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+
+package com.example.jmeter.modbus;
+
+import com.ghgande.j2mod.modbus.Modbus;
+import com.ghgande.j2mod.modbus.ModbusSlaveException;
+
+import java.net.UnknownHostException;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Decides whether a failed Modbus transaction is worth retrying and whether it says anything about the device's health.
+ */
+public final class ModbusErrorClassifier {
+    private static final int GATEWAY_PATH_UNAVAILABLE = 10;
+
+    private ModbusErrorClassifier() {
+    }
+
+    /**
+     * Returns false for failures that will repeat on every attempt, such as illegal address or value exceptions
+     * and invalid sampler settings.
+     */
+    public static boolean isRetryable(Exception ex) {
+        if (ex instanceof ModbusSlaveException) {
+            int type = ((ModbusSlaveException) ex).getType();
+            return type == Modbus.SLAVE_DEVICE_FAILURE
+                    || type == Modbus.SLAVE_BUSY_EXCEPTION
+                    || type == GATEWAY_PATH_UNAVAILABLE
+                    || type == Modbus.GATEWAY_TARGET_NO_RESPONSE;
+        }
+        return !(ex instanceof ModbusCircuitOpenException
+                || ex instanceof UnknownHostException
+                || ex instanceof IllegalArgumentException
+                || ex instanceof IllegalStateException);
+    }
+
+    /**
+     * Returns true if the failure means the device could not be reached and should count against its circuit breaker.
+     * Exception responses prove the device is up, except for gateway errors about the device behind the gateway.
+     */
+    public static boolean isDeviceFailure(Exception ex) {
+        if (ex instanceof ModbusSlaveException) {
+            int type = ((ModbusSlaveException) ex).getType();
+            return type == GATEWAY_PATH_UNAVAILABLE || type == Modbus.GATEWAY_TARGET_NO_RESPONSE;
+        }
+        // Waiting for a free pooled connection is local congestion, not a device problem
+        return isRetryable(ex) && !(ex instanceof TimeoutException);
+    }
+}
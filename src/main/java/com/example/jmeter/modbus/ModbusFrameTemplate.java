@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+
+package com.example.jmeter.modbus;
+
+import com.ghgande.j2mod.modbus.io.BytesOutputStream;
+import com.ghgande.j2mod.modbus.msg.ModbusRequest;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A request together with its pre-encoded MBAP frame. The frame is encoded once, on first use by a client that
+ * writes to the socket itself, and afterwards only the transaction identifier is patched in when it is copied
+ * into the connection's write buffer. Templates are built by the compiled sampler plans, so a plan with constant
+ * settings sends every sample without encoding or allocating a frame. Only the pipelined, NIO and UDP clients use
+ * the frame; blocking connections send {@link #getRequest()} through j2mod, which encodes it on every send.
+ */
+public final class ModbusFrameTemplate {
+    private final ModbusRequest request;
+    private byte[] frame;
+
+    public ModbusFrameTemplate(ModbusRequest request) {
+        this.request = request;
+    }
+
+    /**
+     * The j2mod request, used by blocking connections. Each thread owns its templates, so the request is reused.
+     */
+    public ModbusRequest getRequest() {
+        return request;
+    }
+
+    public int getFunctionCode() {
+        return request.getFunctionCode();
+    }
+
+    /**
+     * Copies the frame into dest with the given transaction identifier and returns the frame length.
+     */
+    public int copyTo(byte[] dest, int transactionId) {
+        byte[] encoded = frame();
+        System.arraycopy(encoded, 0, dest, 0, encoded.length);
+        dest[0] = (byte) (transactionId >> 8);
+        dest[1] = (byte) transactionId;
+        return encoded.length;
+    }
+
+    /**
+     * Puts the frame into dest at its current position with the given transaction identifier.
+     */
+    public void writeTo(ByteBuffer dest, int transactionId) {
+        int start = dest.position();
+        dest.put(frame());
+        dest.put(start, (byte) (transactionId >> 8));
+        dest.put(start + 1, (byte) transactionId);
+    }
+
+    private byte[] frame() {
+        byte[] encoded = frame;
+        if (encoded == null) {
+            try {
+                request.setTransactionID(0);
+                BytesOutputStream out = new BytesOutputStream(ModbusFrames.MAX_FRAME_LENGTH * 2);
+                request.writeTo(out);
+                encoded = out.toByteArray();
+            } catch (IOException ex) {
+                throw new IllegalArgumentException("Could not encode " + request.getClass().getSimpleName(), ex);
+            }
+            if (encoded.length > ModbusFrames.MAX_FRAME_LENGTH) {
+                throw new IllegalArgumentException("Request of " + encoded.length + " bytes exceeds the Modbus TCP frame limit of "
+                        + ModbusFrames.MAX_FRAME_LENGTH + " bytes");
+            }
+            frame = encoded;
+        }
+        return encoded;
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+package com.example.jmeter.modbus;
+
+import com.ghgande.j2mod.modbus.ModbusException;
+import com.ghgande.j2mod.modbus.ModbusSlaveException;
+import com.ghgande.j2mod.modbus.io.BytesOutputStream;
+import com.ghgande.j2mod.modbus.msg.ExceptionResponse;
+import com.ghgande.j2mod.modbus.msg.ModbusRequest;
+import com.ghgande.j2mod.modbus.msg.ModbusResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+
+/**
+ * MBAP framing helpers for the clients that talk to the socket directly instead of going through j2mod transactions.
+ */
+public final class ModbusFrames {
+
+    public static final int MBAP_HEADER_LENGTH = 7;
+    public static final int MAX_FRAME_LENGTH = 260;
+
+    private ModbusFrames() {
+    }
+
+    /**
+     * Serialises a request with its MBAP header, using the given transaction identifier.
+     */
+    public static byte[] encode(ModbusRequest request, int transactionId) throws IOException {
+        request.setTransactionID(transactionId);
+        BytesOutputStream out = new BytesOutputStream(MAX_FRAME_LENGTH);
+        request.writeTo(out);
+        return out.toByteArray();
+    }
+
+    public static int transactionId(byte[] header) {
+        return ((header[0] & 0xFF) << 8) | (header[1] & 0xFF);
+    }
+
+    /**
+     * Returns the number of bytes that follow the 7 byte MBAP header (function code and data).
+     */
+    public static int bodyLength(byte[] header) throws IOException {
+        int length = ((header[4] & 0xFF) << 8) | (header[5] & 0xFF);
+        if (length < 2 || length + 6 > MAX_FRAME_LENGTH) {
+            throw new IOException("Invalid MBAP length field: " + length);
+        }
+        return length - 1;
+    }
+
+    /**
+     * Decodes a complete MBAP frame into a j2mod response.
+     */
+    public static ModbusResponse decode(byte[] frame, int length) throws IOException {
+        int functionCode = frame[MBAP_HEADER_LENGTH] & 0xFF;
+        ModbusResponse response = ModbusResponse.createModbusResponse(functionCode);
+        response.readFrom(new DataInputStream(new ByteArrayInputStream(frame, 0, length)));
+        return response;
+    }
+
+    /**
+     * Turns an exception response into the same exception j2mod transactions throw.
+     */
+    public static ModbusResponse checkResponse(ModbusResponse response) throws ModbusException {
+        if (response instanceof ExceptionResponse) {
+            throw new ModbusSlaveException(((ExceptionResponse) response).getExceptionCode());
+        }
+        return response;
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+
+package com.example.jmeter.modbus;
+
+import org.apache.jmeter.util.JMeterUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Non-blocking Modbus TCP client engine. A small, fixed set of selector threads performs all socket I/O
+ * for every {@link ModbusNioSession}; sampler threads only hand requests over and wait for their completion.
+ * The number of selector threads is read from the JMeter property {@code modbus.nio.selectors}.
+ */
+public class ModbusNioEngine {
+    private static final Logger log = LogManager.getLogger(ModbusNioEngine.class);
+
+    private static final ReentrantLock startLock = new ReentrantLock();
+    private static volatile ModbusNioEngine instance;
+
+    private final SelectorLoop[] loops;
+    private final AtomicInteger nextLoop = new AtomicInteger();
+    private final Set<ModbusNioSession> sessions = ConcurrentHashMap.newKeySet();
+
+    private ModbusNioEngine(int selectorCount) throws IOException {
+        loops = new SelectorLoop[selectorCount];
+        for (int i = 0; i < selectorCount; i++) {
+            loops[i] = new SelectorLoop("modbus-nio-selector-" + i);
+            loops[i].start();
+        }
+        log.info("Started Modbus NIO engine with {} selector threads", selectorCount);
+    }
+
+    public static ModbusNioEngine getInstance() throws IOException {
+        ModbusNioEngine engine = instance;
+        if (engine == null) {
+            startLock.lock();
+            try {
+                engine = instance;
+                if (engine == null) {
+                    int defaultCount = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+                    engine = new ModbusNioEngine(JMeterUtils.getPropDefault("modbus.nio.selectors", defaultCount));
+                    instance = engine;
+                }
+            } finally {
+                startLock.unlock();
+            }
+        }
+        return engine;
+    }
+
+    /**
+     * Closes every open session. The selector threads stay alive for the next test run.
+     */
+    public static void closeAllSessions() {
+        ModbusNioEngine engine = instance;
+        if (engine != null) {
+            for (ModbusNioSession session : engine.sessions) {
+                session.close();
+            }
+        }
+    }
+
+    /**
+     * Opens a new session and waits up to timeout milliseconds for the TCP connection to be established.
+     */
+    public ModbusNioSession openSession(String host, int port, int timeout) throws Exception {
+        SelectorLoop loop = loops[Math.floorMod(nextLoop.getAndIncrement(), loops.length)];
+        SocketChannel channel = SocketChannel.open();
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        ModbusNioSession session = new ModbusNioSession(this, loop, channel, host + ":" + port);
+        sessions.add(session);
+        try {
+            channel.connect(new InetSocketAddress(ModbusEndpointCache.resolve(host), port));
+            loop.execute(() -> session.register(loop.selector));
+            session.awaitConnected(timeout);
+        } catch (Exception ex) {
+            session.close();
+            throw ex;
+        }
+        return session;
+    }
+
+    void sessionClosed(ModbusNioSession session) {
+        sessions.remove(session);
+    }
+
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    static final class SelectorLoop implements Runnable {
+        private final Selector selector;
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private final Thread thread;
+
+        SelectorLoop(String name) throws IOException {
+            this.selector = Selector.open();
+            this.thread = new Thread(this, name);
+            thread.setDaemon(true);
+        }
+
+        void start() {
+            thread.start();
+        }
+
+        void execute(Runnable task) {
+            tasks.add(task);
+            if (Thread.currentThread() != thread) {
+                selector.wakeup();
+            }
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                try {
+                    selector.select();
+                    Runnable task;
+                    while ((task = tasks.poll()) != null) {
+                        task.run();
+                    }
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        // A task above may have closed the session after its key was selected
+                        if (key.isValid()) {
+                            ((ModbusNioSession) key.attachment()).handle(key);
+                        }
+                    }
+                } catch (Exception ex) {
+                    log.error("Unexpected error in Modbus NIO selector loop", ex);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,296 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+
+package com.example.jmeter.modbus;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import com.ghgande.j2mod.modbus.ModbusIOException;
+import com.ghgande.j2mod.modbus.msg.ModbusRequest;
+import com.ghgande.j2mod.modbus.msg.ModbusResponse;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One non-blocking Modbus TCP connection driven by a {@link ModbusNioEngine} selector thread.
+ * Reads and writes go through direct buffers owned by the session and reused for every frame.
+ */
+public class ModbusNioSession {
+    private static final Logger log = LogManager.getLogger(ModbusNioSession.class);
+
+    private static final int READ_BUFFER_SIZE = 4096;
+
+    private final ModbusNioEngine engine;
+    private final ModbusNioEngine.SelectorLoop loop;
+    private final SocketChannel channel;
+    private final String key;
+
+    // Only touched by the selector thread; the Buffer casts below keep the calls binary compatible with Java 8
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+    private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(ModbusFrames.MAX_FRAME_LENGTH);
+    private final byte[] frame = new byte[ModbusFrames.MAX_FRAME_LENGTH];
+    private SelectionKey selectionKey;
+
+    private final Queue<PendingRequest> outbound = new ConcurrentLinkedQueue<>();
+    private final Map<Integer, CompletableFuture<ModbusResponse>> pending = new ConcurrentHashMap<>();
+    private final CompletableFuture<Void> connected = new CompletableFuture<>();
+    private final AtomicInteger nextTransactionId = new AtomicInteger();
+    private final AtomicLong unmatchedResponses = new AtomicLong();
+
+    private volatile boolean closed;
+
+    ModbusNioSession(ModbusNioEngine engine, ModbusNioEngine.SelectorLoop loop, SocketChannel channel, String key) {
+        this.engine = engine;
+        this.loop = loop;
+        this.channel = channel;
+        this.key = key;
+        ((Buffer) writeBuffer).limit(0);
+    }
+
+    public boolean isOpen() {
+        return !closed;
+    }
+
+    public boolean isConnectedTo(String host, int port) {
+        return !closed && key.equals(host + ":" + port);
+    }
+
+    public long getUnmatchedResponses() {
+        return unmatchedResponses.get();
+    }
+
+    /**
+     * Hands the request to the selector thread and waits up to timeout milliseconds for the matching response.
+     */
+    public ModbusResponse execute(ModbusRequest request, int timeout) throws Exception {
+        return execute(new ModbusFrameTemplate(request), timeout);
+    }
+
+    /**
+     * Sends a pre-encoded request. The selector thread copies it straight into the direct write buffer.
+     */
+    public ModbusResponse execute(ModbusFrameTemplate request, int timeout) throws Exception {
+        if (closed) {
+            throw new ModbusIOException("NIO session to %s is closed", key);
+        }
+        PendingRequest future = new PendingRequest(request);
+        int transactionId;
+        do {
+            transactionId = nextTransactionId.incrementAndGet() & 0xFFFF;
+        } while (pending.putIfAbsent(transactionId, future) != null);
+        future.transactionId = transactionId;
+        try {
+            outbound.add(future);
+            loop.execute(this::flushQuietly);
+
+            ModbusResponse response;
+            try {
+                response = future.get(timeout, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException ex) {
+                throw new ModbusIOException("No response for transaction %d from %s within %d ms", transactionId, key, timeout);
+            } catch (ExecutionException ex) {
+                throw ex.getCause() instanceof Exception ? (Exception) ex.getCause() : ex;
+            }
+            if ((response.getFunctionCode() & 0x7F) != request.getFunctionCode()) {
+                throw new ModbusIOException("Transaction %d answered with function code %d, expected %d",
+                        transactionId, response.getFunctionCode(), request.getFunctionCode());
+            }
+            return ModbusFrames.checkResponse(response);
+        } finally {
+            pending.remove(transactionId, future);
+        }
+    }
+
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        engine.sessionClosed(this);
+        try {
+            channel.close();
+        } catch (IOException ex) {
+            log.debug("Error closing NIO session to {}", key, ex);
+        }
+        ClosedChannelException cause = new ClosedChannelException();
+        connected.completeExceptionally(cause);
+        for (CompletableFuture<ModbusResponse> future : pending.values()) {
+            future.completeExceptionally(cause);
+        }
+    }
+
+    void awaitConnected(int timeout) throws Exception {
+        try {
+            connected.get(timeout, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException ex) {
+            throw new ModbusIOException("Timed out connecting to %s after %d ms", key, timeout);
+        } catch (ExecutionException ex) {
+            throw ex.getCause() instanceof Exception ? (Exception) ex.getCause() : ex;
+        }
+    }
+
+    void register(Selector selector) {
+        try {
+            if (channel.isConnected()) {
+                selectionKey = channel.register(selector, SelectionKey.OP_READ, this);
+                connected.complete(null);
+            } else {
+                selectionKey = channel.register(selector, SelectionKey.OP_CONNECT, this);
+            }
+        } catch (IOException ex) {
+            fail(ex);
+        }
+    }
+
+    void handle(SelectionKey key) {
+        try {
+            if (key.isConnectable()) {
+                channel.finishConnect();
+                key.interestOps(SelectionKey.OP_READ);
+                connected.complete(null);
+            }
+            if (key.isValid() && key.isReadable()) {
+                read();
+            }
+            if (key.isValid() && key.isWritable()) {
+                flush();
+            }
+        } catch (IOException ex) {
+            fail(ex);
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (IOException ex) {
+            fail(ex);
+        }
+    }
+
+    private void flush() throws IOException {
+        if (closed || selectionKey == null) {
+            return;
+        }
+        while (true) {
+            if (!writeBuffer.hasRemaining()) {
+                PendingRequest next = outbound.poll();
+                if (next == null) {
+                    if ((selectionKey.interestOps() & SelectionKey.OP_WRITE) != 0) {
+                        selectionKey.interestOps(SelectionKey.OP_READ);
+                    }
+                    return;
+                }
+                ((Buffer) writeBuffer).clear();
+                try {
+                    next.template.writeTo(writeBuffer, next.transactionId);
+                } catch (RuntimeException ex) {
+                    ((Buffer) writeBuffer).limit(0);
+                    next.completeExceptionally(ex);
+                    continue;
+                }
+                ((Buffer) writeBuffer).flip();
+            }
+            channel.write(writeBuffer);
+            if (writeBuffer.hasRemaining()) {
+                // Socket send buffer is full, continue once the selector reports it writable
+                selectionKey.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                return;
+            }
+        }
+    }
+
+    private void read() throws IOException {
+        if (channel.read(readBuffer) < 0) {
+            throw new EOFException("Connection closed by " + key);
+        }
+        ((Buffer) readBuffer).flip();
+        while (readBuffer.remaining() >= ModbusFrames.MBAP_HEADER_LENGTH) {
+            int start = readBuffer.position();
+            int length = readBuffer.getShort(start + 4) & 0xFFFF;
+            if (length < 2 || length + 6 > ModbusFrames.MAX_FRAME_LENGTH) {
+                throw new IOException("Invalid MBAP length field: " + length);
+            }
+            int frameLength = length + 6;
+            if (readBuffer.remaining() < frameLength) {
+                break;
+            }
+            readBuffer.get(frame, 0, frameLength);
+            dispatch(frameLength);
+        }
+        readBuffer.compact();
+    }
+
+    private void dispatch(int frameLength) {
+        int transactionId = ModbusFrames.transactionId(frame);
+        CompletableFuture<ModbusResponse> future = pending.remove(transactionId);
+        if (future == null) {
+            unmatchedResponses.incrementAndGet();
+            log.debug("Discarding unmatched response for transaction {} from {}", transactionId, key);
+            return;
+        }
+        try {
+            future.complete(ModbusFrames.decode(frame, frameLength));
+        } catch (IOException ex) {
+            future.completeExceptionally(ex);
+        }
+    }
+
+    private void fail(IOException cause) {
+        log.warn("NIO session to {} failed: {}", key, cause.getMessage());
+        connected.completeExceptionally(cause);
+        for (CompletableFuture<ModbusResponse> future : pending.values()) {
+            future.completeExceptionally(cause);
+        }
+        close();
+    }
+
+    private static final class PendingRequest extends CompletableFuture<ModbusResponse> {
+        private final ModbusFrameTemplate template;
+        // Written before the request is queued, read by the selector thread after taking it from the queue
+        private int transactionId;
+
+        private PendingRequest(ModbusFrameTemplate template) {
+            this.template = template;
+        }
+    }
+}
@@ -0,0 +1,318 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+
+package com.example.jmeter.modbus;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import com.ghgande.j2mod.modbus.ModbusIOException;
+import com.ghgande.j2mod.modbus.msg.ModbusRequest;
+import com.ghgande.j2mod.modbus.msg.ModbusResponse;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Modbus TCP connection that keeps several requests in flight at once and matches the responses
+ * to their requests by MBAP transaction identifier. One connection per host:port is shared by all threads.
+ */
+public class ModbusPipelinedConnection {
+    private static final Logger log = LogManager.getLogger(ModbusPipelinedConnection.class);
+
+    public static final int MAX_DEPTH = 256;
+
+    private static final Map<String, ModbusPipelinedConnection> connections = new ConcurrentHashMap<>();
+    private static final ReentrantLock connectLock = new ReentrantLock();
+
+    private final String key;
+    private final Socket socket;
+    private final OutputStream out;
+    private final DataInputStream in;
+    private final Semaphore slots;
+    private final Map<Integer, PendingTransaction> pending = new ConcurrentHashMap<>();
+    private final ReentrantLock writeLock = new ReentrantLock();
+    // Guarded by writeLock
+    private final byte[] writeFrame = new byte[ModbusFrames.MAX_FRAME_LENGTH];
+    private final AtomicInteger nextTransactionId = new AtomicInteger();
+    private final AtomicLong lostResponses = new AtomicLong();
+    private final AtomicLong unmatchedResponses = new AtomicLong();
+
+    private volatile boolean closed;
+
+    private ModbusPipelinedConnection(String key, String host, int port, int timeout, int depth) throws IOException {
+        this.key = key;
+        this.slots = new Semaphore(Math.max(1, Math.min(depth, MAX_DEPTH)), true);
+        this.socket = new Socket();
+        socket.setTcpNoDelay(true);
+        socket.connect(new InetSocketAddress(ModbusEndpointCache.resolve(host), port), timeout);
+        this.out = socket.getOutputStream();
+        this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+
+        ModbusThreads.newThread("modbus-pipeline-" + key, this::readLoop).start();
+        log.info("Opened pipelined Modbus connection to {} with depth {}", key, slots.availablePermits());
+    }
+
+    /**
+     * Returns the shared pipelined connection for host:port, reconnecting if the previous one failed.
+     */
+    public static ModbusPipelinedConnection getConnection(String host, int port, int timeout, int depth) throws IOException {
+        String key = host + ":" + port;
+        ModbusPipelinedConnection connection = connections.get(key);
+        if (connection != null && connection.isConnected()) {
+            return connection;
+        }
+        // A lock rather than ConcurrentHashMap.compute, which would hold a monitor while connecting
+        connectLock.lock();
+        try {
+            connection = connections.get(key);
+            if (connection == null || !connection.isConnected()) {
+                connection = new ModbusPipelinedConnection(key, host, port, timeout, depth);
+                connections.put(key, connection);
+            }
+            return connection;
+        } finally {
+            connectLock.unlock();
+        }
+    }
+
+    public static void closeAll() {
+        for (ModbusPipelinedConnection connection : connections.values()) {
+            connection.fail(new IOException("Pipelined connection closed at test end"));
+        }
+        connections.clear();
+    }
+
+    public boolean isConnected() {
+        return !closed;
+    }
+
+    public long getLostResponses() {
+        return lostResponses.get();
+    }
+
+    /**
+     * Responses that matched no waiting request since the previous call. They arrive after their own sample gave up,
+     * so each is reported once, by whichever sample on the connection asks next.
+     */
+    public long takeUnmatchedResponses() {
+        return unmatchedResponses.getAndSet(0);
+    }
+
+    /**
+     * Sends the request and waits for the response carrying the same transaction identifier.
+     */
+    public ModbusResponse execute(ModbusRequest request, int timeout, Stats stats) throws Exception {
+        return execute(new ModbusFrameTemplate(request), timeout, stats);
+    }
+
+    /**
+     * Sends a pre-encoded request, copying it into the connection's write buffer with a fresh transaction identifier.
+     */
+    public ModbusResponse execute(ModbusFrameTemplate request, int timeout, Stats stats) throws Exception {
+        long waitStart = System.nanoTime();
+        if (!slots.tryAcquire(timeout, TimeUnit.MILLISECONDS)) {
+            throw new ModbusIOException("No pipeline slot became free on %s within %d ms", key, timeout);
+        }
+        stats.slotWaitNanos += System.nanoTime() - waitStart;
+        PendingTransaction transaction = null;
+        try {
+            if (closed) {
+                throw new ModbusIOException("Pipelined connection to %s is closed", key);
+            }
+            transaction = register();
+            stats.maxInFlight = Math.max(stats.maxInFlight, pending.size());
+            writeLock.lock();
+            try {
+                int length = request.copyTo(writeFrame, transaction.transactionId);
+                out.write(writeFrame, 0, length);
+                out.flush();
+            } catch (IOException ex) {
+                fail(ex);
+                throw ex;
+            } finally {
+                writeLock.unlock();
+            }
+
+            ModbusResponse response;
+            try {
+                response = transaction.future.get(timeout, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException ex) {
+                lostResponses.incrementAndGet();
+                stats.lostTransactions++;
+                throw new ModbusIOException("No response for transaction %d from %s within %d ms", transaction.transactionId, key, timeout);
+            } catch (ExecutionException ex) {
+                throw ex.getCause() instanceof Exception ? (Exception) ex.getCause() : ex;
+            }
+            stats.matchNanos += System.nanoTime() - transaction.receivedNanos;
+            stats.transactions++;
+
+            if ((response.getFunctionCode() & 0x7F) != request.getFunctionCode()) {
+                throw new ModbusIOException("Transaction %d answered with function code %d, expected %d",
+                        transaction.transactionId, response.getFunctionCode(), request.getFunctionCode());
+            }
+            return ModbusFrames.checkResponse(response);
+        } finally {
+            if (transaction != null) {
+                pending.remove(transaction.transactionId, transaction);
+            }
+            slots.release();
+        }
+    }
+
+    private PendingTransaction register() {
+        PendingTransaction transaction = new PendingTransaction();
+        int transactionId;
+        do {
+            transactionId = nextTransactionId.incrementAndGet() & 0xFFFF;
+        } while (pending.putIfAbsent(transactionId, transaction) != null);
+        transaction.transactionId = transactionId;
+        return transaction;
+    }
+
+    private void readLoop() {
+        byte[] frame = new byte[ModbusFrames.MAX_FRAME_LENGTH];
+        try {
+            while (!closed) {
+                in.readFully(frame, 0, ModbusFrames.MBAP_HEADER_LENGTH);
+                int bodyLength = ModbusFrames.bodyLength(frame);
+                in.readFully(frame, ModbusFrames.MBAP_HEADER_LENGTH, bodyLength);
+                int transactionId = ModbusFrames.transactionId(frame);
+                PendingTransaction transaction = pending.remove(transactionId);
+                if (transaction == null) {
+                    // Late answer to a request that already timed out, or a duplicate
+                    unmatchedResponses.incrementAndGet();
+                    log.debug("Discarding unmatched response for transaction {} from {}", transactionId, key);
+                    continue;
+                }
+                transaction.receivedNanos = System.nanoTime();
+                try {
+                    transaction.future.complete(ModbusFrames.decode(frame, ModbusFrames.MBAP_HEADER_LENGTH + bodyLength));
+                } catch (IOException ex) {
+                    transaction.future.completeExceptionally(ex);
+                }
+            }
+        } catch (IOException ex) {
+            if (!closed) {
+                log.warn("Pipelined connection to {} failed: {}", key, ex.getMessage());
+                fail(ex);
+            }
+        }
+    }
+
+    private void fail(IOException cause) {
+        close();
+        for (PendingTransaction transaction : pending.values()) {
+            transaction.future.completeExceptionally(cause);
+        }
+        pending.clear();
+    }
+
+    private void close() {
+        closed = true;
+        connections.remove(key, this);
+        try {
+            socket.close();
+        } catch (IOException ex) {
+            log.debug("Error closing pipelined connection to {}", key, ex);
+        }
+    }
+
+    /**
+     * Per sample pipeline measurements, filled in by {@link #execute} and by {@link ModbusUdpChannel#execute}.
+     */
+    public static final class Stats {
+        int maxInFlight;
+        int transactions;
+        long slotWaitNanos;
+        long matchNanos;
+        int retransmits;
+        int lostTransactions;
+
+        public void reset() {
+            maxInFlight = 0;
+            transactions = 0;
+            slotWaitNanos = 0;
+            matchNanos = 0;
+            retransmits = 0;
+            lostTransactions = 0;
+        }
+
+        /**
+         * Folds in the measurements of another sample's worker, e.g. one chunk of a split read.
+         */
+        public void add(Stats other) {
+            maxInFlight = Math.max(maxInFlight, other.maxInFlight);
+            transactions += other.transactions;
+            slotWaitNanos += other.slotWaitNanos;
+            matchNanos += other.matchNanos;
+            retransmits += other.retransmits;
+            lostTransactions += other.lostTransactions;
+        }
+
+        public int getMaxInFlight() {
+            return maxInFlight;
+        }
+
+        public int getTransactions() {
+            return transactions;
+        }
+
+        public long getSlotWaitNanos() {
+            return slotWaitNanos;
+        }
+
+        public long getMatchNanos() {
+            return matchNanos;
+        }
+
+        public int getRetransmits() {
+            return retransmits;
+        }
+
+        public int getLostTransactions() {
+            return lostTransactions;
+        }
+    }
+
+    private static final class PendingTransaction {
+        private final CompletableFuture<ModbusResponse> future = new CompletableFuture<>();
+        private int transactionId;
+        private volatile long receivedNanos;
+    }
+}
@@ -0,0 +1,271 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+
+package com.example.jmeter.modbus;
+
+import com.ghgande.j2mod.modbus.Modbus;
+import com.ghgande.j2mod.modbus.ModbusIOException;
+import com.ghgande.j2mod.modbus.msg.ModbusResponse;
+import com.ghgande.j2mod.modbus.msg.ReadCoilsResponse;
+import com.ghgande.j2mod.modbus.msg.ReadInputDiscretesResponse;
+import com.ghgande.j2mod.modbus.msg.ReadInputRegistersResponse;
+import com.ghgande.j2mod.modbus.msg.ReadMultipleRegistersResponse;
+import com.ghgande.j2mod.modbus.procimg.InputRegister;
+import com.ghgande.j2mod.modbus.procimg.Register;
+
+import org.apache.jmeter.util.JMeterUtils;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Splits reads that exceed the protocol limits into chunks and merges the chunk responses back into one response,
+ * so decoders see a single contiguous range. Chunks of one sample run in parallel on a shared executor whose size is
+ * bounded by the JMeter property {@code modbus.chunks.maxThreads}.
+ * Also slices a merged response back into the ranges of coalesced samplers.
+ */
+public final class ModbusReadChunks {
+    public static final int MAX_REGISTERS = 125;
+    public static final int MAX_BITS = 2000;
+
+    private static final ExecutorService executor = newExecutor(JMeterUtils.getPropDefault("modbus.chunks.maxThreads",
+            Math.max(4, Runtime.getRuntime().availableProcessors() * 2)));
+
+    private ModbusReadChunks() {
+    }
+
+    /**
+     * Returns the largest quantity a single request of the given read function code may ask for.
+     */
+    public static int maxLength(int functionCode) {
+        return functionCode == Modbus.READ_COILS || functionCode == Modbus.READ_INPUT_DISCRETES ? MAX_BITS : MAX_REGISTERS;
+    }
+
+    /**
+     * Queues a helper task. Once all threads are busy, tasks wait in the queue; a sampler that finished the work
+     * itself cancels its helpers that have not started yet.
+     */
+    static <T> Future<T> submit(Callable<T> task) {
+        return executor.submit(task);
+    }
+
+    private static ExecutorService newExecutor(int maxThreads) {
+        int threads = Math.max(1, maxThreads);
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                ModbusThreads.platformThreadFactory("modbus-read-chunk"));
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * Concatenates the chunk responses, in address order, into a response of the same type covering length items.
+     */
+    public static ModbusResponse merge(int functionCode, ModbusResponse[] parts, int length) throws ModbusIOException {
+        ModbusResponse merged;
+        switch (functionCode) {
+            case Modbus.READ_COILS: {
+                ReadCoilsResponse coils = new MergedCoils(length);
+                int offset = 0;
+                for (ModbusResponse part : parts) {
+                    ReadCoilsResponse chunk = (ReadCoilsResponse) part;
+                    for (int i = 0; i < chunk.getBitCount() && offset < length; i++) {
+                        coils.setCoilStatus(offset++, chunk.getCoilStatus(i));
+                    }
+                }
+                checkLength(offset, length);
+                merged = coils;
+                break;
+            }
+            case Modbus.READ_INPUT_DISCRETES: {
+                ReadInputDiscretesResponse discretes = new MergedDiscretes(length);
+                int offset = 0;
+                for (ModbusResponse part : parts) {
+                    ReadInputDiscretesResponse chunk = (ReadInputDiscretesResponse) part;
+                    for (int i = 0; i < chunk.getBitCount() && offset < length; i++) {
+                        discretes.setDiscreteStatus(offset++, chunk.getDiscreteStatus(i));
+                    }
+                }
+                checkLength(offset, length);
+                merged = discretes;
+                break;
+            }
+            case Modbus.READ_INPUT_REGISTERS: {
+                InputRegister[] registers = new InputRegister[length];
+                int offset = 0;
+                for (ModbusResponse part : parts) {
+                    InputRegister[] chunk = ((ReadInputRegistersResponse) part).getRegisters();
+                    System.arraycopy(chunk, 0, registers, offset, Math.max(0, Math.min(chunk.length, length - offset)));
+                    offset += chunk.length;
+                }
+                checkLength(offset, length);
+                merged = new MergedInputRegisters(registers);
+                break;
+            }
+            default: {
+                Register[] registers = new Register[length];
+                int offset = 0;
+                for (ModbusResponse part : parts) {
+                    Register[] chunk = ((ReadMultipleRegistersResponse) part).getRegisters();
+                    System.arraycopy(chunk, 0, registers, offset, Math.max(0, Math.min(chunk.length, length - offset)));
+                    offset += chunk.length;
+                }
+                checkLength(offset, length);
+                merged = new MergedRegisters(registers);
+                break;
+            }
+        }
+        merged.setUnitID(parts[0].getUnitID());
+        return merged;
+    }
+
+    /**
+     * Returns the length items starting at offset of a read response, as a response of the same type.
+     */
+    public static ModbusResponse slice(int functionCode, ModbusResponse response, int offset, int length) {
+        ModbusResponse slice;
+        switch (functionCode) {
+            case Modbus.READ_COILS: {
+                ReadCoilsResponse source = (ReadCoilsResponse) response;
+                ReadCoilsResponse coils = new ReadCoilsResponse(length);
+                for (int i = 0; i < length; i++) {
+                    coils.setCoilStatus(i, source.getCoilStatus(offset + i));
+                }
+                slice = coils;
+                break;
+            }
+            case Modbus.READ_INPUT_DISCRETES: {
+                ReadInputDiscretesResponse source = (ReadInputDiscretesResponse) response;
+                ReadInputDiscretesResponse discretes = new ReadInputDiscretesResponse(length);
+                for (int i = 0; i < length; i++) {
+                    discretes.setDiscreteStatus(i, source.getDiscreteStatus(offset + i));
+                }
+                slice = discretes;
+                break;
+            }
+            case Modbus.READ_INPUT_REGISTERS: {
+                InputRegister[] registers = new InputRegister[length];
+                System.arraycopy(((ReadInputRegistersResponse) response).getRegisters(), offset, registers, 0, length);
+                slice = new ReadInputRegistersResponse(registers);
+                break;
+            }
+            default: {
+                Register[] registers = new Register[length];
+                System.arraycopy(((ReadMultipleRegistersResponse) response).getRegisters(), offset, registers, 0, length);
+                slice = new ReadMultipleRegistersResponse(registers);
+                break;
+            }
+        }
+        slice.setUnitID(response.getUnitID());
+        return slice;
+    }
+
+    private static void checkLength(int received, int length) throws ModbusIOException {
+        if (received != length) {
+            throw new ModbusIOException("Chunked read returned %d items, expected %d", received, length);
+        }
+    }
+
+    /*
+     * j2mod rejects data lengths beyond a single PDU, which a merged response exceeds.
+     * These subclasses keep the length unchecked, adding the unit identifier and function code as j2mod does;
+     * the data length field has no initializer, so the value set by the superclass constructor is preserved.
+     */
+
+    private static final class MergedCoils extends ReadCoilsResponse {
+        private int dataLength;
+
+        private MergedCoils(int count) {
+            super(count);
+        }
+
+        @Override
+        public void setDataLength(int length) {
+            dataLength = length + 2;
+        }
+
+        @Override
+        public int getDataLength() {
+            return dataLength;
+        }
+    }
+
+    private static final class MergedDiscretes extends ReadInputDiscretesResponse {
+        private int dataLength;
+
+        private MergedDiscretes(int count) {
+            super(count);
+        }
+
+        @Override
+        public void setDataLength(int length) {
+            dataLength = length + 2;
+        }
+
+        @Override
+        public int getDataLength() {
+            return dataLength;
+        }
+    }
+
+    private static final class MergedInputRegisters extends ReadInputRegistersResponse {
+        private int dataLength;
+
+        private MergedInputRegisters(InputRegister[] registers) {
+            super(registers);
+        }
+
+        @Override
+        public void setDataLength(int length) {
+            dataLength = length + 2;
+        }
+
+        @Override
+        public int getDataLength() {
+            return dataLength;
+        }
+    }
+
+    private static final class MergedRegisters extends ReadMultipleRegistersResponse {
+        private int dataLength;
+
+        private MergedRegisters(Register[] registers) {
+            super(registers);
+        }
+
+        @Override
+        public void setDataLength(int length) {
+            dataLength = length + 2;
+        }
+
+        @Override
+        public int getDataLength() {
+            return dataLength;
+        }
+    }
+}
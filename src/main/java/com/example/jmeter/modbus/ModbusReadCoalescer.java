@@ -0,0 +1,223 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+
+package com.example.jmeter.modbus;
+
+import com.ghgande.j2mod.modbus.msg.ModbusResponse;
+import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.testelement.TestElement;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-thread state of a {@link ModbusReadCoalescingController}. Within each run of consecutive Read samplers, groups
+ * them by endpoint, transport, unit ID, function code and client mode, merges nearby ranges into as few requests as
+ * the protocol allows, and hands each sampler its slice of the merged response. A merged read is sent when its first
+ * sampler runs; since a run holds only reads, no write or other sampler is moved across it.
+ */
+final class ModbusReadCoalescer {
+    private static final Logger log = LogManager.getLogger(ModbusReadCoalescer.class);
+
+    private final Map<ModbusReadSampler, Member> members = new IdentityHashMap<>();
+    private final List<Range> ranges = new ArrayList<>();
+
+    /**
+     * Plans the merged reads for the given children, in tree order. Samplers whose settings are evaluated per sample,
+     * cannot be parsed, fan out over several units, need more than one request, wait for a scan deadline or report
+     * changes only are left to read on their own, and like any other sampler or controller they end the current run.
+     */
+    ModbusReadCoalescer(List<TestElement> children, int gapTolerance) {
+        Map<String, List<Member>> groups = new LinkedHashMap<>();
+        for (TestElement child : children) {
+            Member member = candidate(child);
+            if (member == null) {
+                merge(groups, gapTolerance);
+                continue;
+            }
+            ModbusReadPlan plan = member.plan;
+            String key = plan.host + ":" + plan.port + "/" + plan.transport + "/" + plan.unitIds[0] + "/" + plan.functionCode + "/" + plan.pipelined + "/" + plan.nio
+                    + "/" + plan.useExistingConnection + "/" + plan.pooled;
+            groups.computeIfAbsent(key, k -> new ArrayList<>()).add(member);
+        }
+        merge(groups, gapTolerance);
+
+        for (Range range : ranges) {
+            if (range.members.size() > 1) {
+                range.createReader();
+                for (Member member : range.members) {
+                    members.put(member.sampler, member);
+                    member.sampler.setCoalescer(this);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the child as a member of a merged read, or null if it has to read on its own.
+     */
+    private static Member candidate(TestElement child) {
+        if (!(child instanceof ModbusReadSampler)) {
+            return null;
+        }
+        ModbusReadSampler sampler = (ModbusReadSampler) child;
+        ModbusReadPlan plan;
+        try {
+            plan = sampler.compilePlan();
+        } catch (IllegalArgumentException ex) {
+            log.debug("Not coalescing {}: {}", sampler.getName(), ex.getMessage());
+            return null;
+        }
+        // The merged read runs with the first sampler's settings, so per-sampler scan and change tracking cannot apply
+        if (plan.dynamic || plan.isChunked() || plan.fanOut || plan.scanInterval > 0 || plan.reportChangesOnly) {
+            return null;
+        }
+        return new Member(sampler, plan);
+    }
+
+    /**
+     * Merges the groups of the run that has just ended into ranges, and starts a new run.
+     */
+    private void merge(Map<String, List<Member>> groups, int gapTolerance) {
+        for (List<Member> group : groups.values()) {
+            // The first sampler in tree order supplies the connection settings of the whole group
+            ModbusReadSampler leader = group.get(0).sampler;
+            group.sort(Comparator.comparingInt(member -> member.plan.address));
+            int maxLength = ModbusReadChunks.maxLength(group.get(0).plan.functionCode);
+            Range range = null;
+            for (Member member : group) {
+                int end = member.plan.address + member.plan.length;
+                if (range != null && member.plan.address <= range.end() + gapTolerance
+                        && Math.max(range.end(), end) - range.address <= maxLength) {
+                    range.length = Math.max(range.end(), end) - range.address;
+                } else {
+                    range = new Range(leader, member.plan.address, member.plan.length);
+                    ranges.add(range);
+                }
+                range.members.add(member);
+                member.range = range;
+            }
+        }
+        groups.clear();
+    }
+
+    /**
+     * Forgets the responses of the previous iteration.
+     */
+    void reset() {
+        for (Range range : ranges) {
+            range.result = null;
+        }
+    }
+
+    /**
+     * Returns the sampler's slice of its merged read, issuing the read on first use in this iteration,
+     * or null if the sampler is not coalesced.
+     */
+    SampleResult sample(ModbusReadSampler sampler) {
+        Member member = members.get(sampler);
+        if (member == null) {
+            return null;
+        }
+        Range range = member.range;
+        if (range.result == null) {
+            range.result = (ModbusSampleResult) range.reader.sample(null);
+        }
+        ModbusSampleResult merged = range.result;
+        ModbusSampleResult result = new ModbusSampleResult();
+        result.setSampleLabel(sampler.getName());
+        result.setStampAndTime(merged.getStartTime(), merged.getTime() / range.members.size());
+        result.setResponseHeaders(merged.getResponseHeaders());
+        ModbusSampleMetrics.add(result, "Coalesced-Read", range.address + "-" + (range.end() - 1));
+        ModbusSampleMetrics.add(result, "Coalesced-Samplers", range.members.size());
+        result.setResponseMessage(merged.getResponseMessage());
+        result.setSuccessful(merged.isSuccessful());
+        if (merged.isSuccessful()) {
+            try {
+                ModbusResponse response = ModbusReadChunks.slice(member.plan.functionCode, merged.getResponse(),
+                        member.plan.address - range.address, member.plan.length);
+                if (member.plan.lazyDecoding) {
+                    result.setLazyResponseData(response, member.plan.decoder);
+                } else {
+                    result.setResponseData(member.plan.decode(response), StandardCharsets.UTF_8.name());
+                }
+            } catch (RuntimeException ex) {
+                log.error("Error slicing coalesced read for {}", sampler.getName(), ex);
+                result.setResponseMessage("Error: " + ex.getMessage());
+                result.setSuccessful(false);
+            }
+        }
+        return result;
+    }
+
+    private static final class Member {
+        private final ModbusReadSampler sampler;
+        private final ModbusReadPlan plan;
+        private Range range;
+
+        private Member(ModbusReadSampler sampler, ModbusReadPlan plan) {
+            this.sampler = sampler;
+            this.plan = plan;
+        }
+    }
+
+    private static final class Range {
+        private final ModbusReadSampler leader;
+        private final int address;
+        private int length;
+        private final List<Member> members = new ArrayList<>();
+        private ModbusReadSampler reader;
+        private ModbusSampleResult result;
+
+        private Range(ModbusReadSampler leader, int address, int length) {
+            this.leader = leader;
+            this.address = address;
+            this.length = length;
+        }
+
+        private int end() {
+            return address + length;
+        }
+
+        /**
+         * The merged read runs through a copy of the leader, so it uses the leader's connection, retry and circuit
+         * breaker settings. It keeps the raw response, which each member then decodes in its own data type.
+         */
+        private void createReader() {
+            reader = (ModbusReadSampler) leader.clone();
+            reader.setAddress(String.valueOf(address));
+            reader.setLength(String.valueOf(length));
+            reader.setLazyDecoding(true);
+            reader.setPreConnect(false);
+        }
+    }
+}
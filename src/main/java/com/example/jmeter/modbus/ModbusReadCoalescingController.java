@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+
+package com.example.jmeter.modbus;
+
+import org.apache.jmeter.control.GenericController;
+
+/**
+ * Runs its children like a Simple Controller, but Read samplers that poll nearby ranges of the same device
+ * share one Modbus request per iteration instead of one each.
+ */
+public class ModbusReadCoalescingController extends GenericController {
+    private static final long serialVersionUID = 1L;
+
+    public static final String GAP_TOLERANCE = "ModbusReadCoalescingController.gapTolerance";
+
+    private transient ModbusReadCoalescer coalescer;
+
+    public void setGapTolerance(String gapTolerance) {
+        setProperty(GAP_TOLERANCE, gapTolerance);
+    }
+
+    public String getGapTolerance() {
+        return getPropertyAsString(GAP_TOLERANCE, "0");
+    }
+
+    @Override
+    protected void fireIterationStart() {
+        super.fireIterationStart();
+        if (coalescer == null) {
+            coalescer = new ModbusReadCoalescer(subControllersAndSamplers, Math.max(getPropertyAsInt(GAP_TOLERANCE, 0), 0));
+        } else {
+            coalescer.reset();
+        }
+    }
+
+}
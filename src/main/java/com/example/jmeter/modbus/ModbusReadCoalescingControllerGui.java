@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+
+package com.example.jmeter.modbus;
+
+import org.apache.jmeter.control.gui.AbstractControllerGui;
+import org.apache.jmeter.testelement.TestElement;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.net.URI;
+
+public class ModbusReadCoalescingControllerGui extends AbstractControllerGui {
+    private static final Logger log = LogManager.getLogger(ModbusReadCoalescingControllerGui.class);
+
+    private JTextField gapToleranceField;
+
+    public ModbusReadCoalescingControllerGui() {
+        init();
+    }
+
+    private void init() {
+        setLayout(new BorderLayout(0, 5));
+        setBorder(makeBorder());
+
+        JPanel mainPanel = new JPanel(new BorderLayout());
+        mainPanel.add(makeTitlePanel(), BorderLayout.NORTH);
+
+        JPanel settingsPanel = new JPanel(new GridBagLayout());
+        settingsPanel.setBorder(BorderFactory.createTitledBorder("Read Coalescing Settings"));
+        gapToleranceField = new JTextField(5);
+
+        GridBagConstraints gbc = new GridBagConstraints();
+        gbc.fill = GridBagConstraints.HORIZONTAL;
+        gbc.insets = new Insets(2, 2, 2, 2);
+        gbc.ipadx = 2;
+        gbc.weightx = 1.0;
+
+        Dimension fieldDimension = new Dimension(200, 25);
+        Dimension labelDimension = new Dimension(100, 25);
+
+        gbc.gridx = 0;
+        gbc.gridy = 0;
+        gbc.anchor = GridBagConstraints.LINE_END;
+        JLabel gapToleranceLabel = new JLabel("Gap Tolerance:");
+        gapToleranceLabel.setPreferredSize(labelDimension);
+        settingsPanel.add(gapToleranceLabel, gbc);
+        gbc.gridx = 1;
+        gbc.anchor = GridBagConstraints.LINE_START;
+        gapToleranceField.setPreferredSize(fieldDimension);
+        settingsPanel.add(gapToleranceField, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 1;
+        gbc.gridwidth = 2;
+        settingsPanel.add(new JLabel("Unused addresses allowed between two ranges that are read as one request."), gbc);
+        gbc.gridy = 2;
+        settingsPanel.add(new JLabel("Only consecutive Read Samplers are merged; any other element in between ends the run."), gbc);
+
+        JPanel centerPanel = new JPanel(new BorderLayout());
+        centerPanel.add(settingsPanel, BorderLayout.NORTH);
+        mainPanel.add(centerPanel, BorderLayout.CENTER);
+
+        add(mainPanel, BorderLayout.CENTER);
+        add(getFooterPanel(), BorderLayout.SOUTH);
+    }
+
+    private static @NotNull JPanel getFooterPanel() {
+        JLabel developerLabel = new JLabel("<html><i>Developed by Mohammed Hlayel;</i></html>");
+        JLabel githubLink = new JLabel("<html><a href='https://github.com/Sahermatter2024'>Help and Update</a></html>");
+        githubLink.setCursor(new Cursor(Cursor.HAND_CURSOR));
+        githubLink.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                try {
+                    Desktop.getDesktop().browse(new URI("https://github.com/Sahermatter2024"));
+                } catch (Exception ex) {
+                    log.error("Error opening link", ex);
+                }
+            }
+        });
+
+        JPanel footerPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        footerPanel.add(developerLabel);
+        footerPanel.add(githubLink);
+        return footerPanel;
+    }
+
+    @Override
+    public void configure(TestElement element) {
+        super.configure(element);
+        ModbusReadCoalescingController controller = (ModbusReadCoalescingController) element;
+        gapToleranceField.setText(controller.getGapTolerance());
+    }
+
+    @Override
+    public TestElement createTestElement() {
+        ModbusReadCoalescingController controller = new ModbusReadCoalescingController();
+        modifyTestElement(controller);
+        return controller;
+    }
+
+    @Override
+    public void modifyTestElement(TestElement element) {
+        super.configureTestElement(element);
+        ModbusReadCoalescingController controller = (ModbusReadCoalescingController) element;
+        controller.setGapTolerance(gapToleranceField.getText());
+    }
+
+    @Override
+    public void clearGui() {
+        super.clearGui();
+        gapToleranceField.setText("0");
+    }
+
+    @Override
+    public String getLabelResource() {
+        return "modbus_read_coalescing_controller_title";
+    }
+
+    @Override
+    public String getStaticLabel() {
+        return "Modbus Read Coalescing Controller";
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+
+package com.example.jmeter.modbus;
+
+import com.ghgande.j2mod.modbus.Modbus;
+import com.ghgande.j2mod.modbus.msg.ModbusRequest;
+import com.ghgande.j2mod.modbus.msg.ModbusResponse;
+import com.ghgande.j2mod.modbus.msg.ReadCoilsRequest;
+import com.ghgande.j2mod.modbus.msg.ReadInputDiscretesRequest;
+import com.ghgande.j2mod.modbus.msg.ReadInputRegistersRequest;
+import com.ghgande.j2mod.modbus.msg.ReadMultipleRegistersRequest;
+import org.apache.jmeter.testelement.TestElement;
+import org.apache.jmeter.testelement.property.FunctionProperty;
+import org.apache.jmeter.testelement.property.PropertyIterator;
+
+/**
+ * Immutable, pre-parsed settings of a {@link ModbusReadSampler}, compiled once per thread.
+ * A plan whose properties contain JMeter variables or functions is dynamic and recompiled for every sample.
+ */
+public final class ModbusReadPlan {
+    final String host;
+    final int port;
+    final int timeout;
+    final int keepAlive;
+    /** Transport of the connections, one of the {@link ModbusTransports} transports. */
+    final String transport;
+    /** Modbus UDP through a shared channel, and how long to wait for a response before sending the request again. */
+    final boolean udp;
+    final int retransmitTimeout;
+    final int retryCount;
+    final ModbusRetryPolicy retryPolicy;
+    final boolean pipelined;
+    final boolean nio;
+    final boolean useExistingConnection;
+    final boolean pooled;
+    final int poolMinSize;
+    final int poolMaxSize;
+    final int pipelineDepth;
+    final int warmUpTransactions;
+    final int address;
+    final int length;
+    final int functionCode;
+    /** Unit IDs to read from; more than one makes a fan-out with up to fanOutParallelism units in flight. */
+    final int[] unitIds;
+    final boolean fanOut;
+    final int fanOutParallelism;
+    final ModbusValueDecoder decoder;
+    final boolean lazyDecoding;
+    /** Fixed poll period in milliseconds, 0 without scan mode, and what happens to missed scans. */
+    final long scanInterval;
+    final String scanPolicy;
+    /** Report by exception: only changed values are decoded, and stored in changeVariable if that is not empty. */
+    final boolean reportChangesOnly;
+    final String changeVariable;
+    /** Identifies the device block whose shadow image this plan compares against, per unit. */
+    final String[] shadowKeys;
+    /** First chunk of the read from the first unit; used on its own for warm-up transactions. */
+    final ModbusFrameTemplate request;
+    /** Protocol-sized requests covering address to address + length from the first unit, in address order. */
+    final ModbusFrameTemplate[] chunks;
+    /** The chunks for each unit; unitChunks[0] is chunks. */
+    final ModbusFrameTemplate[][] unitChunks;
+    final boolean dynamic;
+
+    private ModbusReadPlan(ModbusReadSampler sampler) {
+        String clientMode = sampler.getClientMode();
+        pipelined = ModbusReadSampler.CLIENT_MODE_PIPELINED.equals(clientMode);
+        nio = ModbusReadSampler.CLIENT_MODE_NIO.equals(clientMode);
+        useExistingConnection = !pipelined && !nio && sampler.getUseExistingConnection();
+        transport = sampler.getTransport();
+        if (!useExistingConnection) {
+            ModbusTransports.checkClientMode(transport, pipelined, nio);
+        }
+        udp = !useExistingConnection && ModbusTransports.isUdp(transport);
+        pooled = !pipelined && !nio && !useExistingConnection && !udp && sampler.getUsePooledConnection();
+
+        host = sampler.getIpAddress();
+        retryCount = Integer.parseInt(sampler.getRetryCount());
+        retryPolicy = ModbusRetryPolicy.create(sampler.getRetryPolicy(),
+                Long.parseLong(sampler.getRetryDelay()), Long.parseLong(sampler.getRetryMaxDelay()));
+        if (useExistingConnection) {
+            // Connection settings are disabled in the GUI and may be left empty
+            port = 0;
+            timeout = 0;
+            keepAlive = 0;
+        } else {
+            port = Integer.parseInt(sampler.getPort());
+            timeout = Integer.parseInt(sampler.getTimeout());
+            keepAlive = Integer.parseInt(sampler.getKeepAlive());
+        }
+        poolMinSize = pooled ? Integer.parseInt(sampler.getPoolMinSize()) : 0;
+        poolMaxSize = pooled ? Integer.parseInt(sampler.getPoolMaxSize()) : 0;
+        pipelineDepth = pipelined ? Integer.parseInt(sampler.getPipelineDepth()) : 0;
+        retransmitTimeout = udp ? Integer.parseInt(sampler.getRetransmitTimeout()) : 0;
+        warmUpTransactions = sampler.getPreConnect() ? Integer.parseInt(sampler.getWarmUpTransactions()) : 0;
+
+        if (sampler.getAddress().isEmpty() || sampler.getLength().isEmpty()) {
+            throw new IllegalArgumentException("Address and Length fields cannot be empty.");
+        }
+        address = Integer.parseInt(sampler.getAddress());
+        length = Integer.parseInt(sampler.getLength());
+        functionCode = functionCode(sampler.getReadMethod());
+        unitIds = ModbusUnitFanOut.parseUnitIds(sampler.getUnitId());
+        fanOut = unitIds.length > 1;
+        fanOutParallelism = fanOut && (pipelined || nio || udp) ? Math.max(1, Integer.parseInt(sampler.getFanOutParallelism())) : 1;
+        decoder = ModbusValueDecoder.forRead(functionCode, sampler.getDataType(), ModbusWordOrder.fromName(sampler.getWordOrder()));
+        lazyDecoding = sampler.getLazyDecoding();
+        scanInterval = Long.parseLong(sampler.getScanInterval());
+        scanPolicy = sampler.getScanPolicy();
+        reportChangesOnly = sampler.getReportChangesOnly();
+        changeVariable = sampler.getChangeVariable().trim();
+        shadowKeys = new String[unitIds.length];
+        unitChunks = new ModbusFrameTemplate[unitIds.length][];
+        int chunkLength = ModbusReadChunks.maxLength(functionCode);
+        int chunkCount = Math.max(1, (length + chunkLength - 1) / chunkLength);
+        for (int unit = 0; unit < unitIds.length; unit++) {
+            shadowKeys[unit] = host + ":" + port + "/" + unitIds[unit] + "/" + functionCode + "/" + address + "/" + length;
+            unitChunks[unit] = new ModbusFrameTemplate[chunkCount];
+            for (int i = 0; i < chunkCount; i++) {
+                int offset = i * chunkLength;
+                ModbusRequest chunk = createRequest(functionCode, address + offset, Math.min(chunkLength, length - offset));
+                chunk.setUnitID(unitIds[unit]);
+                unitChunks[unit][i] = new ModbusFrameTemplate(chunk);
+            }
+        }
+        chunks = unitChunks[0];
+        request = chunks[0];
+        dynamic = containsFunctions(sampler);
+    }
+
+    /**
+     * Returns the existing plan if it is still valid, otherwise compiles a new one.
+     */
+    static ModbusReadPlan compile(ModbusReadSampler sampler, ModbusReadPlan previous) {
+        if (previous != null && !previous.dynamic) {
+            return previous;
+        }
+        return new ModbusReadPlan(sampler);
+    }
+
+    static int functionCode(String readMethod) {
+        switch (readMethod) {
+            case "Read Coils":
+                return Modbus.READ_COILS;
+            case "Read Input Discretes":
+                return Modbus.READ_INPUT_DISCRETES;
+            case "Read Holding Registers":
+                return Modbus.READ_MULTIPLE_REGISTERS;
+            case "Read Input Registers":
+                return Modbus.READ_INPUT_REGISTERS;
+            default:
+                throw new IllegalArgumentException("Unsupported read method: " + readMethod);
+        }
+    }
+
+    /**
+     * Returns true if any property is evaluated per sample, i.e. contains a JMeter variable or function.
+     */
+    static boolean containsFunctions(TestElement element) {
+        PropertyIterator it = element.propertyIterator();
+        while (it.hasNext()) {
+            if (it.next() instanceof FunctionProperty) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static ModbusRequest createRequest(int functionCode, int address, int length) {
+        switch (functionCode) {
+            case Modbus.READ_COILS:
+                return new ReadCoilsRequest(address, length);
+            case Modbus.READ_INPUT_DISCRETES:
+                return new ReadInputDiscretesRequest(address, length);
+            case Modbus.READ_INPUT_REGISTERS:
+                return new ReadInputRegistersRequest(address, length);
+            default:
+                return new ReadMultipleRegistersRequest(address, length);
+        }
+    }
+
+    boolean isChunked() {
+        return chunks.length > 1;
+    }
+
+    String decode(ModbusResponse response) {
+        return decoder.decode(response);
+    }
+}
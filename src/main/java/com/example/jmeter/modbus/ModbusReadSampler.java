@@ -27,30 +27,46 @@ package com.example.jmeter.modbus;
 import org.apache.jmeter.samplers.AbstractSampler;
 import org.apache.jmeter.samplers.Entry;
 import org.apache.jmeter.samplers.SampleResult;
-import org.apache.jmeter.threads.JMeterContext;
+import org.apache.jmeter.testelement.TestStateListener;
+import org.apache.jmeter.testelement.ThreadListener;
 import org.apache.jmeter.threads.JMeterContextService;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import com.ghgande.j2mod.modbus.io.ModbusTCPTransaction;
-import com.ghgande.j2mod.modbus.msg.ReadCoilsRequest;
-import com.ghgande.j2mod.modbus.msg.ReadCoilsResponse;
-import com.ghgande.j2mod.modbus.msg.ReadInputDiscretesRequest;
-import com.ghgande.j2mod.modbus.msg.ReadInputDiscretesResponse;
-import com.ghgande.j2mod.modbus.msg.ReadInputRegistersRequest;
-import com.ghgande.j2mod.modbus.msg.ReadInputRegistersResponse;
-import com.ghgande.j2mod.modbus.msg.ReadMultipleRegistersRequest;
-import com.ghgande.j2mod.modbus.msg.ReadMultipleRegistersResponse;
+import com.ghgande.j2mod.modbus.ModbusSlaveException;
+import com.ghgande.j2mod.modbus.msg.ModbusResponse;
 import com.ghgande.j2mod.modbus.net.TCPMasterConnection;
-import com.ghgande.j2mod.modbus.procimg.InputRegister;
 
-import java.net.InetAddress;
-import java.util.Timer;
-import java.util.TimerTask;
-
-public class ModbusReadSampler extends AbstractSampler {
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ModbusReadSampler extends AbstractSampler implements TestStateListener, ThreadListener {
     private static final Logger log = LogManager.getLogger(ModbusReadSampler.class);
 
     public static final String USE_EXISTING_CONNECTION = "ModbusReadSampler.useExistingConnection";
+    public static final String USE_POOLED_CONNECTION = "ModbusReadSampler.usePooledConnection";
+    public static final String POOL_MIN_SIZE = "ModbusReadSampler.poolMinSize";
+    public static final String POOL_MAX_SIZE = "ModbusReadSampler.poolMaxSize";
+    public static final String CLIENT_MODE = "ModbusReadSampler.clientMode";
+    public static final String TRANSPORT = "ModbusReadSampler.transport";
+    public static final String RETRANSMIT_TIMEOUT = "ModbusReadSampler.retransmitTimeout";
+    public static final String PIPELINE_DEPTH = "ModbusReadSampler.pipelineDepth";
+    public static final String PRE_CONNECT = "ModbusReadSampler.preConnect";
+    public static final String WARM_UP_TRANSACTIONS = "ModbusReadSampler.warmUpTransactions";
+
+    public static final String CLIENT_MODE_BLOCKING = "Blocking";
+    public static final String CLIENT_MODE_PIPELINED = "Pipelined";
+    public static final String CLIENT_MODE_NIO = "NIO";
     public static final String IP_ADDRESS = "ModbusReadSampler.ipAddress";
     public static final String PORT = "ModbusReadSampler.port";
     public static final String ADDRESS = "ModbusReadSampler.address";
@@ -59,9 +75,30 @@ public class ModbusReadSampler extends AbstractSampler {
     public static final String DATA_TYPE = "ModbusReadSampler.dataType";
     public static final String KEEP_ALIVE = "ModbusReadSampler.keepAlive";
     public static final String RETRY_COUNT = "ModbusReadSampler.retryCount";
+    public static final String RETRY_POLICY = "ModbusReadSampler.retryPolicy";
+    public static final String RETRY_DELAY = "ModbusReadSampler.retryDelay";
+    public static final String RETRY_MAX_DELAY = "ModbusReadSampler.retryMaxDelay";
     public static final String TIMEOUT = "ModbusReadSampler.timeout";
-
-    private Timer connectionCloseTimer;
+    public static final String LAZY_DECODING = "ModbusReadSampler.lazyDecoding";
+    public static final String WORD_ORDER = "ModbusReadSampler.wordOrder";
+    public static final String SCAN_INTERVAL = "ModbusReadSampler.scanInterval";
+    public static final String SCAN_POLICY = "ModbusReadSampler.scanPolicy";
+    public static final String REPORT_CHANGES_ONLY = "ModbusReadSampler.reportChangesOnly";
+    public static final String CHANGE_VARIABLE = "ModbusReadSampler.changeVariable";
+    public static final String UNIT_ID = "ModbusReadSampler.unitId";
+    public static final String FAN_OUT_PARALLELISM = "ModbusReadSampler.fanOutParallelism";
+
+    private ModbusTimerWheel.Timeout keepAliveTimeout;
+    private TCPMasterConnection keepAliveConnection;
+    private ModbusPipelinedConnection pipelinedConnection;
+    private ModbusNioSession nioSession;
+    private ModbusUdpChannel udpChannel;
+    private ModbusReadPlan plan;
+    private TCPMasterConnection warmConnection;
+    private ModbusReadCoalescer coalescer;
+    private ModbusScanClock scanClock;
+    private final Map<String, ModbusShadowImage> shadows = new HashMap<>();
+    private final ModbusPipelinedConnection.Stats pipelineStats = new ModbusPipelinedConnection.Stats();
 
     public void setUseExistingConnection(boolean useExistingConnection) {
         setProperty(USE_EXISTING_CONNECTION, useExistingConnection);
@@ -71,6 +108,78 @@ public class ModbusReadSampler extends AbstractSampler {
         return getPropertyAsBoolean(USE_EXISTING_CONNECTION);
     }
 
+    public void setUsePooledConnection(boolean usePooledConnection) {
+        setProperty(USE_POOLED_CONNECTION, usePooledConnection);
+    }
+
+    public boolean getUsePooledConnection() {
+        return getPropertyAsBoolean(USE_POOLED_CONNECTION);
+    }
+
+    public void setPoolMinSize(String poolMinSize) {
+        setProperty(POOL_MIN_SIZE, poolMinSize);
+    }
+
+    public String getPoolMinSize() {
+        return getPropertyAsString(POOL_MIN_SIZE, "0");
+    }
+
+    public void setPoolMaxSize(String poolMaxSize) {
+        setProperty(POOL_MAX_SIZE, poolMaxSize);
+    }
+
+    public String getPoolMaxSize() {
+        return getPropertyAsString(POOL_MAX_SIZE, "10");
+    }
+
+    public void setClientMode(String clientMode) {
+        setProperty(CLIENT_MODE, clientMode);
+    }
+
+    public String getClientMode() {
+        return getPropertyAsString(CLIENT_MODE, CLIENT_MODE_BLOCKING);
+    }
+
+    public void setTransport(String transport) {
+        setProperty(TRANSPORT, transport);
+    }
+
+    public String getTransport() {
+        return getPropertyAsString(TRANSPORT, ModbusTransports.TRANSPORT_TCP);
+    }
+
+    public void setRetransmitTimeout(String retransmitTimeout) {
+        setProperty(RETRANSMIT_TIMEOUT, retransmitTimeout);
+    }
+
+    public String getRetransmitTimeout() {
+        return getPropertyAsString(RETRANSMIT_TIMEOUT, "0");
+    }
+
+    public void setPipelineDepth(String pipelineDepth) {
+        setProperty(PIPELINE_DEPTH, pipelineDepth);
+    }
+
+    public String getPipelineDepth() {
+        return getPropertyAsString(PIPELINE_DEPTH, "8");
+    }
+
+    public void setPreConnect(boolean preConnect) {
+        setProperty(PRE_CONNECT, preConnect);
+    }
+
+    public boolean getPreConnect() {
+        return getPropertyAsBoolean(PRE_CONNECT);
+    }
+
+    public void setWarmUpTransactions(String warmUpTransactions) {
+        setProperty(WARM_UP_TRANSACTIONS, warmUpTransactions);
+    }
+
+    public String getWarmUpTransactions() {
+        return getPropertyAsString(WARM_UP_TRANSACTIONS, "0");
+    }
+
     public void setIpAddress(String ipAddress) {
         setProperty(IP_ADDRESS, ipAddress);
     }
@@ -119,6 +228,14 @@ public class ModbusReadSampler extends AbstractSampler {
         return getPropertyAsString(DATA_TYPE);
     }
 
+    public void setWordOrder(String wordOrder) {
+        setProperty(WORD_ORDER, wordOrder);
+    }
+
+    public String getWordOrder() {
+        return getPropertyAsString(WORD_ORDER, ModbusWordOrder.ABCD.name());
+    }
+
     public void setKeepAlive(String keepAlive) {
         setProperty(KEEP_ALIVE, keepAlive);
     }
@@ -135,6 +252,30 @@ public class ModbusReadSampler extends AbstractSampler {
         return getPropertyAsString(RETRY_COUNT);
     }
 
+    public void setRetryPolicy(String retryPolicy) {
+        setProperty(RETRY_POLICY, retryPolicy);
+    }
+
+    public String getRetryPolicy() {
+        return getPropertyAsString(RETRY_POLICY, ModbusRetryPolicy.EXPONENTIAL);
+    }
+
+    public void setRetryDelay(String retryDelay) {
+        setProperty(RETRY_DELAY, retryDelay);
+    }
+
+    public String getRetryDelay() {
+        return getPropertyAsString(RETRY_DELAY, "100");
+    }
+
+    public void setRetryMaxDelay(String retryMaxDelay) {
+        setProperty(RETRY_MAX_DELAY, retryMaxDelay);
+    }
+
+    public String getRetryMaxDelay() {
+        return getPropertyAsString(RETRY_MAX_DELAY, "2000");
+    }
+
     public void setTimeout(String timeout) {
         setProperty(TIMEOUT, timeout);
     }
@@ -143,98 +284,238 @@ public class ModbusReadSampler extends AbstractSampler {
         return getPropertyAsString(TIMEOUT, "2000");
     }
 
+    public void setLazyDecoding(boolean lazyDecoding) {
+        setProperty(LAZY_DECODING, lazyDecoding);
+    }
+
+    public boolean getLazyDecoding() {
+        return getPropertyAsBoolean(LAZY_DECODING);
+    }
+
+    public void setScanInterval(String scanInterval) {
+        setProperty(SCAN_INTERVAL, scanInterval);
+    }
+
+    public String getScanInterval() {
+        return getPropertyAsString(SCAN_INTERVAL, "0");
+    }
+
+    public void setScanPolicy(String scanPolicy) {
+        setProperty(SCAN_POLICY, scanPolicy);
+    }
+
+    public String getScanPolicy() {
+        return getPropertyAsString(SCAN_POLICY, ModbusScanClock.POLICY_SKIP);
+    }
+
+    public void setReportChangesOnly(boolean reportChangesOnly) {
+        setProperty(REPORT_CHANGES_ONLY, reportChangesOnly);
+    }
+
+    public boolean getReportChangesOnly() {
+        return getPropertyAsBoolean(REPORT_CHANGES_ONLY);
+    }
+
+    public void setChangeVariable(String changeVariable) {
+        setProperty(CHANGE_VARIABLE, changeVariable);
+    }
+
+    public String getChangeVariable() {
+        return getPropertyAsString(CHANGE_VARIABLE);
+    }
+
+    public void setUnitId(String unitId) {
+        setProperty(UNIT_ID, unitId);
+    }
+
+    public String getUnitId() {
+        return getPropertyAsString(UNIT_ID, "1");
+    }
+
+    public void setFanOutParallelism(String fanOutParallelism) {
+        setProperty(FAN_OUT_PARALLELISM, fanOutParallelism);
+    }
+
+    public String getFanOutParallelism() {
+        return getPropertyAsString(FAN_OUT_PARALLELISM, "8");
+    }
+
     public SampleResult sample(Entry e) {
-        SampleResult result = new SampleResult();
+        if (coalescer != null) {
+            SampleResult coalesced = coalescer.sample(this);
+            if (coalesced != null) {
+                return coalesced;
+            }
+        }
+        ModbusSampleResult result = new ModbusSampleResult();
         result.setSampleLabel(getName());
+        Exception planError = null;
+        long resolveNanos = 0;
+        try {
+            plan = ModbusReadPlan.compile(this, plan);
+            resolveNanos = resolveEndpoint();
+        } catch (IllegalArgumentException ex) {
+            planError = ex;
+        }
+        boolean scanned = false;
+        if (planError == null && plan.scanInterval > 0) {
+            // Waiting for the deadline is not part of the elapsed time; lateness is reported by the scan metrics
+            if (scanClock == null) {
+                scanClock = new ModbusScanClock(plan.scanInterval, plan.scanPolicy);
+            }
+            try {
+                scanClock.awaitNextScan();
+                scanned = true;
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                planError = ex;
+            }
+        }
         result.sampleStart();
+        ModbusSampleMetrics.addMillis(result, "Resolve-ms", resolveNanos);
 
         TCPMasterConnection connection = null;
-        String readMethod = getReadMethod();
-        int retryCount = Integer.parseInt(getRetryCount());
-        int keepAlive = Integer.parseInt(getKeepAlive());
+        ModbusConnectionPool pool = null;
         boolean success = false;
+        pipelinedConnection = null;
+        udpChannel = null;
+        pipelineStats.reset();
+        List<SampleResult> chunkResults = new ArrayList<>();
+        ModbusUnitFanOut fanOut = null;
 
         try {
-            for (int attempt = 0; attempt <= retryCount && !success; attempt++) {
+            if (planError != null) {
+                throw planError;
+            }
+            ModbusCircuitBreaker breaker = plan.useExistingConnection ? null : ModbusCircuitBreaker.forEndpoint(plan.host, plan.port);
+            long retryDelay = 0;
+            for (int attempt = 0; attempt <= plan.retryCount && !success; attempt++) {
                 try {
-                    if (getUseExistingConnection()) {
-                        connection = (TCPMasterConnection) JMeterContextService.getContext().getVariables().getObject("modbusConnection");
-                        if (connection == null || !connection.isConnected()) {
-                            throw new IllegalStateException("No existing Modbus connection available.");
+                    chunkResults.clear();
+                    if (breaker != null) {
+                        breaker.acquire();
+                    }
+                    if (plan.udp) {
+                        udpChannel = ModbusUdpChannel.getChannel(plan.host, plan.port, plan.timeout, plan.retransmitTimeout);
+                    } else if (plan.pipelined) {
+                        pipelinedConnection = ModbusPipelinedConnection.getConnection(plan.host, plan.port, plan.timeout, plan.pipelineDepth);
+                    } else if (plan.nio) {
+                        if (nioSession == null || !nioSession.isConnectedTo(plan.host, plan.port)) {
+                            if (nioSession != null) {
+                                nioSession.close();
+                            }
+                            nioSession = ModbusNioEngine.getInstance().openSession(plan.host, plan.port, plan.timeout);
+                        }
+                    } else if (plan.useExistingConnection) {
+                        Object existing = JMeterContextService.getContext().getVariables().getObject("modbusConnection");
+                        if (existing instanceof ModbusUdpChannel && ((ModbusUdpChannel) existing).isConnected()) {
+                            udpChannel = (ModbusUdpChannel) existing;
+                        } else {
+                            connection = (TCPMasterConnection) existing;
+                            if (connection == null || !connection.isConnected()) {
+                                throw new IllegalStateException("No existing Modbus connection available.");
+                            }
                         }
+                    } else if (plan.pooled) {
+                        pool = ModbusConnectionPool.getPool(plan.host, plan.port, plan.timeout, plan.transport,
+                                plan.poolMinSize, plan.poolMaxSize, Math.max(plan.keepAlive, 0));
+                        connection = pool.borrow(plan.timeout);
+                    } else if (warmConnection != null) {
+                        // Opened during the warm-up phase in threadStarted()
+                        connection = warmConnection;
+                        warmConnection = null;
+                        if (!connection.isConnected()) {
+                            connection.connect();
+                        }
+                        JMeterContextService.getContext().getVariables().putObject("modbusConnection", connection);
                     } else {
-                        InetAddress address = InetAddress.getByName(getIpAddress());
-                        connection = new TCPMasterConnection(address);
-                        connection.setPort(Integer.parseInt(getPort()));
-                        connection.setTimeout(Integer.parseInt(getTimeout()));
+                        connection = ModbusTransports.newConnection(plan.host, plan.port, plan.timeout, plan.transport);
                         connection.connect();
                         JMeterContextService.getContext().getVariables().putObject("modbusConnection", connection);
                     }
+                    ModbusTransports.recordHandshake(result, connection);
 
-                    if (getAddress().isEmpty() || getLength().isEmpty()) {
-                        throw new IllegalArgumentException("Address and Length fields cannot be empty.");
-                    }
-
-                    int address = Integer.parseInt(getAddress());
-                    int length = Integer.parseInt(getLength());
-                    ModbusTCPTransaction transaction = new ModbusTCPTransaction(connection);
-
-                    switch (readMethod) {
-                        case "Read Coils":
-                            ReadCoilsRequest readCoilsRequest = new ReadCoilsRequest(address, length);
-                            transaction.setRequest(readCoilsRequest);
-                            transaction.execute();
-                            ReadCoilsResponse readCoilsResponse = (ReadCoilsResponse) transaction.getResponse();
-                            result.setResponseData(readCoilsResponse.getCoils().toString().getBytes());
-                            break;
-                        case "Read Input Discretes":
-                            ReadInputDiscretesRequest readInputDiscretesRequest = new ReadInputDiscretesRequest(address, length);
-                            transaction.setRequest(readInputDiscretesRequest);
-                            transaction.execute();
-                            ReadInputDiscretesResponse readInputDiscretesResponse = (ReadInputDiscretesResponse) transaction.getResponse();
-                            result.setResponseData(readInputDiscretesResponse.getDiscretes().toString().getBytes());
-                            break;
-                        case "Read Holding Registers":
-                            ReadMultipleRegistersRequest readMultipleRegistersRequest = new ReadMultipleRegistersRequest(address, length);
-                            transaction.setRequest(readMultipleRegistersRequest);
-                            transaction.execute();
-                            ReadMultipleRegistersResponse readMultipleRegistersResponse = (ReadMultipleRegistersResponse) transaction.getResponse();
-                            log.info("Reading Holding Registers: {}", (Object) readMultipleRegistersResponse.getRegisters());
-                            result.setResponseData(convertValue(readMultipleRegistersResponse.getRegisters(), getDataType()).getBytes());
-                            break;
-                        case "Read Input Registers":
-                            ReadInputRegistersRequest readInputRegistersRequest = new ReadInputRegistersRequest(address, length);
-                            transaction.setRequest(readInputRegistersRequest);
-                            transaction.execute();
-                            ReadInputRegistersResponse readInputRegistersResponse = (ReadInputRegistersResponse) transaction.getResponse();
-                            log.info("Reading Input Registers: {}", (Object) readInputRegistersResponse.getRegisters());
-                            result.setResponseData(convertValue(readInputRegistersResponse.getRegisters(), getDataType()).getBytes());
-                            break;
-                        default:
-                            throw new IllegalArgumentException("Unsupported read method: " + readMethod);
+                    if (plan.fanOut) {
+                        fanOut = executeFanOut(connection);
+                    } else {
+                        ModbusResponse response = plan.isChunked()
+                                ? executeChunks(connection, pool, chunkResults)
+                                : executeRequest(connection, plan.request, pipelineStats);
+                        setResponse(result, response, 0);
                     }
 
                     success = true; // If the operation is successful, exit the loop
+                    if (breaker != null) {
+                        breaker.recordSuccess();
+                    }
+                    if (pool != null) {
+                        pool.release(connection);
+                        connection = null;
+                    }
                 } catch (Exception ex) {
+                    if (pool != null && connection != null) {
+                        // A Modbus exception response means the socket itself is still healthy
+                        if (ex instanceof ModbusSlaveException) {
+                            pool.release(connection);
+                        } else {
+                            pool.invalidate(connection);
+                        }
+                        connection = null;
+                    }
                     log.error("Attempt {} failed: ", attempt + 1, ex);
-                    if (attempt >= retryCount) {
-                        throw ex; // Rethrow the exception if all retries are exhausted
+                    if (breaker != null && ModbusErrorClassifier.isDeviceFailure(ex)) {
+                        breaker.recordFailure();
+                    } else if (breaker != null && ex instanceof ModbusSlaveException) {
+                        breaker.recordSuccess();
+                    }
+                    if (attempt >= plan.retryCount || !ModbusErrorClassifier.isRetryable(ex)) {
+                        throw ex; // Rethrow if retries are exhausted or the error would repeat on every attempt
+                    }
+                    retryDelay = plan.retryPolicy.nextDelay(attempt + 1, retryDelay);
+                    if (retryDelay > 0) {
+                        try {
+                            TimeUnit.MILLISECONDS.sleep(retryDelay);
+                        } catch (InterruptedException interrupted) {
+                            // The test is stopping; report the last failure and keep the interrupt for JMeter
+                            Thread.currentThread().interrupt();
+                            throw ex;
+                        }
                     }
                 }
             }
 
-            result.setResponseMessage("Read operation successful.");
-            result.setSuccessful(true);
+            if (fanOut != null) {
+                reportFanOut(result, fanOut);
+            } else {
+                result.setResponseMessage("Read operation successful.");
+                result.setSuccessful(true);
+            }
         } catch (Exception ex) {
             log.error("Error during Modbus read operation", ex);
             result.setResponseMessage("Error: " + ex.getMessage());
             result.setSuccessful(false);
         } finally {
             result.sampleEnd();
-            if (connection != null && !getUseExistingConnection()) {
-                if (keepAlive > 0) {
-                    scheduleConnectionClose(connection, keepAlive);
-                } else if (keepAlive == 0) {
+            if (scanned) {
+                scanClock.finishScan(result);
+            }
+            if (pipelinedConnection != null) {
+                recordPipelineMetrics(result);
+            }
+            if (udpChannel != null) {
+                recordUdpMetrics(result);
+            }
+            if (!chunkResults.isEmpty()) {
+                ModbusSampleMetrics.add(result, "Read-Chunks", chunkResults.size());
+                for (SampleResult chunkResult : chunkResults) {
+                    result.addRawSubResult(chunkResult);
+                }
+            }
+            if (connection != null && !plan.useExistingConnection && pool == null) {
+                if (plan.keepAlive > 0) {
+                    scheduleConnectionClose(connection, plan.keepAlive);
+                    ModbusSampleMetrics.add(result, "Pending-Timers", ModbusTimerWheel.getInstance().getPendingTimers());
+                } else if (plan.keepAlive == 0) {
                     log.info("Keeping the connection open indefinitely.");
                 } else {
                     connection.close();
@@ -246,75 +527,393 @@ public class ModbusReadSampler extends AbstractSampler {
         return result;
     }
 
-    private void scheduleConnectionClose(TCPMasterConnection connection, int keepAlive) {
-        if (connectionCloseTimer != null) {
-            connectionCloseTimer.cancel();
+    /**
+     * Sets the response of the unit at the given index as the result's response data.
+     * Returns true if the data is reported, i.e. unless only changes are reported and nothing changed.
+     */
+    private boolean setResponse(ModbusSampleResult result, ModbusResponse response, int unit) {
+        if (plan.reportChangesOnly) {
+            return reportChanges(result, response, unit);
+        } else if (plan.lazyDecoding) {
+            result.setLazyResponseData(response, plan.decoder);
+        } else {
+            result.setResponseData(plan.decode(response), StandardCharsets.UTF_8.name());
         }
-        connectionCloseTimer = new Timer();
-        connectionCloseTimer.schedule(new TimerTask() {
-            @Override
-            public void run() {
-                closeConnection(connection);
+        return true;
+    }
+
+    /**
+     * Compares the response with this thread's shadow image of the block and decodes it only if a value changed.
+     * Unchanged reads get empty response data, so listeners and JTL files only see the changes.
+     * A fan-out stores the changes of each unit in the change variable suffixed with _ and the unit ID.
+     */
+    private boolean reportChanges(ModbusSampleResult result, ModbusResponse response, int unit) {
+        ModbusShadowImage shadow = shadows.computeIfAbsent(plan.shadowKeys[unit], key -> new ModbusShadowImage());
+        boolean changed = shadow.update(response.getMessage());
+        if (changed) {
+            String decoded = plan.decode(response);
+            result.setResponseData(decoded, StandardCharsets.UTF_8.name());
+            if (!plan.changeVariable.isEmpty()) {
+                String variable = plan.fanOut ? plan.changeVariable + "_" + plan.unitIds[unit] : plan.changeVariable;
+                JMeterContextService.getContext().getVariables().put(variable, decoded);
             }
-        }, keepAlive);
+        } else {
+            result.setResponseData(new byte[0]);
+        }
+        ModbusSampleMetrics.add(result, "Changed", changed);
+        ModbusSampleMetrics.add(result, "Change-Count", shadow.getChanges());
+        ModbusSampleMetrics.add(result, "Change-Ratio-%", String.format(Locale.ROOT, "%.1f", shadow.getChangeRatio()));
+        ModbusSampleMetrics.add(result, "Change-Rate-per-s", String.format(Locale.ROOT, "%.3f", shadow.getChangesPerSecond()));
+        return changed;
     }
 
-    private void closeConnection(TCPMasterConnection connection) {
+    /**
+     * Reads the block from every unit of the fan-out. The values of each unit go to its sub-result.
+     */
+    private ModbusUnitFanOut executeFanOut(TCPMasterConnection connection) throws Exception {
+        return ModbusUnitFanOut.run(getName(), plan.unitIds, plan.fanOutParallelism, isMultiplexed(), pipelineStats, (unit, stats) -> {
+            ModbusFrameTemplate[] chunks = plan.unitChunks[unit];
+            if (chunks.length == 1) {
+                return executeRequest(connection, chunks[0], stats);
+            }
+            ModbusResponse[] parts = new ModbusResponse[chunks.length];
+            for (int i = 0; i < chunks.length; i++) {
+                parts[i] = executeRequest(connection, chunks[i], stats);
+            }
+            return ModbusReadChunks.merge(plan.functionCode, parts, plan.length);
+        });
+    }
+
+    private void reportFanOut(ModbusSampleResult result, ModbusUnitFanOut fanOut) {
+        int changedUnits = 0;
+        for (int unit = 0; unit < fanOut.size(); unit++) {
+            ModbusSampleResult subResult = fanOut.getSubResult(unit);
+            if (subResult.isSuccessful()) {
+                subResult.setResponseMessage("Read operation successful.");
+                if (setResponse(subResult, fanOut.getResponse(unit), unit)) {
+                    changedUnits++;
+                }
+            }
+            result.addRawSubResult(subResult);
+        }
+        int failedUnits = fanOut.getFailedUnits();
+        ModbusSampleMetrics.add(result, "Fan-Out-Units", fanOut.size());
+        ModbusSampleMetrics.add(result, "Fan-Out-Failed-Units", failedUnits);
+        if (plan.reportChangesOnly) {
+            ModbusSampleMetrics.add(result, "Changed-Units", changedUnits);
+        }
+        if (failedUnits > 0) {
+            result.setResponseMessage("Read failed for " + failedUnits + " of " + fanOut.size() + " units.");
+            result.setSuccessful(false);
+        } else {
+            result.setResponseMessage("Read operation successful.");
+            result.setSuccessful(true);
+        }
+    }
+
+    /**
+     * Compiles this thread's plan ahead of the first sample, e.g. so a coalescing controller can inspect it.
+     */
+    ModbusReadPlan compilePlan() {
+        plan = ModbusReadPlan.compile(this, plan);
+        return plan;
+    }
+
+    void setCoalescer(ModbusReadCoalescer coalescer) {
+        this.coalescer = coalescer;
+    }
+
+    @Override
+    public void testStarted() {
+        // Pools are created lazily by the first sampler that borrows from them
+    }
+
+    @Override
+    public void testStarted(String host) {
+        testStarted();
+    }
+
+    @Override
+    public void testEnded() {
+        ModbusConnectionPool.closeAll();
+        ModbusPipelinedConnection.closeAll();
+        ModbusNioEngine.closeAllSessions();
+        ModbusUdpChannel.closeAll();
+        ModbusTlsTransport.resetContext();
+        ModbusCircuitBreaker.resetAll();
+    }
+
+    @Override
+    public void testEnded(String host) {
+        testEnded();
+    }
+
+    /**
+     * Opens this thread's connection before its first sample and runs the configured warm-up transactions.
+     * Nothing done here is recorded as a sample result.
+     */
+    @Override
+    public void threadStarted() {
+        if (!getPreConnect()) {
+            return;
+        }
+        TCPMasterConnection connection = null;
+        ModbusConnectionPool pool = null;
         try {
-            if (connection != null && connection.isConnected()) {
-                connection.close();
-                JMeterContext context = JMeterContextService.getContext();
-                if (context != null && context.getVariables() != null) {
-                    context.getVariables().remove("modbusConnection");
+            plan = ModbusReadPlan.compile(this, plan);
+            ModbusEndpointCache.resolve(plan.host);
+            ModbusWarmUp.awaitConnectSlot();
+            if (plan.udp) {
+                udpChannel = ModbusUdpChannel.getChannel(plan.host, plan.port, plan.timeout, plan.retransmitTimeout);
+            } else if (plan.pipelined) {
+                pipelinedConnection = ModbusPipelinedConnection.getConnection(plan.host, plan.port, plan.timeout, plan.pipelineDepth);
+            } else if (plan.nio) {
+                nioSession = ModbusNioEngine.getInstance().openSession(plan.host, plan.port, plan.timeout);
+            } else if (plan.useExistingConnection) {
+                Object existing = JMeterContextService.getContext().getVariables().getObject("modbusConnection");
+                if (existing instanceof ModbusUdpChannel) {
+                    udpChannel = (ModbusUdpChannel) existing;
+                } else {
+                    connection = (TCPMasterConnection) existing;
+                    if (connection == null || !connection.isConnected()) {
+                        log.debug("No existing Modbus connection to warm up for {}", getName());
+                        return;
+                    }
                 }
-                log.info("Connection closed after keep-alive duration.");
+            } else if (plan.pooled) {
+                pool = ModbusConnectionPool.getPool(plan.host, plan.port, plan.timeout, plan.transport,
+                        plan.poolMinSize, plan.poolMaxSize, Math.max(plan.keepAlive, 0));
+                connection = pool.borrow(plan.timeout);
+            } else {
+                connection = ModbusTransports.newConnection(plan.host, plan.port, plan.timeout, plan.transport);
+                connection.connect();
+                warmConnection = connection;
+            }
+
+            for (int i = 0; i < plan.warmUpTransactions; i++) {
+                executeRequest(connection, plan.request, pipelineStats);
             }
+            log.debug("Warm-up for {} finished after {} transactions", getName(), plan.warmUpTransactions);
         } catch (Exception ex) {
-            log.error("Error closing connection", ex);
+            if (ex instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            log.warn("Warm-up for {} failed: {}", getName(), ex.getMessage());
+            if (pool != null && connection != null && !(ex instanceof ModbusSlaveException)) {
+                pool.invalidate(connection);
+                connection = null;
+            }
+        } finally {
+            if (pool != null && connection != null) {
+                pool.release(connection);
+            }
+            pipelinedConnection = null;
+            udpChannel = null;
         }
     }
 
-    private String convertValue(InputRegister[] registers, String dataType) {
-        switch (dataType) {
-            case "Hexadecimal":
-                StringBuilder hexBuilder = new StringBuilder();
-                for (InputRegister register : registers) {
-                    hexBuilder.append(Integer.toHexString(register.getValue())).append(",");
-                }
-                return hexBuilder.toString().replaceAll(",$", "");
-            case "Integer":
-                StringBuilder intBuilder = new StringBuilder();
-                for (InputRegister register : registers) {
-                    intBuilder.append(register.getValue()).append(",");
-                }
-                return intBuilder.toString().replaceAll(",$", "");
-            case "Float":
-                StringBuilder floatBuilder = new StringBuilder();
-                for (int i = 0; i < registers.length; i += 2) {
-                    if (i + 1 < registers.length) {
-                        int high = registers[i].getValue();
-                        int low = registers[i + 1].getValue();
-                        int bits = (high << 16) | (low & 0xFFFF);
-                        float value = Float.intBitsToFloat(bits);
-                        log.info("High: {}, Low: {}, Bits: {}, Float: {}", high, low, bits, value);
-                        floatBuilder.append(value).append(",");
-                    }
+    @Override
+    public void threadFinished() {
+        if (warmConnection != null) {
+            closeConnection(warmConnection);
+            warmConnection = null;
+        }
+    }
+
+    /**
+     * Warms the shared endpoint cache before the sample starts so name lookups are not part of the elapsed time.
+     * A failed lookup is reported by the connection attempt itself.
+     */
+    private long resolveEndpoint() {
+        if (plan.useExistingConnection) {
+            return 0;
+        }
+        long start = System.nanoTime();
+        try {
+            ModbusEndpointCache.resolve(plan.host);
+        } catch (UnknownHostException ex) {
+            log.debug("Could not resolve {}: {}", plan.host, ex.getMessage());
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Returns true if this sample's requests are matched to responses by transaction ID, so they can be in flight together.
+     */
+    private boolean isMultiplexed() {
+        return udpChannel != null || pipelinedConnection != null || (nioSession != null && plan.nio);
+    }
+
+    private ModbusResponse executeRequest(TCPMasterConnection connection, ModbusFrameTemplate request,
+                                          ModbusPipelinedConnection.Stats stats) throws Exception {
+        if (udpChannel != null) {
+            return udpChannel.execute(request, stats);
+        }
+        if (pipelinedConnection != null) {
+            return pipelinedConnection.execute(request, plan.timeout, stats);
+        }
+        if (nioSession != null && plan.nio) {
+            return nioSession.execute(request, plan.timeout);
+        }
+        return ModbusTransactions.execute(connection, request.getRequest());
+    }
+
+    /**
+     * Reads every chunk of a split read and merges the answers. Pipelined, NIO, UDP and pooled reads share the chunks
+     * between this thread and helper workers; a pooled worker only helps if the pool has a connection to spare.
+     * Other connections read the chunks one after another.
+     */
+    private ModbusResponse executeChunks(TCPMasterConnection connection, ModbusConnectionPool pool,
+                                         List<SampleResult> chunkResults) throws Exception {
+        int count = plan.chunks.length;
+        ModbusResponse[] parts = new ModbusResponse[count];
+        SampleResult[] subResults = new SampleResult[count];
+        AtomicInteger nextChunk = new AtomicInteger();
+        int workers = pool != null ? Math.min(count, plan.poolMaxSize) - 1
+                : pipelinedConnection != null || udpChannel != null || plan.nio ? count - 1 : 0;
+        List<Future<ModbusPipelinedConnection.Stats>> futures = new ArrayList<>(Math.max(workers, 0));
+        List<AtomicBoolean> started = new ArrayList<>(Math.max(workers, 0));
+        for (int i = 0; i < workers; i++) {
+            AtomicBoolean workerStarted = new AtomicBoolean();
+            started.add(workerStarted);
+            futures.add(ModbusReadChunks.submit(() -> {
+                ModbusPipelinedConnection.Stats stats = new ModbusPipelinedConnection.Stats();
+                if (!workerStarted.compareAndSet(false, true)) {
+                    return stats;
                 }
-                return floatBuilder.toString().replaceAll(",$", "");
-            case "String":
-                StringBuilder stringBuilder = new StringBuilder();
-                for (InputRegister register : registers) {
-                    stringBuilder.append((char) (register.getValue() & 0xFF)).append((char) ((register.getValue() >> 8) & 0xFF));
+                readChunks(nextChunk, null, pool, stats, parts, subResults);
+                return stats;
+            }));
+        }
+        Exception failure = null;
+        try {
+            readChunks(nextChunk, connection, null, pipelineStats, parts, subResults);
+        } catch (Exception ex) {
+            failure = ex;
+        }
+        // Wait for every worker, even after a failure, so none still holds a pooled connection.
+        // Workers still queued behind other samples' work have nothing left to claim and are cancelled.
+        for (int i = 0; i < futures.size(); i++) {
+            Future<ModbusPipelinedConnection.Stats> future = futures.get(i);
+            if (started.get(i).compareAndSet(false, true)) {
+                future.cancel(false);
+                continue;
+            }
+            try {
+                pipelineStats.add(future.get());
+            } catch (ExecutionException ex) {
+                if (failure == null) {
+                    failure = ex.getCause() instanceof Exception ? (Exception) ex.getCause() : ex;
                 }
-                return stringBuilder.toString();
-            case "Boolean":
-                StringBuilder boolBuilder = new StringBuilder();
-                for (InputRegister register : registers) {
-                    boolBuilder.append(register.getValue() != 0).append(",");
+            }
+        }
+        for (SampleResult subResult : subResults) {
+            if (subResult != null) {
+                chunkResults.add(subResult);
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return ModbusReadChunks.merge(plan.functionCode, parts, plan.length);
+    }
+
+    /**
+     * Claims and reads chunks until none are left. Given a pool instead of a connection, borrows one without waiting
+     * and gives up quietly if none is free.
+     */
+    private void readChunks(AtomicInteger nextChunk, TCPMasterConnection connection, ModbusConnectionPool pool,
+                            ModbusPipelinedConnection.Stats stats, ModbusResponse[] parts, SampleResult[] subResults) throws Exception {
+        TCPMasterConnection borrowed = null;
+        if (pool != null) {
+            try {
+                borrowed = pool.borrow(0);
+            } catch (TimeoutException ex) {
+                return;
+            }
+            connection = borrowed;
+        }
+        boolean healthy = true;
+        try {
+            int index;
+            while ((index = nextChunk.getAndIncrement()) < parts.length) {
+                parts[index] = executeChunk(index, connection, stats, subResults);
+            }
+        } catch (Exception ex) {
+            // Stop the other workers from starting further chunks
+            nextChunk.set(parts.length);
+            healthy = ex instanceof ModbusSlaveException;
+            throw ex;
+        } finally {
+            if (borrowed != null) {
+                if (healthy) {
+                    pool.release(borrowed);
+                } else {
+                    pool.invalidate(borrowed);
                 }
-                return boolBuilder.toString().replaceAll(",$", "");
-            default:
-                throw new IllegalArgumentException("Unsupported data type: " + dataType);
+            }
+        }
+    }
+
+    /**
+     * Reads one chunk and records its timing as a sub-result.
+     */
+    private ModbusResponse executeChunk(int index, TCPMasterConnection connection,
+                                        ModbusPipelinedConnection.Stats stats, SampleResult[] subResults) throws Exception {
+        ModbusFrameTemplate chunk = plan.chunks[index];
+        int chunkLength = ModbusReadChunks.maxLength(plan.functionCode);
+        int first = plan.address + index * chunkLength;
+        int last = plan.address + Math.min((index + 1) * chunkLength, plan.length) - 1;
+        SampleResult subResult = new SampleResult();
+        subResult.setSampleLabel(getName() + " [" + first + "-" + last + "]");
+        subResult.setSamplerData("Address " + first + " to " + last);
+        subResults[index] = subResult;
+        subResult.sampleStart();
+        try {
+            ModbusResponse response = executeRequest(connection, chunk, stats);
+            subResult.setResponseMessage("Read operation successful.");
+            subResult.setSuccessful(true);
+            return response;
+        } catch (Exception ex) {
+            subResult.setResponseMessage("Error: " + ex.getMessage());
+            subResult.setSuccessful(false);
+            throw ex;
+        } finally {
+            subResult.sampleEnd();
+        }
+    }
+
+    private void recordPipelineMetrics(SampleResult result) {
+        ModbusSampleMetrics.add(result, "Pipeline-In-Flight", pipelineStats.getMaxInFlight());
+        ModbusSampleMetrics.addMillis(result, "Pipeline-Slot-Wait-ms", pipelineStats.getSlotWaitNanos());
+        ModbusSampleMetrics.addMillis(result, "Pipeline-Match-ms", pipelineStats.getMatchNanos());
+        ModbusSampleMetrics.add(result, "Pipeline-Lost-Responses", pipelineStats.getLostTransactions());
+        ModbusSampleMetrics.add(result, "Pipeline-Unmatched-Responses", pipelinedConnection.takeUnmatchedResponses());
+    }
+
+    private void recordUdpMetrics(SampleResult result) {
+        ModbusSampleMetrics.add(result, "UDP-Retransmits", pipelineStats.getRetransmits());
+        ModbusSampleMetrics.add(result, "UDP-Lost", pipelineStats.getLostTransactions());
+        ModbusSampleMetrics.add(result, "UDP-Duplicates", udpChannel.takeDuplicateResponses());
+    }
+
+    private void scheduleConnectionClose(TCPMasterConnection connection, int keepAlive) {
+        if (keepAliveTimeout != null && keepAliveTimeout.cancel() && keepAliveConnection != connection) {
+            // The previous connection has been replaced by a new one and would otherwise never be closed
+            closeConnection(keepAliveConnection);
+        }
+        keepAliveConnection = connection;
+        keepAliveTimeout = ModbusTimerWheel.getInstance().schedule(() -> closeConnection(connection), keepAlive, TimeUnit.MILLISECONDS);
+    }
+
+    private void closeConnection(TCPMasterConnection connection) {
+        try {
+            if (connection != null && connection.isConnected()) {
+                connection.close();
+                log.info("Connection closed after keep-alive duration.");
+            }
+        } catch (Exception ex) {
+            log.error("Error closing connection", ex);
         }
     }
 }
@@ -43,14 +43,34 @@ public class ModbusReadSamplerGui extends AbstractSamplerGui {
     private static final Logger logger = LogManager.getLogger(ModbusReadSamplerGui.class);
 
     private JCheckBox useExistingConnectionCheckbox;
+    private JCheckBox usePooledConnectionCheckbox;
+    private JTextField poolMinSizeField;
+    private JTextField poolMaxSizeField;
+    private JComboBox<String> clientModeDropdown;
+    private JComboBox<String> transportDropdown;
+    private JTextField retransmitTimeoutField;
+    private JTextField pipelineDepthField;
+    private JCheckBox preConnectCheckbox;
+    private JTextField warmUpTransactionsField;
     private JTextField ipAddressField;
     private JTextField portField;
     private JTextField addressField;
     private JTextField lengthField;
     private JComboBox<String> readMethodDropdown;
     private JComboBox<String> dataTypeDropdown;
+    private JComboBox<String> wordOrderDropdown;
+    private JCheckBox lazyDecodingCheckbox;
+    private JTextField scanIntervalField;
+    private JComboBox<String> scanPolicyDropdown;
+    private JCheckBox reportChangesOnlyCheckbox;
+    private JTextField changeVariableField;
+    private JTextField unitIdField;
+    private JTextField fanOutParallelismField;
     private JTextField keepAliveField;
     private JTextField retryCountField;
+    private JComboBox<String> retryPolicyDropdown;
+    private JTextField retryDelayField;
+    private JTextField retryMaxDelayField;
     private JTextField timeoutField;
 
     private Map<String, String[]> dataTypeToReadMethods;
@@ -71,6 +91,19 @@ public class ModbusReadSamplerGui extends AbstractSamplerGui {
 
         useExistingConnectionCheckbox = new JCheckBox("Use Existing Connection");
         useExistingConnectionCheckbox.addActionListener(e -> toggleConnectionFields());
+        usePooledConnectionCheckbox = new JCheckBox("Use Pooled Connection");
+        usePooledConnectionCheckbox.addActionListener(e -> toggleConnectionFields());
+        poolMinSizeField = new JTextField(5);
+        poolMaxSizeField = new JTextField(5);
+        clientModeDropdown = new JComboBox<>(new String[]{ModbusReadSampler.CLIENT_MODE_BLOCKING, ModbusReadSampler.CLIENT_MODE_PIPELINED, ModbusReadSampler.CLIENT_MODE_NIO});
+        clientModeDropdown.addActionListener(e -> toggleConnectionFields());
+        transportDropdown = new JComboBox<>(new String[]{ModbusTransports.TRANSPORT_TCP, ModbusTransports.TRANSPORT_RTU_OVER_TCP, ModbusTransports.TRANSPORT_UDP, ModbusTransports.TRANSPORT_TLS});
+        transportDropdown.addActionListener(e -> toggleConnectionFields());
+        retransmitTimeoutField = new JTextField(5);
+        pipelineDepthField = new JTextField(5);
+        preConnectCheckbox = new JCheckBox("Pre-Connect on Thread Start");
+        preConnectCheckbox.addActionListener(e -> toggleConnectionFields());
+        warmUpTransactionsField = new JTextField(5);
 
         ipAddressField = new JTextField(15);
         portField = new JTextField(5);
@@ -78,11 +111,23 @@ public class ModbusReadSamplerGui extends AbstractSamplerGui {
         lengthField = new JTextField(5);
 
         readMethodDropdown = new JComboBox<>(new String[]{"Read Coils", "Read Input Discretes", "Read Holding Registers", "Read Input Registers"});
-        dataTypeDropdown = new JComboBox<>(new String[]{"Integer", "Hexadecimal", "Float", "String", "Boolean"});
+        dataTypeDropdown = new JComboBox<>(new String[]{"Integer", "Hexadecimal", "Float", "Int32", "UInt32", "Int64", "Float64", "String", "Boolean"});
+        wordOrderDropdown = new JComboBox<>(ModbusWordOrder.names());
         dataTypeDropdown.addActionListener(e -> updateReadMethodDropdown());
+        lazyDecodingCheckbox = new JCheckBox("Decode Response Only When Read");
+        scanIntervalField = new JTextField(5);
+        scanPolicyDropdown = new JComboBox<>(new String[]{ModbusScanClock.POLICY_SKIP, ModbusScanClock.POLICY_CATCH_UP});
+        reportChangesOnlyCheckbox = new JCheckBox("Decode and Report Only Changed Values");
+        reportChangesOnlyCheckbox.addActionListener(e -> changeVariableField.setEnabled(reportChangesOnlyCheckbox.isSelected()));
+        changeVariableField = new JTextField(10);
+        unitIdField = new JTextField(10);
+        fanOutParallelismField = new JTextField(5);
 
         keepAliveField = new JTextField(5);
         retryCountField = new JTextField(5);
+        retryPolicyDropdown = new JComboBox<>(new String[]{ModbusRetryPolicy.EXPONENTIAL, ModbusRetryPolicy.DECORRELATED_JITTER, ModbusRetryPolicy.FIXED});
+        retryDelayField = new JTextField(5);
+        retryMaxDelayField = new JTextField(5);
         timeoutField = new JTextField(5);
 
         connectionPanel.setBorder(BorderFactory.createTitledBorder("Connection Settings"));
@@ -164,6 +209,133 @@ public class ModbusReadSamplerGui extends AbstractSamplerGui {
         timeoutField.setPreferredSize(fieldDimension);
         connectionPanel.add(timeoutField, gbc);
 
+        gbc.gridx = 0;
+        gbc.gridy = 6;
+        gbc.anchor = GridBagConstraints.LINE_END;
+        JLabel usePooledConnectionLabel = new JLabel("Use Pooled Connection:");
+        usePooledConnectionLabel.setPreferredSize(labelDimension);
+        connectionPanel.add(usePooledConnectionLabel, gbc);
+        gbc.gridx = 1;
+        gbc.anchor = GridBagConstraints.LINE_START;
+        connectionPanel.add(usePooledConnectionCheckbox, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 7;
+        gbc.anchor = GridBagConstraints.LINE_END;
+        JLabel poolMinSizeLabel = new JLabel("Pool Min Size:");
+        poolMinSizeLabel.setPreferredSize(labelDimension);
+        connectionPanel.add(poolMinSizeLabel, gbc);
+        gbc.gridx = 1;
+        gbc.anchor = GridBagConstraints.LINE_START;
+        poolMinSizeField.setPreferredSize(fieldDimension);
+        connectionPanel.add(poolMinSizeField, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 8;
+        gbc.anchor = GridBagConstraints.LINE_END;
+        JLabel poolMaxSizeLabel = new JLabel("Pool Max Size:");
+        poolMaxSizeLabel.setPreferredSize(labelDimension);
+        connectionPanel.add(poolMaxSizeLabel, gbc);
+        gbc.gridx = 1;
+        gbc.anchor = GridBagConstraints.LINE_START;
+        poolMaxSizeField.setPreferredSize(fieldDimension);
+        connectionPanel.add(poolMaxSizeField, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 9;
+        gbc.anchor = GridBagConstraints.LINE_END;
+        JLabel clientModeLabel = new JLabel("Client Mode:");
+        clientModeLabel.setPreferredSize(labelDimension);
+        connectionPanel.add(clientModeLabel, gbc);
+        gbc.gridx = 1;
+        gbc.anchor = GridBagConstraints.LINE_START;
+        connectionPanel.add(clientModeDropdown, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 10;
+        gbc.anchor = GridBagConstraints.LINE_END;
+        JLabel pipelineDepthLabel = new JLabel("Pipeline Depth:");
+        pipelineDepthLabel.setPreferredSize(labelDimension);
+        connectionPanel.add(pipelineDepthLabel, gbc);
+        gbc.gridx = 1;
+        gbc.anchor = GridBagConstraints.LINE_START;
+        pipelineDepthField.setPreferredSize(fieldDimension);
+        connectionPanel.add(pipelineDepthField, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 11;
+        gbc.anchor = GridBagConstraints.LINE_END;
+        JLabel preConnectLabel = new JLabel("Pre-Connect:");
+        preConnectLabel.setPreferredSize(labelDimension);
+        connectionPanel.add(preConnectLabel, gbc);
+        gbc.gridx = 1;
+        gbc.anchor = GridBagConstraints.LINE_START;
+        connectionPanel.add(preConnectCheckbox, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 12;
+        gbc.anchor = GridBagConstraints.LINE_END;
+        JLabel warmUpTransactionsLabel = new JLabel("Warm-Up Transactions:");
+        warmUpTransactionsLabel.setPreferredSize(labelDimension);
+        connectionPanel.add(warmUpTransactionsLabel, gbc);
+        gbc.gridx = 1;
+        gbc.anchor = GridBagConstraints.LINE_START;
+        warmUpTransactionsField.setPreferredSize(fieldDimension);
+        connectionPanel.add(warmUpTransactionsField, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 13;
+        gbc.anchor = GridBagConstraints.LINE_END;
+        JLabel retryPolicyLabel = new JLabel("Retry Policy:");
+        retryPolicyLabel.setPreferredSize(labelDimension);
+        connectionPanel.add(retryPolicyLabel, gbc);
+        gbc.gridx = 1;
+        gbc.anchor = GridBagConstraints.LINE_START;
+        connectionPanel.add(retryPolicyDropdown, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 14;
+        gbc.anchor = GridBagConstraints.LINE_END;
+        JLabel retryDelayLabel = new JLabel("Retry Delay (ms):");
+        retryDelayLabel.setPreferredSize(labelDimension);
+        connectionPanel.add(retryDelayLabel, gbc);
+        gbc.gridx = 1;
+        gbc.anchor = GridBagConstraints.LINE_START;
+        retryDelayField.setPreferredSize(fieldDimension);
+        connectionPanel.add(retryDelayField, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 15;
+        gbc.anchor = GridBagConstraints.LINE_END;
+        JLabel retryMaxDelayLabel = new JLabel("Max Retry Delay (ms):");
+        retryMaxDelayLabel.setPreferredSize(labelDimension);
+        connectionPanel.add(retryMaxDelayLabel, gbc);
+        gbc.gridx = 1;
+        gbc.anchor = GridBagConstraints.LINE_START;
+        retryMaxDelayField.setPreferredSize(fieldDimension);
+        connectionPanel.add(retryMaxDelayField, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 16;
+        gbc.anchor = GridBagConstraints.LINE_END;
+        JLabel transportLabel = new JLabel("Transport:");
+        transportLabel.setPreferredSize(labelDimension);
+        connectionPanel.add(transportLabel, gbc);
+        gbc.gridx = 1;
+        gbc.anchor = GridBagConstraints.LINE_START;
+        connectionPanel.add(transportDropdown, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 17;
+        gbc.anchor = GridBagConstraints.LINE_END;
+        JLabel retransmitTimeoutLabel = new JLabel("Retransmit Timeout (ms):");
+        retransmitTimeoutLabel.setPreferredSize(labelDimension);
+        connectionPanel.add(retransmitTimeoutLabel, gbc);
+        gbc.gridx = 1;
+        gbc.anchor = GridBagConstraints.LINE_START;
+        retransmitTimeoutField.setPreferredSize(fieldDimension);
+        connectionPanel.add(retransmitTimeoutField, gbc);
+
         // Modbus Read Settings
         gbc.gridx = 0;
         gbc.gridy = 0;
@@ -209,6 +381,92 @@ public class ModbusReadSamplerGui extends AbstractSamplerGui {
         readMethodDropdown.setPreferredSize(fieldDimension);
         settingsPanel.add(readMethodDropdown, gbc);
 
+        gbc.gridx = 0;
+        gbc.gridy = 4;
+        gbc.anchor = GridBagConstraints.LINE_END;
+        JLabel lazyDecodingLabel = new JLabel("Lazy Decoding:");
+        lazyDecodingLabel.setPreferredSize(labelDimension);
+        settingsPanel.add(lazyDecodingLabel, gbc);
+        gbc.gridx = 1;
+        gbc.anchor = GridBagConstraints.LINE_START;
+        settingsPanel.add(lazyDecodingCheckbox, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 5;
+        gbc.anchor = GridBagConstraints.LINE_END;
+        JLabel wordOrderLabel = new JLabel("Word Order:");
+        wordOrderLabel.setPreferredSize(labelDimension);
+        settingsPanel.add(wordOrderLabel, gbc);
+        gbc.gridx = 1;
+        gbc.anchor = GridBagConstraints.LINE_START;
+        wordOrderDropdown.setPreferredSize(fieldDimension);
+        settingsPanel.add(wordOrderDropdown, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 6;
+        gbc.anchor = GridBagConstraints.LINE_END;
+        JLabel scanIntervalLabel = new JLabel("Scan Interval (ms, 0=off):");
+        scanIntervalLabel.setPreferredSize(labelDimension);
+        settingsPanel.add(scanIntervalLabel, gbc);
+        gbc.gridx = 1;
+        gbc.anchor = GridBagConstraints.LINE_START;
+        scanIntervalField.setPreferredSize(fieldDimension);
+        settingsPanel.add(scanIntervalField, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 7;
+        gbc.anchor = GridBagConstraints.LINE_END;
+        JLabel scanPolicyLabel = new JLabel("Missed Scans:");
+        scanPolicyLabel.setPreferredSize(labelDimension);
+        settingsPanel.add(scanPolicyLabel, gbc);
+        gbc.gridx = 1;
+        gbc.anchor = GridBagConstraints.LINE_START;
+        scanPolicyDropdown.setPreferredSize(fieldDimension);
+        settingsPanel.add(scanPolicyDropdown, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 8;
+        gbc.anchor = GridBagConstraints.LINE_END;
+        JLabel reportChangesOnlyLabel = new JLabel("Report Changes Only:");
+        reportChangesOnlyLabel.setPreferredSize(labelDimension);
+        settingsPanel.add(reportChangesOnlyLabel, gbc);
+        gbc.gridx = 1;
+        gbc.anchor = GridBagConstraints.LINE_START;
+        settingsPanel.add(reportChangesOnlyCheckbox, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 9;
+        gbc.anchor = GridBagConstraints.LINE_END;
+        JLabel changeVariableLabel = new JLabel("Change Variable:");
+        changeVariableLabel.setPreferredSize(labelDimension);
+        settingsPanel.add(changeVariableLabel, gbc);
+        gbc.gridx = 1;
+        gbc.anchor = GridBagConstraints.LINE_START;
+        changeVariableField.setPreferredSize(fieldDimension);
+        settingsPanel.add(changeVariableField, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 10;
+        gbc.anchor = GridBagConstraints.LINE_END;
+        JLabel unitIdLabel = new JLabel("Unit ID (e.g. 1 or 1-8,17):");
+        unitIdLabel.setPreferredSize(labelDimension);
+        settingsPanel.add(unitIdLabel, gbc);
+        gbc.gridx = 1;
+        gbc.anchor = GridBagConstraints.LINE_START;
+        unitIdField.setPreferredSize(fieldDimension);
+        settingsPanel.add(unitIdField, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 11;
+        gbc.anchor = GridBagConstraints.LINE_END;
+        JLabel fanOutParallelismLabel = new JLabel("Fan-Out Parallelism:");
+        fanOutParallelismLabel.setPreferredSize(labelDimension);
+        settingsPanel.add(fanOutParallelismLabel, gbc);
+        gbc.gridx = 1;
+        gbc.anchor = GridBagConstraints.LINE_START;
+        fanOutParallelismField.setPreferredSize(fieldDimension);
+        settingsPanel.add(fanOutParallelismField, gbc);
+
         mainPanel.add(connectionPanel, BorderLayout.NORTH);
 
         JPanel centerPanel = new JPanel(new BorderLayout());
@@ -254,6 +512,10 @@ public class ModbusReadSamplerGui extends AbstractSamplerGui {
         dataTypeToReadMethods.put("Integer", new String[]{"Read Holding Registers", "Read Input Registers"});
         dataTypeToReadMethods.put("Hexadecimal", new String[]{"Read Holding Registers", "Read Input Registers"});
         dataTypeToReadMethods.put("Float", new String[]{"Read Holding Registers", "Read Input Registers"});
+        dataTypeToReadMethods.put("Int32", new String[]{"Read Holding Registers", "Read Input Registers"});
+        dataTypeToReadMethods.put("UInt32", new String[]{"Read Holding Registers", "Read Input Registers"});
+        dataTypeToReadMethods.put("Int64", new String[]{"Read Holding Registers", "Read Input Registers"});
+        dataTypeToReadMethods.put("Float64", new String[]{"Read Holding Registers", "Read Input Registers"});
         dataTypeToReadMethods.put("String", new String[]{"Read Holding Registers"});
         dataTypeToReadMethods.put("Boolean", new String[]{"Read Coils", "Read Input Discretes"});
     }
@@ -274,12 +536,29 @@ public class ModbusReadSamplerGui extends AbstractSamplerGui {
     }
 
     private void toggleConnectionFields() {
-        boolean useExisting = useExistingConnectionCheckbox.isSelected();
+        boolean pipelined = ModbusReadSampler.CLIENT_MODE_PIPELINED.equals(clientModeDropdown.getSelectedItem());
+        boolean customClient = pipelined || ModbusReadSampler.CLIENT_MODE_NIO.equals(clientModeDropdown.getSelectedItem());
+        useExistingConnectionCheckbox.setEnabled(!customClient);
+        boolean useExisting = !customClient && useExistingConnectionCheckbox.isSelected();
         ipAddressField.setEnabled(!useExisting);
         portField.setEnabled(!useExisting);
         keepAliveField.setEnabled(!useExisting);
         retryCountField.setEnabled(!useExisting);
+        retryPolicyDropdown.setEnabled(!useExisting);
+        retryDelayField.setEnabled(!useExisting);
+        retryMaxDelayField.setEnabled(!useExisting);
         timeoutField.setEnabled(!useExisting);
+        usePooledConnectionCheckbox.setEnabled(!useExisting && !customClient);
+        boolean usePooled = !useExisting && !customClient && usePooledConnectionCheckbox.isSelected();
+        poolMinSizeField.setEnabled(usePooled);
+        poolMaxSizeField.setEnabled(usePooled);
+        // RTU frames carry no transaction identifier, so only blocking connections can use them
+        transportDropdown.setEnabled(!useExisting && !customClient);
+        retransmitTimeoutField.setEnabled(!useExisting && !customClient && ModbusTransports.isUdp((String) transportDropdown.getSelectedItem()));
+        // Only clients that match responses by transaction ID can keep several units in flight
+        fanOutParallelismField.setEnabled(customClient || ModbusTransports.isUdp((String) transportDropdown.getSelectedItem()));
+        pipelineDepthField.setEnabled(pipelined);
+        warmUpTransactionsField.setEnabled(preConnectCheckbox.isSelected());
     }
 
     @Override
@@ -287,6 +566,15 @@ public class ModbusReadSamplerGui extends AbstractSamplerGui {
         super.configure(element);
         ModbusReadSampler sampler = (ModbusReadSampler) element;
         useExistingConnectionCheckbox.setSelected(sampler.getUseExistingConnection());
+        usePooledConnectionCheckbox.setSelected(sampler.getUsePooledConnection());
+        poolMinSizeField.setText(sampler.getPoolMinSize());
+        poolMaxSizeField.setText(sampler.getPoolMaxSize());
+        clientModeDropdown.setSelectedItem(sampler.getClientMode());
+        transportDropdown.setSelectedItem(sampler.getTransport());
+        retransmitTimeoutField.setText(sampler.getRetransmitTimeout());
+        pipelineDepthField.setText(sampler.getPipelineDepth());
+        preConnectCheckbox.setSelected(sampler.getPreConnect());
+        warmUpTransactionsField.setText(sampler.getWarmUpTransactions());
         ipAddressField.setText(sampler.getIpAddress());
         portField.setText(sampler.getPort());
         addressField.setText(sampler.getAddress());
@@ -295,8 +583,20 @@ public class ModbusReadSamplerGui extends AbstractSamplerGui {
         // Update readMethodDropdown after setting dataTypeDropdown
         updateReadMethodDropdown();
         readMethodDropdown.setSelectedItem(sampler.getReadMethod());
+        wordOrderDropdown.setSelectedItem(sampler.getWordOrder());
+        lazyDecodingCheckbox.setSelected(sampler.getLazyDecoding());
+        scanIntervalField.setText(sampler.getScanInterval());
+        scanPolicyDropdown.setSelectedItem(sampler.getScanPolicy());
+        reportChangesOnlyCheckbox.setSelected(sampler.getReportChangesOnly());
+        changeVariableField.setText(sampler.getChangeVariable());
+        changeVariableField.setEnabled(reportChangesOnlyCheckbox.isSelected());
+        unitIdField.setText(sampler.getUnitId());
+        fanOutParallelismField.setText(sampler.getFanOutParallelism());
         keepAliveField.setText(sampler.getKeepAlive());
         retryCountField.setText(sampler.getRetryCount());
+        retryPolicyDropdown.setSelectedItem(sampler.getRetryPolicy());
+        retryDelayField.setText(sampler.getRetryDelay());
+        retryMaxDelayField.setText(sampler.getRetryMaxDelay());
         timeoutField.setText(sampler.getTimeout());
         toggleConnectionFields();
     }
@@ -313,14 +613,34 @@ public class ModbusReadSamplerGui extends AbstractSamplerGui {
         super.configureTestElement(element);
         ModbusReadSampler sampler = (ModbusReadSampler) element;
         sampler.setUseExistingConnection(useExistingConnectionCheckbox.isSelected());
+        sampler.setUsePooledConnection(usePooledConnectionCheckbox.isSelected());
+        sampler.setPoolMinSize(poolMinSizeField.getText());
+        sampler.setPoolMaxSize(poolMaxSizeField.getText());
+        sampler.setClientMode(clientModeDropdown.getSelectedItem() != null ? clientModeDropdown.getSelectedItem().toString() : "");
+        sampler.setTransport(transportDropdown.getSelectedItem() != null ? transportDropdown.getSelectedItem().toString() : ModbusTransports.TRANSPORT_TCP);
+        sampler.setRetransmitTimeout(retransmitTimeoutField.getText());
+        sampler.setPipelineDepth(pipelineDepthField.getText());
+        sampler.setPreConnect(preConnectCheckbox.isSelected());
+        sampler.setWarmUpTransactions(warmUpTransactionsField.getText());
         sampler.setIpAddress(ipAddressField.getText());
         sampler.setPort(portField.getText());
         sampler.setAddress(addressField.getText());
         sampler.setLength(lengthField.getText());
         sampler.setReadMethod(readMethodDropdown.getSelectedItem() != null ? readMethodDropdown.getSelectedItem().toString() : "");
         sampler.setDataType(dataTypeDropdown.getSelectedItem() != null ? dataTypeDropdown.getSelectedItem().toString() : "");
+        sampler.setWordOrder(wordOrderDropdown.getSelectedItem() != null ? wordOrderDropdown.getSelectedItem().toString() : "");
+        sampler.setLazyDecoding(lazyDecodingCheckbox.isSelected());
+        sampler.setScanInterval(scanIntervalField.getText());
+        sampler.setScanPolicy(scanPolicyDropdown.getSelectedItem() != null ? scanPolicyDropdown.getSelectedItem().toString() : "");
+        sampler.setReportChangesOnly(reportChangesOnlyCheckbox.isSelected());
+        sampler.setChangeVariable(changeVariableField.getText());
+        sampler.setUnitId(unitIdField.getText());
+        sampler.setFanOutParallelism(fanOutParallelismField.getText());
         sampler.setKeepAlive(keepAliveField.getText());
         sampler.setRetryCount(retryCountField.getText());
+        sampler.setRetryPolicy(retryPolicyDropdown.getSelectedItem() != null ? retryPolicyDropdown.getSelectedItem().toString() : "");
+        sampler.setRetryDelay(retryDelayField.getText());
+        sampler.setRetryMaxDelay(retryMaxDelayField.getText());
         sampler.setTimeout(timeoutField.getText());
     }
 
@@ -328,14 +648,35 @@ public class ModbusReadSamplerGui extends AbstractSamplerGui {
     public void clearGui() {
         super.clearGui();
         useExistingConnectionCheckbox.setSelected(false);
+        usePooledConnectionCheckbox.setSelected(false);
+        poolMinSizeField.setText("0");
+        poolMaxSizeField.setText("10");
+        clientModeDropdown.setSelectedIndex(0);
+        transportDropdown.setSelectedIndex(0);
+        pipelineDepthField.setText("8");
+        preConnectCheckbox.setSelected(false);
+        warmUpTransactionsField.setText("0");
         ipAddressField.setText("");
         portField.setText("");
         addressField.setText("");
         lengthField.setText("");
         readMethodDropdown.setSelectedIndex(0);
         dataTypeDropdown.setSelectedIndex(0);
+        wordOrderDropdown.setSelectedIndex(0);
+        lazyDecodingCheckbox.setSelected(false);
+        scanIntervalField.setText("0");
+        scanPolicyDropdown.setSelectedIndex(0);
+        reportChangesOnlyCheckbox.setSelected(false);
+        changeVariableField.setText("");
+        changeVariableField.setEnabled(false);
+        unitIdField.setText("1");
+        fanOutParallelismField.setText("8");
         keepAliveField.setText("");
         retryCountField.setText("");
+        retryPolicyDropdown.setSelectedIndex(0);
+        retryDelayField.setText("100");
+        retryMaxDelayField.setText("2000");
+        retransmitTimeoutField.setText("0");
         timeoutField.setText("");
         toggleConnectionFields();
     }
@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+
+package com.example.jmeter.modbus;
+
+import com.ghgande.j2mod.modbus.procimg.InputRegister;
+
+/**
+ * Converts between blocks of 16-bit register values and primitive arrays, honouring a {@link ModbusWordOrder}.
+ * Register blocks are plain {@code int[]} holding one unsigned 16-bit value per element; helpers convert from
+ * j2mod registers, {@code short[]} and raw big-endian {@code byte[]} payloads. Nothing is boxed.
+ */
+public final class ModbusRegisterCodec {
+
+    private ModbusRegisterCodec() {
+    }
+
+    public static int[] words(InputRegister[] registers) {
+        int[] words = new int[registers.length];
+        for (int i = 0; i < registers.length; i++) {
+            words[i] = registers[i].getValue();
+        }
+        return words;
+    }
+
+    public static int[] words(short[] registers) {
+        int[] words = new int[registers.length];
+        for (int i = 0; i < registers.length; i++) {
+            words[i] = registers[i] & 0xFFFF;
+        }
+        return words;
+    }
+
+    /**
+     * Reads count registers from a big-endian payload, as found in the data of a read registers response.
+     */
+    public static int[] words(byte[] data, int offset, int count) {
+        int[] words = new int[count];
+        for (int i = 0; i < count; i++) {
+            words[i] = ((data[offset + 2 * i] & 0xFF) << 8) | (data[offset + 2 * i + 1] & 0xFF);
+        }
+        return words;
+    }
+
+    public static int[] decodeInt32(int[] words, ModbusWordOrder order) {
+        int[] values = new int[words.length / 2];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (int) assemble(words, i * 2, 2, order);
+        }
+        return values;
+    }
+
+    public static long[] decodeUInt32(int[] words, ModbusWordOrder order) {
+        long[] values = new long[words.length / 2];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = assemble(words, i * 2, 2, order);
+        }
+        return values;
+    }
+
+    public static long[] decodeInt64(int[] words, ModbusWordOrder order) {
+        long[] values = new long[words.length / 4];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = assemble(words, i * 4, 4, order);
+        }
+        return values;
+    }
+
+    public static float[] decodeFloat32(int[] words, ModbusWordOrder order) {
+        float[] values = new float[words.length / 2];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = Float.intBitsToFloat((int) assemble(words, i * 2, 2, order));
+        }
+        return values;
+    }
+
+    public static double[] decodeFloat64(int[] words, ModbusWordOrder order) {
+        double[] values = new double[words.length / 4];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = Double.longBitsToDouble(assemble(words, i * 4, 4, order));
+        }
+        return values;
+    }
+
+    public static int[] encodeInt32(int[] values, ModbusWordOrder order) {
+        int[] words = new int[values.length * 2];
+        for (int i = 0; i < values.length; i++) {
+            disassemble(values[i] & 0xFFFFFFFFL, words, i * 2, 2, order);
+        }
+        return words;
+    }
+
+    public static int[] encodeInt64(long[] values, ModbusWordOrder order) {
+        int[] words = new int[values.length * 4];
+        for (int i = 0; i < values.length; i++) {
+            disassemble(values[i], words, i * 4, 4, order);
+        }
+        return words;
+    }
+
+    public static int[] encodeFloat32(float[] values, ModbusWordOrder order) {
+        int[] words = new int[values.length * 2];
+        for (int i = 0; i < values.length; i++) {
+            disassemble(Float.floatToIntBits(values[i]) & 0xFFFFFFFFL, words, i * 2, 2, order);
+        }
+        return words;
+    }
+
+    public static int[] encodeFloat64(double[] values, ModbusWordOrder order) {
+        int[] words = new int[values.length * 4];
+        for (int i = 0; i < values.length; i++) {
+            disassemble(Double.doubleToLongBits(values[i]), words, i * 4, 4, order);
+        }
+        return words;
+    }
+
+    /**
+     * Combines count registers starting at offset into one value, most significant byte first.
+     */
+    static long assemble(int[] words, int offset, int count, ModbusWordOrder order) {
+        long value = 0;
+        for (int i = 0; i < count; i++) {
+            int word = words[offset + (order.reverseWords ? count - 1 - i : i)];
+            if (order.swapBytes) {
+                word = swapBytes(word);
+            }
+            value = (value << 16) | (word & 0xFFFF);
+        }
+        return value;
+    }
+
+    static void disassemble(long value, int[] words, int offset, int count, ModbusWordOrder order) {
+        for (int i = count - 1; i >= 0; i--) {
+            int word = (int) (value & 0xFFFF);
+            if (order.swapBytes) {
+                word = swapBytes(word);
+            }
+            words[offset + (order.reverseWords ? count - 1 - i : i)] = word;
+            value >>>= 16;
+        }
+    }
+
+    private static int swapBytes(int word) {
+        return ((word & 0xFF) << 8) | ((word >> 8) & 0xFF);
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+
+package com.example.jmeter.modbus;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Computes the delay before the next retry of a failed Modbus transaction.
+ */
+public abstract class ModbusRetryPolicy {
+    public static final String FIXED = "Fixed";
+    public static final String EXPONENTIAL = "Exponential";
+    public static final String DECORRELATED_JITTER = "Decorrelated Jitter";
+
+    protected final long baseDelay;
+    protected final long maxDelay;
+
+    protected ModbusRetryPolicy(long baseDelay, long maxDelay) {
+        this.baseDelay = Math.max(0, baseDelay);
+        this.maxDelay = Math.max(this.baseDelay, maxDelay);
+    }
+
+    /**
+     * Returns the policy with the given name, falling back to a fixed delay for unknown names.
+     */
+    public static ModbusRetryPolicy create(String name, long baseDelay, long maxDelay) {
+        if (EXPONENTIAL.equals(name)) {
+            return new Exponential(baseDelay, maxDelay);
+        }
+        if (DECORRELATED_JITTER.equals(name)) {
+            return new DecorrelatedJitter(baseDelay, maxDelay);
+        }
+        return new Fixed(baseDelay, maxDelay);
+    }
+
+    /**
+     * Returns the delay in milliseconds before retry number attempt (starting at 1), given the previous delay.
+     */
+    public abstract long nextDelay(int attempt, long previousDelay);
+
+    private static final class Fixed extends ModbusRetryPolicy {
+        private Fixed(long baseDelay, long maxDelay) {
+            super(baseDelay, maxDelay);
+        }
+
+        @Override
+        public long nextDelay(int attempt, long previousDelay) {
+            return baseDelay;
+        }
+    }
+
+    private static final class Exponential extends ModbusRetryPolicy {
+        private Exponential(long baseDelay, long maxDelay) {
+            super(baseDelay, maxDelay);
+        }
+
+        @Override
+        public long nextDelay(int attempt, long previousDelay) {
+            int shift = Math.min(Math.max(attempt - 1, 0), 30);
+            return Math.min(maxDelay, baseDelay << shift);
+        }
+    }
+
+    /**
+     * Random delay between the base delay and three times the previous delay, which spreads out threads that failed together.
+     */
+    private static final class DecorrelatedJitter extends ModbusRetryPolicy {
+        private DecorrelatedJitter(long baseDelay, long maxDelay) {
+            super(baseDelay, maxDelay);
+        }
+
+        @Override
+        public long nextDelay(int attempt, long previousDelay) {
+            long upper = Math.max(baseDelay, previousDelay) * 3;
+            if (upper <= baseDelay) {
+                return baseDelay;
+            }
+            return Math.min(maxDelay, ThreadLocalRandom.current().nextLong(baseDelay, upper));
+        }
+    }
+}
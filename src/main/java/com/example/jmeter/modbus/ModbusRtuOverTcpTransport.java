@@ -0,0 +1,242 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+
+package com.example.jmeter.modbus;
+
+import com.ghgande.j2mod.modbus.Modbus;
+import com.ghgande.j2mod.modbus.ModbusIOException;
+import com.ghgande.j2mod.modbus.io.ModbusTCPTransport;
+import com.ghgande.j2mod.modbus.msg.ModbusRequest;
+import com.ghgande.j2mod.modbus.msg.ModbusResponse;
+import org.apache.jmeter.util.JMeterUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Modbus RTU framing (unit identifier, PDU, CRC-16) over a plain TCP socket, as spoken by serial-to-Ethernet gateways.
+ * It plugs into j2mod as the transport of a {@link com.ghgande.j2mod.modbus.net.TCPMasterConnection}, so pooled,
+ * shared and per-thread connections and the j2mod transactions work unchanged.
+ * <p>
+ * RTU frames carry no length field, so the length of each response is predicted from its function code (and byte
+ * count) and read in at most three reads. Before each request the transport waits out the inter-frame silence
+ * (t3.5, by default the fixed 1.75 ms of the serial line specification) after the previous frame, parked rather than
+ * spinning. RTU has no transaction identifier; the response inherits the request's so j2mod's validity check passes.
+ * Without an identifier a late reply cannot be told apart from the answer to the next request, so any failed read
+ * closes the socket and j2mod reconnects before the next attempt.
+ */
+public class ModbusRtuOverTcpTransport extends ModbusTCPTransport {
+    private static final long INTER_FRAME_NANOS = TimeUnit.MICROSECONDS.toNanos(JMeterUtils.getPropDefault("modbus.rtu.interFrameDelayUs", 1750L));
+
+    private final byte[] buffer = new byte[Modbus.MAX_MESSAGE_LENGTH];
+    private Socket socket;
+    private InputStream input;
+    private OutputStream output;
+    private long lastFrameNanos;
+    private boolean silenceNeeded;
+    private int transactionId;
+    private int unitId;
+    private int functionCode;
+
+    @Override
+    public void setSocket(Socket socket) throws IOException {
+        super.setSocket(socket);
+        this.socket = socket;
+        input = socket.getInputStream();
+        output = socket.getOutputStream();
+        silenceNeeded = false;
+    }
+
+    @Override
+    public void writeRequest(ModbusRequest request) throws ModbusIOException {
+        try {
+            byte[] data = request.getMessage();
+            int length = data.length + 4;
+            if (length > buffer.length) {
+                throw new ModbusIOException("Request of %d bytes exceeds the RTU frame limit of %d bytes", length, buffer.length);
+            }
+            buffer[0] = (byte) request.getUnitID();
+            buffer[1] = (byte) request.getFunctionCode();
+            System.arraycopy(data, 0, buffer, 2, data.length);
+            int crc = ModbusCrc16.compute(buffer, 0, length - 2);
+            buffer[length - 2] = (byte) crc;
+            buffer[length - 1] = (byte) (crc >>> 8);
+
+            awaitSilence();
+            drainInput();
+            output.write(buffer, 0, length);
+            output.flush();
+            markFrame();
+            transactionId = request.getTransactionID();
+            unitId = request.getUnitID();
+            functionCode = request.getFunctionCode();
+        } catch (IOException ex) {
+            throw new ModbusIOException("I/O exception - failed to write RTU frame", ex);
+        }
+    }
+
+    @Override
+    public ModbusResponse readResponse() throws ModbusIOException {
+        try {
+            return readFrame();
+        } catch (ModbusIOException ex) {
+            closeSocket();
+            throw ex;
+        }
+    }
+
+    private ModbusResponse readFrame() throws ModbusIOException {
+        try {
+            readFully(0, 2);
+            int responseCode = buffer[1] & 0xFF;
+            int length = responseLength(responseCode);
+            if (length < 0) {
+                readFully(2, 1);
+                length = 5 + (buffer[2] & 0xFF);
+                if (length > buffer.length) {
+                    throw new ModbusIOException("Invalid byte count %d in RTU response", buffer[2] & 0xFF);
+                }
+                readFully(3, length - 3);
+            } else {
+                readFully(2, length - 2);
+            }
+            markFrame();
+
+            int crc = ModbusCrc16.compute(buffer, 0, length - 2);
+            int received = (buffer[length - 2] & 0xFF) | (buffer[length - 1] & 0xFF) << 8;
+            if (crc != received) {
+                throw new ModbusIOException("RTU response CRC %04X does not match computed CRC %04X", received, crc);
+            }
+            if ((buffer[0] & 0xFF) != unitId) {
+                throw new ModbusIOException("RTU response from unit %d does not match request unit %d", buffer[0] & 0xFF, unitId);
+            }
+            // An exception response carries the request's function code with the high bit set
+            if ((responseCode & 0x7F) != functionCode) {
+                throw new ModbusIOException("RTU response function code %d does not match request function code %d", responseCode, functionCode);
+            }
+            ModbusResponse response = ModbusResponse.createModbusResponse(responseCode);
+            response.setHeadless();
+            response.setUnitID(unitId);
+            response.setTransactionID(transactionId);
+            response.readData(new DataInputStream(new ByteArrayInputStream(buffer, 2, length - 4)));
+            return response;
+        } catch (SocketTimeoutException ex) {
+            throw new ModbusIOException("Timeout waiting for RTU response", ex);
+        } catch (EOFException ex) {
+            throw new ModbusIOException("Connection closed while reading RTU response", true);
+        } catch (IOException ex) {
+            throw new ModbusIOException("I/O exception - failed to read RTU response", ex);
+        }
+    }
+
+    /**
+     * Returns the full frame length of a response with the given function code, or -1 if the length follows from
+     * the byte count in the third byte.
+     */
+    static int responseLength(int functionCode) throws ModbusIOException {
+        if ((functionCode & 0x80) != 0) {
+            return 5;
+        }
+        switch (functionCode) {
+            case Modbus.READ_COILS:
+            case Modbus.READ_INPUT_DISCRETES:
+            case Modbus.READ_MULTIPLE_REGISTERS:
+            case Modbus.READ_INPUT_REGISTERS:
+            case Modbus.READ_WRITE_MULTIPLE:
+            case Modbus.REPORT_SLAVE_ID:
+            case Modbus.READ_FILE_RECORD:
+            case Modbus.WRITE_FILE_RECORD:
+                return -1;
+            case Modbus.WRITE_COIL:
+            case Modbus.WRITE_SINGLE_REGISTER:
+            case Modbus.WRITE_MULTIPLE_COILS:
+            case Modbus.WRITE_MULTIPLE_REGISTERS:
+            case Modbus.READ_SERIAL_DIAGNOSTICS:
+            case Modbus.READ_COMM_EVENT_COUNTER:
+                return 8;
+            case Modbus.MASK_WRITE_REGISTER:
+                return 10;
+            case Modbus.READ_EXCEPTION_STATUS:
+                return 5;
+            default:
+                throw new ModbusIOException("Cannot predict the RTU frame length of function code %d", functionCode);
+        }
+    }
+
+    private void readFully(int offset, int length) throws IOException {
+        while (length > 0) {
+            int count = input.read(buffer, offset, length);
+            if (count < 0) {
+                throw new EOFException();
+            }
+            offset += count;
+            length -= count;
+        }
+    }
+
+    /**
+     * Discards bytes that arrived outside a transaction, like j2mod's serial RTU transport does before each request.
+     */
+    private void drainInput() throws IOException {
+        int available;
+        while ((available = input.available()) > 0) {
+            input.skip(available);
+        }
+    }
+
+    private void closeSocket() {
+        try {
+            socket.close();
+        } catch (IOException ex) {
+            // The connection is being abandoned anyway
+        }
+    }
+
+    private void markFrame() {
+        lastFrameNanos = System.nanoTime();
+        silenceNeeded = true;
+    }
+
+    /**
+     * Parks until the inter-frame silence after the previous frame has passed.
+     */
+    private void awaitSilence() {
+        if (!silenceNeeded) {
+            return;
+        }
+        long remaining;
+        while ((remaining = lastFrameNanos + INTER_FRAME_NANOS - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+}
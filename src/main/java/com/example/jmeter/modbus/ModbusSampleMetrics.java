@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+
+package com.example.jmeter.modbus;
+
+import org.apache.jmeter.samplers.SampleResult;
+
+import java.util.Locale;
+
+/**
+ * Records Modbus specific measurements as "name: value" lines in the response headers of a sample,
+ * where they show up in View Results Tree and can be saved to the JTL file.
+ */
+public final class ModbusSampleMetrics {
+
+    private ModbusSampleMetrics() {
+    }
+
+    public static void add(SampleResult result, String name, Object value) {
+        String headers = result.getResponseHeaders();
+        StringBuilder builder = new StringBuilder(headers.length() + name.length() + 16);
+        builder.append(headers).append(name).append(": ").append(value).append('\n');
+        result.setResponseHeaders(builder.toString());
+    }
+
+    public static void addMillis(SampleResult result, String name, long nanos) {
+        add(result, name, String.format(Locale.ROOT, "%.3f", nanos / 1_000_000.0));
+    }
+}
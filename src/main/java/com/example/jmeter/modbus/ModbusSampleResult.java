@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+
+package com.example.jmeter.modbus;
+
+import com.ghgande.j2mod.modbus.msg.ModbusResponse;
+import org.apache.jmeter.samplers.SampleResult;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Sample result that keeps the Modbus response and formats it only when a listener, assertion or extractor
+ * first reads the response data. Until then the sampler thread spends no time on formatting.
+ */
+public class ModbusSampleResult extends SampleResult {
+    private static final long serialVersionUID = 1L;
+
+    private transient ModbusResponse response;
+    private transient ModbusValueDecoder decoder;
+    private transient boolean decoded;
+
+    /**
+     * Stores the response for decoding on first access. The body size is the size of the response payload;
+     * the decoded text is encoded in UTF-8.
+     */
+    public synchronized void setLazyResponseData(ModbusResponse response, ModbusValueDecoder decoder) {
+        this.response = response;
+        this.decoder = decoder;
+        this.decoded = false;
+        // j2mod's data length counts the unit identifier and function code as well
+        setBodySize((long) response.getDataLength() - 2);
+        setDataEncoding(StandardCharsets.UTF_8.name());
+    }
+
+    /**
+     * Returns the response payload as received (the PDU without the function code), without decoding it.
+     */
+    public synchronized byte[] getRawPayload() {
+        return response != null ? response.getMessage() : super.getResponseData();
+    }
+
+    /**
+     * Returns the response kept by {@link #setLazyResponseData}, or null if the data was set directly.
+     */
+    synchronized ModbusResponse getResponse() {
+        return response;
+    }
+
+    @Override
+    public byte[] getResponseData() {
+        decode();
+        return super.getResponseData();
+    }
+
+    @Override
+    public String getResponseDataAsString() {
+        decode();
+        return super.getResponseDataAsString();
+    }
+
+    @Override
+    public synchronized void setResponseData(byte[] response) {
+        this.response = null;
+        super.setResponseData(response);
+    }
+
+    @Override
+    public synchronized void setResponseData(String response, String encoding) {
+        this.response = null;
+        super.setResponseData(response, encoding);
+    }
+
+    private synchronized void decode() {
+        if (response != null && !decoded) {
+            decoded = true;
+            super.setResponseData(decoder.decode(response), StandardCharsets.UTF_8.name());
+        }
+    }
+
+    private Object writeReplace() {
+        // Remote listeners receive the decoded text; the j2mod response itself is not serializable
+        decode();
+        return this;
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+
+package com.example.jmeter.modbus;
+
+import org.apache.jmeter.samplers.SampleResult;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Fixed-rate scan schedule of one sampler in one thread, like the poll cycle of a SCADA master.
+ * Deadlines lie on an absolute {@link System#nanoTime()} grid, so waiting and slow polls never shift later scans.
+ * A poll that starts one or more whole intervals late either skips the missed deadlines or runs them back to back.
+ * The lateness of every poll is recorded in a histogram so the jitter percentiles can be reported.
+ */
+final class ModbusScanClock {
+    static final String POLICY_SKIP = "Skip Missed";
+    static final String POLICY_CATCH_UP = "Catch Up";
+
+    // Lateness histogram: values in microseconds, 16 linear sub-buckets per power of two (about 6% resolution)
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = 64 - SUB_BUCKET_BITS + 1;
+
+    private final long intervalNanos;
+    private final boolean skipMissed;
+    private final long[] counts = new long[BUCKETS * SUB_BUCKETS];
+
+    private long nextDeadline;
+    private long intendedStart;
+    private long actualStart;
+    private long scans;
+    private long skipped;
+    private long overruns;
+    private long maxLatenessMicros;
+
+    ModbusScanClock(long intervalMillis, String policy) {
+        this.intervalNanos = intervalMillis * 1_000_000L;
+        this.skipMissed = !POLICY_CATCH_UP.equals(policy);
+    }
+
+    /**
+     * Waits for the next deadline and returns when the poll should start. The first poll starts immediately.
+     */
+    void awaitNextScan() throws InterruptedException {
+        long now = System.nanoTime();
+        if (scans == 0) {
+            nextDeadline = now;
+        }
+        long late = now - nextDeadline;
+        if (late >= intervalNanos && skipMissed) {
+            long missed = late / intervalNanos;
+            skipped += missed;
+            nextDeadline += missed * intervalNanos;
+        }
+        while ((late = nextDeadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(late);
+            if (Thread.interrupted()) {
+                throw new InterruptedException("Interrupted while waiting for the next scan");
+            }
+        }
+        intendedStart = nextDeadline;
+        actualStart = System.nanoTime();
+        nextDeadline += intervalNanos;
+        scans++;
+        record((actualStart - intendedStart) / 1000);
+    }
+
+    /**
+     * Counts an overrun if the poll ran past the next deadline, then adds the scan metrics to the result.
+     * The corrected time is measured from the intended start, so a late poll is not hidden (coordinated omission).
+     */
+    void finishScan(SampleResult result) {
+        long end = System.nanoTime();
+        if (end > nextDeadline) {
+            overruns++;
+        }
+        ModbusSampleMetrics.add(result, "Scan-Intended-Start", result.getStartTime() - (actualStart - intendedStart) / 1_000_000);
+        ModbusSampleMetrics.add(result, "Scan-Actual-Start", result.getStartTime());
+        ModbusSampleMetrics.addMillis(result, "Scan-Lateness-ms", actualStart - intendedStart);
+        ModbusSampleMetrics.addMillis(result, "Scan-Corrected-ms", end - intendedStart);
+        ModbusSampleMetrics.add(result, "Scan-Count", scans);
+        ModbusSampleMetrics.add(result, "Scan-Overruns", overruns);
+        ModbusSampleMetrics.add(result, "Scan-Skipped", skipped);
+        ModbusSampleMetrics.addMillis(result, "Scan-Jitter-p50-ms", percentileMicros(50) * 1000);
+        ModbusSampleMetrics.addMillis(result, "Scan-Jitter-p90-ms", percentileMicros(90) * 1000);
+        ModbusSampleMetrics.addMillis(result, "Scan-Jitter-p99-ms", percentileMicros(99) * 1000);
+        ModbusSampleMetrics.addMillis(result, "Scan-Jitter-max-ms", maxLatenessMicros * 1000);
+    }
+
+    private void record(long micros) {
+        counts[index(micros)]++;
+        maxLatenessMicros = Math.max(maxLatenessMicros, micros);
+    }
+
+    /**
+     * Returns the upper bound of the bucket holding the given percentile of all recorded lateness values.
+     */
+    long percentileMicros(double percentile) {
+        long target = (long) Math.ceil(scans * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= Math.max(target, 1)) {
+                return Math.min(upperBound(i), maxLatenessMicros);
+            }
+        }
+        return maxLatenessMicros;
+    }
+
+    private static int index(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) Math.max(value, 0);
+        }
+        int bucket = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS + 1;
+        int subBucket = (int) (value >>> (bucket - 1)) & (SUB_BUCKETS - 1);
+        return bucket * SUB_BUCKETS + subBucket;
+    }
+
+    private static long upperBound(int index) {
+        int bucket = index / SUB_BUCKETS;
+        int subBucket = index % SUB_BUCKETS;
+        if (bucket == 0) {
+            return subBucket;
+        }
+        return ((long) (SUB_BUCKETS + subBucket + 1) << (bucket - 1)) - 1;
+    }
+}
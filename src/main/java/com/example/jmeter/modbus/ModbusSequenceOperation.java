@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+
+package com.example.jmeter.modbus;
+
+import com.ghgande.j2mod.modbus.Modbus;
+import com.ghgande.j2mod.modbus.msg.MaskWriteRegisterRequest;
+import com.ghgande.j2mod.modbus.msg.ModbusRequest;
+import com.ghgande.j2mod.modbus.msg.WriteCoilRequest;
+import com.ghgande.j2mod.modbus.msg.WriteMultipleCoilsRequest;
+import com.ghgande.j2mod.modbus.msg.WriteMultipleRegistersRequest;
+import com.ghgande.j2mod.modbus.msg.WriteSingleRegisterRequest;
+import com.ghgande.j2mod.modbus.procimg.Register;
+import com.ghgande.j2mod.modbus.procimg.SimpleRegister;
+import com.ghgande.j2mod.modbus.util.BitVector;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One pre-parsed step of a {@link ModbusSequenceSampler}. A step is written on one line as semicolon-separated
+ * fields: the read or write method as named in the Read and Write Samplers, the address, the length (reads) or
+ * value (writes), and optionally the data type and word order. {@code Delay; <ms>} pauses the sequence.
+ * Every request of a sequence goes to the sampler's unit ID.
+ */
+final class ModbusSequenceOperation {
+    static final String DELAY = "Delay";
+
+    final String text;
+    final String label;
+    final int functionCode;
+    /** Null for a delay. */
+    final ModbusFrameTemplate request;
+    /** Decodes a read response; null for writes and delays. */
+    final ModbusValueDecoder decoder;
+    final long delayMillis;
+
+    private ModbusSequenceOperation(String text, String label, int functionCode, ModbusFrameTemplate request,
+                                    ModbusValueDecoder decoder, long delayMillis) {
+        this.text = text;
+        this.label = label;
+        this.functionCode = functionCode;
+        this.request = request;
+        this.decoder = decoder;
+        this.delayMillis = delayMillis;
+    }
+
+    boolean isDelay() {
+        return request == null;
+    }
+
+    boolean isRead() {
+        return decoder != null;
+    }
+
+    /**
+     * Parses an operation list. Blank lines and lines starting with # are skipped.
+     */
+    static List<ModbusSequenceOperation> parseAll(String operations, int unitId) {
+        List<ModbusSequenceOperation> result = new ArrayList<>();
+        String[] lines = operations.split("\\r?\\n");
+        for (int i = 0; i < lines.length; i++) {
+            String line = lines[i].trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            try {
+                result.add(parse(line, unitId));
+            } catch (IllegalArgumentException ex) {
+                throw new IllegalArgumentException("Line " + (i + 1) + " (" + line + "): " + ex.getMessage(), ex);
+            }
+        }
+        if (result.isEmpty()) {
+            throw new IllegalArgumentException("The operation list is empty.");
+        }
+        return result;
+    }
+
+    static ModbusSequenceOperation parse(String line, int unitId) {
+        String[] fields = line.split(";");
+        for (int i = 0; i < fields.length; i++) {
+            fields[i] = fields[i].trim();
+        }
+        String method = fields[0];
+        if (DELAY.equals(method)) {
+            if (fields.length != 2) {
+                throw new IllegalArgumentException("Expected: Delay; <ms>");
+            }
+            long delay = Long.parseLong(fields[1]);
+            return new ModbusSequenceOperation(line, "Delay " + delay + " ms", 0, null, null, delay);
+        }
+        if (fields.length < 3 || fields.length > 5) {
+            throw new IllegalArgumentException("Expected: <method>; <address>; <length or value>[; <data type>[; <word order>]]");
+        }
+        int address = Integer.parseInt(fields[1]);
+        ModbusWordOrder wordOrder = ModbusWordOrder.fromName(fields.length > 4 ? fields[4] : "");
+        if (method.startsWith("Read ")) {
+            int functionCode = ModbusReadPlan.functionCode(method);
+            int length = Integer.parseInt(fields[2]);
+            if (length < 1 || length > ModbusReadChunks.maxLength(functionCode)) {
+                throw new IllegalArgumentException("Length must be between 1 and " + ModbusReadChunks.maxLength(functionCode) + ".");
+            }
+            boolean bits = functionCode == Modbus.READ_COILS || functionCode == Modbus.READ_INPUT_DISCRETES;
+            String dataType = fields.length > 3 ? fields[3] : bits ? "Boolean" : "Integer";
+            ModbusRequest read = ModbusReadPlan.createRequest(functionCode, address, length);
+            read.setUnitID(unitId);
+            ModbusFrameTemplate request = new ModbusFrameTemplate(read);
+            return new ModbusSequenceOperation(line, method + " " + address + "+" + length, functionCode, request,
+                    ModbusValueDecoder.forRead(functionCode, dataType, wordOrder), 0);
+        }
+        int functionCode = ModbusWritePlan.functionCode(method);
+        String value = fields[2];
+        String dataType = fields.length > 3 ? fields[3] : "Integer";
+        ModbusRequest request;
+        switch (functionCode) {
+            case Modbus.WRITE_SINGLE_REGISTER:
+                request = new WriteSingleRegisterRequest(address, new SimpleRegister(ModbusWritePlan.parseValueAsInt(value, dataType)));
+                break;
+            case Modbus.WRITE_MULTIPLE_REGISTERS:
+                request = new WriteMultipleRegistersRequest(address, ModbusWritePlan.parseMultipleRegisters(value, dataType, wordOrder));
+                break;
+            case Modbus.WRITE_COIL:
+                request = new WriteCoilRequest(address, Boolean.parseBoolean(value));
+                break;
+            case Modbus.WRITE_MULTIPLE_COILS: {
+                boolean[] coils = ModbusWritePlan.parseBooleanArray(value);
+                BitVector bitVector = new BitVector(coils.length);
+                for (int i = 0; i < coils.length; i++) {
+                    bitVector.setBit(i, coils[i]);
+                }
+                request = new WriteMultipleCoilsRequest(address, bitVector);
+                break;
+            }
+            case Modbus.MASK_WRITE_REGISTER: {
+                Register[] masks = ModbusWritePlan.toRegisters(ModbusWritePlan.parseIntArray(value, dataType));
+                if (masks.length != 2) {
+                    throw new IllegalArgumentException("Mask Write Register expects an AND mask and an OR mask, e.g. 0xFF00,0x0012.");
+                }
+                request = new MaskWriteRegisterRequest(address, masks[0].getValue(), masks[1].getValue());
+                break;
+            }
+            default:
+                throw new IllegalArgumentException("Unsupported sequence method: " + method);
+        }
+        request.setUnitID(unitId);
+        return new ModbusSequenceOperation(line, method + " " + address, functionCode, new ModbusFrameTemplate(request), null, 0);
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+
+package com.example.jmeter.modbus;
+
+import org.apache.jmeter.services.FileServer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+/**
+ * Immutable, pre-parsed settings of a {@link ModbusSequenceSampler}, compiled once per thread.
+ * The operation list is parsed, and its file read, only when the plan is compiled.
+ * A plan whose properties contain JMeter variables or functions is dynamic and recompiled for every sample.
+ */
+public final class ModbusSequencePlan {
+    final String host;
+    final int port;
+    final int timeout;
+    final String transport;
+    final int unitId;
+    final boolean pipelined;
+    final boolean useExistingConnection;
+    final int pipelineDepth;
+    final boolean stopOnError;
+    final ModbusSequenceOperation[] operations;
+    final boolean dynamic;
+
+    private ModbusSequencePlan(ModbusSequenceSampler sampler) {
+        pipelined = ModbusReadSampler.CLIENT_MODE_PIPELINED.equals(sampler.getClientMode());
+        useExistingConnection = !pipelined && sampler.getUseExistingConnection();
+        transport = sampler.getTransport();
+        if (!useExistingConnection) {
+            ModbusTransports.checkClientMode(transport, pipelined, false);
+            if (ModbusTransports.isUdp(transport)) {
+                throw new IllegalArgumentException("The Sequence Sampler does not support Modbus UDP.");
+            }
+        }
+        host = sampler.getIpAddress();
+        if (useExistingConnection) {
+            // Connection settings are disabled in the GUI and may be left empty
+            port = 0;
+            timeout = 0;
+        } else {
+            port = Integer.parseInt(sampler.getPort());
+            timeout = Integer.parseInt(sampler.getTimeout());
+        }
+        pipelineDepth = pipelined ? Integer.parseInt(sampler.getPipelineDepth()) : 0;
+        stopOnError = sampler.getStopOnError();
+        int[] unitIds = ModbusUnitFanOut.parseUnitIds(sampler.getUnitId());
+        if (unitIds.length != 1) {
+            throw new IllegalArgumentException("The Sequence Sampler talks to a single unit ID.");
+        }
+        unitId = unitIds[0];
+        List<ModbusSequenceOperation> parsed = ModbusSequenceOperation.parseAll(readOperations(sampler), unitId);
+        operations = parsed.toArray(new ModbusSequenceOperation[0]);
+        dynamic = ModbusReadPlan.containsFunctions(sampler);
+    }
+
+    /**
+     * Returns the existing plan if it is still valid, otherwise compiles a new one.
+     */
+    static ModbusSequencePlan compile(ModbusSequenceSampler sampler, ModbusSequencePlan previous) {
+        if (previous != null && !previous.dynamic) {
+            return previous;
+        }
+        return new ModbusSequencePlan(sampler);
+    }
+
+    /**
+     * Returns the operations file if one is set, resolved against the test plan directory, otherwise the inline list.
+     */
+    private static String readOperations(ModbusSequenceSampler sampler) {
+        String file = sampler.getOperationsFile().trim();
+        if (file.isEmpty()) {
+            return sampler.getOperations();
+        }
+        try {
+            return new String(Files.readAllBytes(FileServer.getFileServer().getResolvedFile(file).toPath()), StandardCharsets.UTF_8);
+        } catch (IOException ex) {
+            throw new IllegalArgumentException("Could not read operations file " + file + ": " + ex.getMessage(), ex);
+        }
+    }
+}
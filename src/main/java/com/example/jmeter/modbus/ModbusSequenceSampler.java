@@ -0,0 +1,387 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+
+package com.example.jmeter.modbus;
+
+import org.apache.jmeter.samplers.AbstractSampler;
+import org.apache.jmeter.samplers.Entry;
+import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.testelement.TestStateListener;
+import org.apache.jmeter.testelement.ThreadListener;
+import org.apache.jmeter.threads.JMeterContextService;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import com.ghgande.j2mod.modbus.ModbusSlaveException;
+import com.ghgande.j2mod.modbus.msg.ModbusResponse;
+import com.ghgande.j2mod.modbus.net.TCPMasterConnection;
+
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a whole list of Modbus operations in one sample over one connection, e.g. a device handshake.
+ * Every operation is reported as a sub-result. In Pipelined mode consecutive reads are sent without waiting for each
+ * other's responses; writes and delays always wait for everything before them, so the order of side effects is kept.
+ */
+public class ModbusSequenceSampler extends AbstractSampler implements TestStateListener, ThreadListener {
+    private static final Logger log = LogManager.getLogger(ModbusSequenceSampler.class);
+
+    public static final String IP_ADDRESS = "ModbusSequenceSampler.ipAddress";
+    public static final String PORT = "ModbusSequenceSampler.port";
+    public static final String TIMEOUT = "ModbusSequenceSampler.timeout";
+    public static final String USE_EXISTING_CONNECTION = "ModbusSequenceSampler.useExistingConnection";
+    public static final String CLIENT_MODE = "ModbusSequenceSampler.clientMode";
+    public static final String TRANSPORT = "ModbusSequenceSampler.transport";
+    public static final String UNIT_ID = "ModbusSequenceSampler.unitId";
+    public static final String PIPELINE_DEPTH = "ModbusSequenceSampler.pipelineDepth";
+    public static final String STOP_ON_ERROR = "ModbusSequenceSampler.stopOnError";
+    public static final String OPERATIONS = "ModbusSequenceSampler.operations";
+    public static final String OPERATIONS_FILE = "ModbusSequenceSampler.operationsFile";
+
+    private ModbusSequencePlan plan;
+    private TCPMasterConnection ownConnection;
+    private ModbusPipelinedConnection pipelinedConnection;
+    private final ModbusPipelinedConnection.Stats pipelineStats = new ModbusPipelinedConnection.Stats();
+
+    public void setIpAddress(String ipAddress) {
+        setProperty(IP_ADDRESS, ipAddress);
+    }
+
+    public String getIpAddress() {
+        return getPropertyAsString(IP_ADDRESS);
+    }
+
+    public void setPort(String port) {
+        setProperty(PORT, port);
+    }
+
+    public String getPort() {
+        return getPropertyAsString(PORT);
+    }
+
+    public void setTimeout(String timeout) {
+        setProperty(TIMEOUT, timeout);
+    }
+
+    public String getTimeout() {
+        return getPropertyAsString(TIMEOUT, "2000");
+    }
+
+    public void setUseExistingConnection(boolean useExistingConnection) {
+        setProperty(USE_EXISTING_CONNECTION, useExistingConnection);
+    }
+
+    public boolean getUseExistingConnection() {
+        return getPropertyAsBoolean(USE_EXISTING_CONNECTION);
+    }
+
+    public void setClientMode(String clientMode) {
+        setProperty(CLIENT_MODE, clientMode);
+    }
+
+    public String getClientMode() {
+        return getPropertyAsString(CLIENT_MODE, ModbusReadSampler.CLIENT_MODE_BLOCKING);
+    }
+
+    public void setTransport(String transport) {
+        setProperty(TRANSPORT, transport);
+    }
+
+    public String getTransport() {
+        return getPropertyAsString(TRANSPORT, ModbusTransports.TRANSPORT_TCP);
+    }
+
+    public void setUnitId(String unitId) {
+        setProperty(UNIT_ID, unitId);
+    }
+
+    public String getUnitId() {
+        return getPropertyAsString(UNIT_ID, "1");
+    }
+
+    public void setPipelineDepth(String pipelineDepth) {
+        setProperty(PIPELINE_DEPTH, pipelineDepth);
+    }
+
+    public String getPipelineDepth() {
+        return getPropertyAsString(PIPELINE_DEPTH, "8");
+    }
+
+    public void setStopOnError(boolean stopOnError) {
+        setProperty(STOP_ON_ERROR, stopOnError, true);
+    }
+
+    public boolean getStopOnError() {
+        return getPropertyAsBoolean(STOP_ON_ERROR, true);
+    }
+
+    public void setOperations(String operations) {
+        setProperty(OPERATIONS, operations);
+    }
+
+    public String getOperations() {
+        return getPropertyAsString(OPERATIONS);
+    }
+
+    public void setOperationsFile(String operationsFile) {
+        setProperty(OPERATIONS_FILE, operationsFile);
+    }
+
+    public String getOperationsFile() {
+        return getPropertyAsString(OPERATIONS_FILE);
+    }
+
+    public SampleResult sample(Entry e) {
+        SampleResult result = new SampleResult();
+        result.setSampleLabel(getName());
+        Exception planError = null;
+        try {
+            plan = ModbusSequencePlan.compile(this, plan);
+        } catch (IllegalArgumentException ex) {
+            planError = ex;
+        }
+        // Resolve outside the measured time; an unknown host is reported when connecting
+        long resolveStart = System.nanoTime();
+        if (planError == null && !plan.useExistingConnection) {
+            try {
+                ModbusEndpointCache.resolve(plan.host);
+            } catch (UnknownHostException ex) {
+                log.debug("Could not resolve {}: {}", plan.host, ex.getMessage());
+            }
+        }
+        long resolveNanos = System.nanoTime() - resolveStart;
+        result.sampleStart();
+        ModbusSampleMetrics.addMillis(result, "Resolve-ms", resolveNanos);
+
+        ModbusSequenceOperation[] operations = planError == null ? plan.operations : new ModbusSequenceOperation[0];
+        SampleResult[] subResults = new SampleResult[operations.length];
+        Exception[] failures = new Exception[operations.length];
+        pipelinedConnection = null;
+        pipelineStats.reset();
+        int executed = 0;
+        int failed = 0;
+
+        try {
+            if (planError != null) {
+                throw planError;
+            }
+            TCPMasterConnection connection = null;
+            if (plan.pipelined) {
+                pipelinedConnection = ModbusPipelinedConnection.getConnection(plan.host, plan.port, plan.timeout, plan.pipelineDepth);
+            } else {
+                connection = connect();
+                ModbusTransports.recordHandshake(result, connection);
+            }
+
+            boolean stopped = false;
+            while (executed < operations.length && !stopped) {
+                int end = executed + 1;
+                if (pipelinedConnection != null && operations[executed].isRead()) {
+                    while (end < operations.length && operations[end].isRead()) {
+                        end++;
+                    }
+                }
+                executeRun(executed, end, connection, subResults, failures);
+                boolean broken = false;
+                for (int i = executed; i < end; i++) {
+                    if (failures[i] != null) {
+                        failed++;
+                        // Anything but a Modbus exception response leaves the connection in an unknown state
+                        broken |= !(failures[i] instanceof ModbusSlaveException);
+                    }
+                }
+                if (broken) {
+                    closeOwnConnection();
+                }
+                stopped = broken || failed > 0 && plan.stopOnError;
+                executed = end;
+            }
+
+            if (failed == 0) {
+                result.setResponseMessage("Sequence of " + operations.length + " operations successful.");
+                result.setSuccessful(true);
+            } else {
+                result.setResponseMessage("Error: " + failed + " of " + executed + " operations failed"
+                        + (executed < operations.length ? ", " + (operations.length - executed) + " skipped." : "."));
+                result.setSuccessful(false);
+            }
+        } catch (Exception ex) {
+            log.error("Error during Modbus sequence", ex);
+            result.setResponseMessage("Error: " + ex.getMessage());
+            result.setSuccessful(false);
+            if (ex != planError) {
+                closeOwnConnection();
+            }
+        } finally {
+            result.sampleEnd();
+            StringBuilder responseData = new StringBuilder();
+            for (int i = 0; i < executed; i++) {
+                responseData.append(subResults[i].getSampleLabel()).append(": ").append(subResults[i].getResponseDataAsString()).append('\n');
+                result.addRawSubResult(subResults[i]);
+            }
+            result.setResponseData(responseData.toString(), StandardCharsets.UTF_8.name());
+            ModbusSampleMetrics.add(result, "Sequence-Operations", executed);
+            if (pipelinedConnection != null) {
+                ModbusSampleMetrics.add(result, "Pipeline-In-Flight", pipelineStats.getMaxInFlight());
+                ModbusSampleMetrics.addMillis(result, "Pipeline-Slot-Wait-ms", pipelineStats.getSlotWaitNanos());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Executes operations first (inclusive) to end (exclusive). A run longer than one is a run of reads on a pipelined
+     * connection: helper workers send the later reads while this thread sends the first.
+     */
+    private void executeRun(int first, int end, TCPMasterConnection connection,
+                            SampleResult[] subResults, Exception[] failures) throws InterruptedException {
+        List<Future<ModbusPipelinedConnection.Stats>> futures = new ArrayList<>(end - first - 1);
+        for (int i = first + 1; i < end; i++) {
+            int index = i;
+            futures.add(ModbusReadChunks.submit(() -> {
+                ModbusPipelinedConnection.Stats stats = new ModbusPipelinedConnection.Stats();
+                executeOperation(index, connection, stats, subResults, failures);
+                return stats;
+            }));
+        }
+        executeOperation(first, connection, pipelineStats, subResults, failures);
+        for (Future<ModbusPipelinedConnection.Stats> future : futures) {
+            try {
+                pipelineStats.add(future.get());
+            } catch (ExecutionException ex) {
+                // executeOperation records its own failures; this is a bug rather than a Modbus error
+                log.error("Sequence worker failed", ex.getCause());
+            }
+        }
+    }
+
+    /**
+     * Executes one operation and records it as a sub-result. A failure is stored instead of thrown.
+     */
+    private void executeOperation(int index, TCPMasterConnection connection, ModbusPipelinedConnection.Stats stats,
+                                  SampleResult[] subResults, Exception[] failures) {
+        ModbusSequenceOperation operation = plan.operations[index];
+        SampleResult subResult = new SampleResult();
+        subResult.setSampleLabel(getName() + " #" + (index + 1) + " " + operation.label);
+        subResult.setSamplerData(operation.text);
+        subResults[index] = subResult;
+        subResult.sampleStart();
+        try {
+            if (operation.isDelay()) {
+                TimeUnit.MILLISECONDS.sleep(operation.delayMillis);
+                subResult.setResponseData("OK", StandardCharsets.UTF_8.name());
+            } else {
+                ModbusResponse response = pipelinedConnection != null
+                        ? pipelinedConnection.execute(operation.request, plan.timeout, stats)
+                        : ModbusTransactions.execute(connection, operation.request.getRequest());
+                subResult.setResponseData(operation.isRead() ? operation.decoder.decode(response) : "OK", StandardCharsets.UTF_8.name());
+            }
+            subResult.setResponseMessage("Operation successful.");
+            subResult.setSuccessful(true);
+        } catch (Exception ex) {
+            if (ex instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            failures[index] = ex;
+            subResult.setResponseData("Error: " + ex.getMessage(), StandardCharsets.UTF_8.name());
+            subResult.setResponseMessage("Error: " + ex.getMessage());
+            subResult.setSuccessful(false);
+        } finally {
+            subResult.sampleEnd();
+        }
+    }
+
+    /**
+     * Returns the connection of a Connection Sampler, or this thread's own connection, opening it if needed.
+     * The own connection stays open across samples until the thread finishes.
+     */
+    private TCPMasterConnection connect() throws Exception {
+        if (plan.useExistingConnection) {
+            Object existing = JMeterContextService.getContext().getVariables().getObject("modbusConnection");
+            if (existing instanceof ModbusUdpChannel) {
+                throw new IllegalStateException("The Sequence Sampler does not support an existing Modbus UDP channel.");
+            }
+            TCPMasterConnection connection = (TCPMasterConnection) existing;
+            if (connection == null || !connection.isConnected()) {
+                throw new IllegalStateException("No existing Modbus connection available.");
+            }
+            return connection;
+        }
+        if (ownConnection == null || !ownConnection.isConnected()) {
+            closeOwnConnection();
+            TCPMasterConnection connection = ModbusTransports.newConnection(plan.host, plan.port, plan.timeout, plan.transport);
+            connection.connect();
+            ownConnection = connection;
+        }
+        return ownConnection;
+    }
+
+    private void closeOwnConnection() {
+        if (ownConnection != null) {
+            try {
+                ownConnection.close();
+            } catch (Exception ex) {
+                log.error("Error closing connection", ex);
+            }
+            ownConnection = null;
+        }
+    }
+
+    @Override
+    public void testStarted() {
+        // Connections are opened by the first sample of each thread
+    }
+
+    @Override
+    public void testStarted(String host) {
+        testStarted();
+    }
+
+    @Override
+    public void testEnded() {
+        ModbusPipelinedConnection.closeAll();
+        ModbusTlsTransport.resetContext();
+    }
+
+    @Override
+    public void testEnded(String host) {
+        testEnded();
+    }
+
+    @Override
+    public void threadStarted() {
+        // The plan is compiled by the first sample
+    }
+
+    @Override
+    public void threadFinished() {
+        closeOwnConnection();
+    }
+}
@@ -0,0 +1,328 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+
+package com.example.jmeter.modbus;
+
+import org.apache.jmeter.samplers.gui.AbstractSamplerGui;
+import org.apache.jmeter.testelement.TestElement;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.net.URI;
+
+public class ModbusSequenceSamplerGui extends AbstractSamplerGui {
+    private static final Logger log = LogManager.getLogger(ModbusSequenceSamplerGui.class);
+
+    private JCheckBox useExistingConnectionCheckbox;
+    private JTextField ipAddressField;
+    private JTextField portField;
+    private JTextField timeoutField;
+    private JComboBox<String> clientModeDropdown;
+    private JComboBox<String> transportDropdown;
+    private JTextField pipelineDepthField;
+    private JTextField unitIdField;
+    private JCheckBox stopOnErrorCheckbox;
+    private JTextField operationsFileField;
+    private JTextArea operationsArea;
+
+    public ModbusSequenceSamplerGui() {
+        init();
+    }
+
+    private void init() {
+        setLayout(new BorderLayout(0, 5));
+        setBorder(makeBorder());
+
+        JPanel mainPanel = new JPanel(new BorderLayout());
+        mainPanel.add(makeTitlePanel(), BorderLayout.NORTH);
+
+        JPanel connectionPanel = new JPanel(new GridBagLayout());
+        JPanel settingsPanel = new JPanel(new GridBagLayout());
+
+        useExistingConnectionCheckbox = new JCheckBox("Use Existing Connection");
+        useExistingConnectionCheckbox.addActionListener(e -> toggleConnectionFields());
+        ipAddressField = new JTextField(15);
+        portField = new JTextField(5);
+        timeoutField = new JTextField(5);
+        clientModeDropdown = new JComboBox<>(new String[]{ModbusReadSampler.CLIENT_MODE_BLOCKING, ModbusReadSampler.CLIENT_MODE_PIPELINED});
+        clientModeDropdown.addActionListener(e -> toggleConnectionFields());
+        transportDropdown = new JComboBox<>(new String[]{ModbusTransports.TRANSPORT_TCP, ModbusTransports.TRANSPORT_RTU_OVER_TCP, ModbusTransports.TRANSPORT_TLS});
+        pipelineDepthField = new JTextField(5);
+        unitIdField = new JTextField(5);
+        stopOnErrorCheckbox = new JCheckBox("Skip the remaining operations after a failure");
+        operationsFileField = new JTextField(20);
+        operationsArea = new JTextArea(12, 40);
+        operationsArea.setFont(new Font(Font.MONOSPACED, Font.PLAIN, operationsArea.getFont().getSize()));
+
+        connectionPanel.setBorder(BorderFactory.createTitledBorder("Connection Settings"));
+        settingsPanel.setBorder(BorderFactory.createTitledBorder("Modbus Sequence Settings"));
+
+        GridBagConstraints gbc = new GridBagConstraints();
+        gbc.fill = GridBagConstraints.HORIZONTAL;
+        gbc.insets = new Insets(2, 2, 2, 2);
+        gbc.ipadx = 2;
+        gbc.weightx = 1.0;
+
+        Dimension fieldDimension = new Dimension(200, 25);
+        Dimension labelDimension = new Dimension(100, 25);
+
+        // Connection Settings
+        gbc.gridx = 0;
+        gbc.gridy = 0;
+        gbc.anchor = GridBagConstraints.LINE_END;
+        JLabel useExistingConnectionLabel = new JLabel("Use Existing Connection:");
+        useExistingConnectionLabel.setPreferredSize(labelDimension);
+        connectionPanel.add(useExistingConnectionLabel, gbc);
+        gbc.gridx = 1;
+        gbc.anchor = GridBagConstraints.LINE_START;
+        useExistingConnectionCheckbox.setPreferredSize(fieldDimension);
+        connectionPanel.add(useExistingConnectionCheckbox, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 1;
+        gbc.anchor = GridBagConstraints.LINE_END;
+        JLabel ipAddressLabel = new JLabel("IP Address:");
+        ipAddressLabel.setPreferredSize(labelDimension);
+        connectionPanel.add(ipAddressLabel, gbc);
+        gbc.gridx = 1;
+        gbc.anchor = GridBagConstraints.LINE_START;
+        ipAddressField.setPreferredSize(fieldDimension);
+        connectionPanel.add(ipAddressField, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 2;
+        gbc.anchor = GridBagConstraints.LINE_END;
+        JLabel portLabel = new JLabel("Port:");
+        portLabel.setPreferredSize(labelDimension);
+        connectionPanel.add(portLabel, gbc);
+        gbc.gridx = 1;
+        gbc.anchor = GridBagConstraints.LINE_START;
+        portField.setPreferredSize(fieldDimension);
+        connectionPanel.add(portField, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 3;
+        gbc.anchor = GridBagConstraints.LINE_END;
+        JLabel timeoutLabel = new JLabel("Timeout (ms):");
+        timeoutLabel.setPreferredSize(labelDimension);
+        connectionPanel.add(timeoutLabel, gbc);
+        gbc.gridx = 1;
+        gbc.anchor = GridBagConstraints.LINE_START;
+        timeoutField.setPreferredSize(fieldDimension);
+        connectionPanel.add(timeoutField, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 4;
+        gbc.anchor = GridBagConstraints.LINE_END;
+        JLabel clientModeLabel = new JLabel("Client Mode:");
+        clientModeLabel.setPreferredSize(labelDimension);
+        connectionPanel.add(clientModeLabel, gbc);
+        gbc.gridx = 1;
+        gbc.anchor = GridBagConstraints.LINE_START;
+        clientModeDropdown.setPreferredSize(fieldDimension);
+        connectionPanel.add(clientModeDropdown, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 5;
+        gbc.anchor = GridBagConstraints.LINE_END;
+        JLabel pipelineDepthLabel = new JLabel("Pipeline Depth:");
+        pipelineDepthLabel.setPreferredSize(labelDimension);
+        connectionPanel.add(pipelineDepthLabel, gbc);
+        gbc.gridx = 1;
+        gbc.anchor = GridBagConstraints.LINE_START;
+        pipelineDepthField.setPreferredSize(fieldDimension);
+        connectionPanel.add(pipelineDepthField, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 6;
+        gbc.anchor = GridBagConstraints.LINE_END;
+        JLabel transportLabel = new JLabel("Transport:");
+        transportLabel.setPreferredSize(labelDimension);
+        connectionPanel.add(transportLabel, gbc);
+        gbc.gridx = 1;
+        gbc.anchor = GridBagConstraints.LINE_START;
+        transportDropdown.setPreferredSize(fieldDimension);
+        connectionPanel.add(transportDropdown, gbc);
+
+        // Sequence Settings
+        gbc.gridx = 0;
+        gbc.gridy = 0;
+        gbc.anchor = GridBagConstraints.LINE_END;
+        JLabel unitIdLabel = new JLabel("Unit ID:");
+        unitIdLabel.setPreferredSize(labelDimension);
+        settingsPanel.add(unitIdLabel, gbc);
+        gbc.gridx = 1;
+        gbc.anchor = GridBagConstraints.LINE_START;
+        unitIdField.setPreferredSize(fieldDimension);
+        settingsPanel.add(unitIdField, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 1;
+        gbc.anchor = GridBagConstraints.LINE_END;
+        JLabel stopOnErrorLabel = new JLabel("Stop On Error:");
+        stopOnErrorLabel.setPreferredSize(labelDimension);
+        settingsPanel.add(stopOnErrorLabel, gbc);
+        gbc.gridx = 1;
+        gbc.anchor = GridBagConstraints.LINE_START;
+        stopOnErrorCheckbox.setPreferredSize(fieldDimension);
+        settingsPanel.add(stopOnErrorCheckbox, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 2;
+        gbc.anchor = GridBagConstraints.LINE_END;
+        JLabel operationsFileLabel = new JLabel("Operations File:");
+        operationsFileLabel.setPreferredSize(labelDimension);
+        settingsPanel.add(operationsFileLabel, gbc);
+        gbc.gridx = 1;
+        gbc.anchor = GridBagConstraints.LINE_START;
+        operationsFileField.setPreferredSize(fieldDimension);
+        settingsPanel.add(operationsFileField, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 3;
+        gbc.gridwidth = 2;
+        gbc.anchor = GridBagConstraints.LINE_START;
+        settingsPanel.add(new JLabel("One operation per line, e.g. Read Holding Registers; 100; 10; Float or Delay; 50. The file overrides the list."), gbc);
+
+        gbc.gridy = 4;
+        gbc.fill = GridBagConstraints.BOTH;
+        gbc.weighty = 1.0;
+        settingsPanel.add(new JScrollPane(operationsArea), gbc);
+
+        mainPanel.add(connectionPanel, BorderLayout.NORTH);
+        mainPanel.add(settingsPanel, BorderLayout.CENTER);
+
+        add(mainPanel, BorderLayout.CENTER);
+        add(getFooterPanel(), BorderLayout.SOUTH);
+
+        toggleConnectionFields();
+    }
+
+    private static @NotNull JPanel getFooterPanel() {
+        JLabel developerLabel = new JLabel("<html><i>Developed by Mohammed Hlayel;</i></html>");
+        JLabel githubLink = new JLabel("<html><a href='https://github.com/Sahermatter2024'>Help and Update</a></html>");
+        githubLink.setCursor(new Cursor(Cursor.HAND_CURSOR));
+        githubLink.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                try {
+                    Desktop.getDesktop().browse(new URI("https://github.com/Sahermatter2024"));
+                } catch (Exception ex) {
+                    log.error("Error opening link", ex);
+                }
+            }
+        });
+
+        JPanel footerPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        footerPanel.add(developerLabel);
+        footerPanel.add(githubLink);
+        return footerPanel;
+    }
+
+    private void toggleConnectionFields() {
+        boolean pipelined = ModbusReadSampler.CLIENT_MODE_PIPELINED.equals(clientModeDropdown.getSelectedItem());
+        useExistingConnectionCheckbox.setEnabled(!pipelined);
+        boolean useExisting = !pipelined && useExistingConnectionCheckbox.isSelected();
+        ipAddressField.setEnabled(!useExisting);
+        portField.setEnabled(!useExisting);
+        timeoutField.setEnabled(!useExisting);
+        pipelineDepthField.setEnabled(pipelined);
+        transportDropdown.setEnabled(!useExisting && !pipelined);
+    }
+
+    @Override
+    public void configure(TestElement element) {
+        super.configure(element);
+        ModbusSequenceSampler sampler = (ModbusSequenceSampler) element;
+        useExistingConnectionCheckbox.setSelected(sampler.getUseExistingConnection());
+        ipAddressField.setText(sampler.getIpAddress());
+        portField.setText(sampler.getPort());
+        timeoutField.setText(sampler.getTimeout());
+        clientModeDropdown.setSelectedItem(sampler.getClientMode());
+        transportDropdown.setSelectedItem(sampler.getTransport());
+        pipelineDepthField.setText(sampler.getPipelineDepth());
+        unitIdField.setText(sampler.getUnitId());
+        stopOnErrorCheckbox.setSelected(sampler.getStopOnError());
+        operationsFileField.setText(sampler.getOperationsFile());
+        operationsArea.setText(sampler.getOperations());
+        toggleConnectionFields();
+    }
+
+    @Override
+    public TestElement createTestElement() {
+        ModbusSequenceSampler sampler = new ModbusSequenceSampler();
+        modifyTestElement(sampler);
+        return sampler;
+    }
+
+    @Override
+    public void modifyTestElement(TestElement element) {
+        super.configureTestElement(element);
+        ModbusSequenceSampler sampler = (ModbusSequenceSampler) element;
+        sampler.setUseExistingConnection(useExistingConnectionCheckbox.isSelected());
+        sampler.setIpAddress(ipAddressField.getText());
+        sampler.setPort(portField.getText());
+        sampler.setTimeout(timeoutField.getText());
+        sampler.setClientMode(clientModeDropdown.getSelectedItem() != null ? clientModeDropdown.getSelectedItem().toString() : "");
+        sampler.setTransport(transportDropdown.getSelectedItem() != null ? transportDropdown.getSelectedItem().toString() : ModbusTransports.TRANSPORT_TCP);
+        sampler.setPipelineDepth(pipelineDepthField.getText());
+        sampler.setUnitId(unitIdField.getText());
+        sampler.setStopOnError(stopOnErrorCheckbox.isSelected());
+        sampler.setOperationsFile(operationsFileField.getText());
+        sampler.setOperations(operationsArea.getText());
+    }
+
+    @Override
+    public void clearGui() {
+        super.clearGui();
+        useExistingConnectionCheckbox.setSelected(false);
+        ipAddressField.setText("");
+        portField.setText("");
+        timeoutField.setText("2000");
+        clientModeDropdown.setSelectedIndex(0);
+        transportDropdown.setSelectedIndex(0);
+        pipelineDepthField.setText("8");
+        unitIdField.setText("1");
+        stopOnErrorCheckbox.setSelected(true);
+        operationsFileField.setText("");
+        operationsArea.setText("");
+        toggleConnectionFields();
+    }
+
+    @Override
+    public String getLabelResource() {
+        return "modbus_sequence_sampler_title";
+    }
+
+    @Override
+    public String getStaticLabel() {
+        return "Modbus Sequence Sampler";
+    }
+}
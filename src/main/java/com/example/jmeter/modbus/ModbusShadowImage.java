@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+
+package com.example.jmeter.modbus;
+
+import java.util.Arrays;
+
+/**
+ * Last payload read from one block of a device, used to report by exception. A new payload is first checked
+ * against the stored hash; only when the hashes match are the bytes compared, so a change usually costs one pass.
+ * Each sampler keeps its own images, so no locking is needed.
+ */
+final class ModbusShadowImage {
+    private long baselineNanos;
+    private byte[] values;
+    private int hash;
+    private long samples;
+    private long changes;
+
+    /**
+     * Takes over the payload if it differs from the shadow and returns true. The first payload is the baseline:
+     * it is reported like a change but not counted, so the counts and rates only cover changes seen afterwards.
+     */
+    boolean update(byte[] payload) {
+        int payloadHash = Arrays.hashCode(payload);
+        if (values == null) {
+            baselineNanos = System.nanoTime();
+        } else {
+            samples++;
+            if (payloadHash == hash && Arrays.equals(values, payload)) {
+                return false;
+            }
+            changes++;
+        }
+        values = payload;
+        hash = payloadHash;
+        return true;
+    }
+
+    long getChanges() {
+        return changes;
+    }
+
+    /**
+     * Percentage of samples after the baseline whose values changed.
+     */
+    double getChangeRatio() {
+        return samples == 0 ? 0 : changes * 100.0 / samples;
+    }
+
+    /**
+     * Changes per second since the baseline.
+     */
+    double getChangesPerSecond() {
+        long elapsed = System.nanoTime() - baselineNanos;
+        return elapsed <= 0 ? 0 : changes * 1_000_000_000.0 / elapsed;
+    }
+}
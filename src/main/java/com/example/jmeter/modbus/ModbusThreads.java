@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+
+package com.example.jmeter.modbus;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates the background threads used by the plugin. On Java 8 to 20 these are daemon platform threads;
+ * the Java 21 variant of this class (META-INF/versions/21) creates virtual threads instead.
+ */
+public final class ModbusThreads {
+
+    private ModbusThreads() {
+    }
+
+    public static boolean isVirtualThreadsEnabled() {
+        return false;
+    }
+
+    /**
+     * Returns an unstarted thread that will not keep the JVM alive.
+     */
+    public static Thread newThread(String name, Runnable task) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * Returns an unstarted daemon platform thread, for tasks that block inside j2mod. The Java 21 variant keeps
+     * these off virtual threads, since j2mod's synchronized calls would pin the carrier thread.
+     */
+    public static Thread newPlatformThread(String name, Runnable task) {
+        return newThread(name, task);
+    }
+
+    public static ThreadFactory threadFactory(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return task -> newThread(prefix + "-" + count.incrementAndGet(), task);
+    }
+
+    public static ThreadFactory platformThreadFactory(String prefix) {
+        return threadFactory(prefix);
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+
+package com.example.jmeter.modbus;
+
+import com.ghgande.j2mod.modbus.io.ModbusTCPTransport;
+import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.services.FileServer;
+import org.apache.jmeter.util.JMeterUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.TrustManagerFactory;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Modbus/TCP Security: MBAP frames inside TLS, by default on port 802. The TLS layer is started over the socket j2mod
+ * has just connected, so pooled, shared and per-thread connections and the j2mod transactions work unchanged.
+ * <p>
+ * All connections share one SSLContext, built from the modbus.tls.* JMeter properties, and with it the client session
+ * cache, so reconnecting to a device resumes its TLS session instead of running a full handshake. The duration of
+ * each handshake is kept until the first sample on the connection reports it.
+ * <p>
+ * The device certificate must match the host name or IP address, unless the JMeter property
+ * modbus.tls.verifyHostname is false.
+ */
+public class ModbusTlsTransport extends ModbusTCPTransport {
+    private static final Logger log = LogManager.getLogger(ModbusTlsTransport.class);
+
+    private static volatile SSLContext context;
+    private static final Map<String, SSLSession> lastSessions = new ConcurrentHashMap<>();
+
+    private final String host;
+    private final int port;
+    private final int timeout;
+    private long handshakeNanos = -1;
+    private boolean resumed;
+    private String protocol;
+
+    public ModbusTlsTransport(String host, int port, int timeout) {
+        this.host = host;
+        this.port = port;
+        this.timeout = timeout;
+    }
+
+    @Override
+    public void setSocket(Socket socket) throws IOException {
+        // The peer host and port are the session cache key, so they must be the same on every reconnect
+        SSLSocket tls = (SSLSocket) getContext().getSocketFactory().createSocket(socket, host, port, true);
+        try {
+            tls.setSoTimeout(timeout);
+            if (JMeterUtils.getPropDefault("modbus.tls.verifyHostname", true)) {
+                SSLParameters parameters = tls.getSSLParameters();
+                parameters.setEndpointIdentificationAlgorithm("HTTPS");
+                tls.setSSLParameters(parameters);
+            }
+            long start = System.nanoTime();
+            tls.startHandshake();
+            handshakeNanos = System.nanoTime() - start;
+            SSLSession session = tls.getSession();
+            resumed = isResumption(lastSessions.put(host + ":" + port, session), session);
+            protocol = session.getProtocol();
+        } catch (IOException ex) {
+            tls.close();
+            throw ex;
+        }
+        super.setSocket(tls);
+    }
+
+    /**
+     * Tells whether session continues the previous session to the same device. Up to TLS 1.2 a resumed session keeps
+     * its session ID. TLS 1.3 has no session IDs; the JDK gives a resumed session a new random ID, but copies the
+     * creation time of the session it resumes.
+     */
+    static boolean isResumption(SSLSession previous, SSLSession session) {
+        if (previous == null) {
+            return false;
+        }
+        if ("TLSv1.3".equals(session.getProtocol())) {
+            return previous.getCreationTime() == session.getCreationTime();
+        }
+        return session.getId().length > 0 && Arrays.equals(previous.getId(), session.getId());
+    }
+
+    /**
+     * Adds the handshake time and whether the session was resumed to the result, if this connection has not reported
+     * its handshake yet.
+     */
+    void recordHandshake(SampleResult result) {
+        if (handshakeNanos >= 0) {
+            ModbusSampleMetrics.addMillis(result, "TLS-Handshake-ms", handshakeNanos);
+            ModbusSampleMetrics.add(result, "TLS-Session-Resumed", resumed);
+            ModbusSampleMetrics.add(result, "TLS-Protocol", protocol);
+            handshakeNanos = -1;
+        }
+    }
+
+    /**
+     * Returns the shared SSLContext, creating it on first use. Without key or trust store properties the JVM's
+     * javax.net.ssl settings apply.
+     */
+    static SSLContext getContext() throws IOException {
+        SSLContext current = context;
+        if (current == null) {
+            synchronized (ModbusTlsTransport.class) {
+                current = context;
+                if (current == null) {
+                    try {
+                        current = createContext();
+                    } catch (GeneralSecurityException ex) {
+                        throw new IOException("Could not set up TLS: " + ex.getMessage(), ex);
+                    }
+                    context = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Invalidates the cached client sessions and drops the shared SSLContext, so the next test starts with full
+     * handshakes. Without key or trust store properties the context is the JVM default one, which outlives this class,
+     * so its sessions are invalidated explicitly.
+     */
+    static void resetContext() {
+        SSLContext current;
+        synchronized (ModbusTlsTransport.class) {
+            current = context;
+            context = null;
+        }
+        lastSessions.clear();
+        if (current != null) {
+            SSLSessionContext sessions = current.getClientSessionContext();
+            for (byte[] id : Collections.list(sessions.getIds())) {
+                SSLSession session = sessions.getSession(id);
+                if (session != null) {
+                    session.invalidate();
+                }
+            }
+        }
+    }
+
+    private static SSLContext createContext() throws IOException, GeneralSecurityException {
+        KeyStore keyStore = loadStore("modbus.tls.keyStore", "modbus.tls.keyStorePassword");
+        KeyStore trustStore = loadStore("modbus.tls.trustStore", "modbus.tls.trustStorePassword");
+        if (keyStore == null && trustStore == null) {
+            return SSLContext.getDefault();
+        }
+        KeyManagerFactory keyManagers = null;
+        if (keyStore != null) {
+            keyManagers = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+            keyManagers.init(keyStore, JMeterUtils.getPropDefault("modbus.tls.keyStorePassword", "").toCharArray());
+        }
+        TrustManagerFactory trustManagers = null;
+        if (trustStore != null) {
+            trustManagers = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+            trustManagers.init(trustStore);
+        }
+        SSLContext created = SSLContext.getInstance("TLS");
+        created.init(keyManagers != null ? keyManagers.getKeyManagers() : null,
+                trustManagers != null ? trustManagers.getTrustManagers() : null, null);
+        log.info("Created Modbus TLS context (client certificate: {}, trust store: {})", keyStore != null, trustStore != null);
+        return created;
+    }
+
+    /**
+     * Loads a key store named by a JMeter property, resolved against the test plan directory, or returns null if
+     * the property is not set. The store type follows from the file contents (PKCS12 or JKS).
+     */
+    private static KeyStore loadStore(String pathProperty, String passwordProperty) throws IOException, GeneralSecurityException {
+        String path = JMeterUtils.getPropDefault(pathProperty, "").trim();
+        if (path.isEmpty()) {
+            return null;
+        }
+        char[] password = JMeterUtils.getPropDefault(passwordProperty, "").toCharArray();
+        KeyStore store = KeyStore.getInstance(KeyStore.getDefaultType());
+        try (InputStream in = Files.newInputStream(FileServer.getFileServer().getResolvedFile(path).toPath())) {
+            store.load(in, password);
+        }
+        return store;
+    }
+}
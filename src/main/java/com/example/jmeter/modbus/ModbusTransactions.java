@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+
+package com.example.jmeter.modbus;
+
+import com.ghgande.j2mod.modbus.io.ModbusTCPTransaction;
+import com.ghgande.j2mod.modbus.msg.ModbusRequest;
+import com.ghgande.j2mod.modbus.msg.ModbusResponse;
+import com.ghgande.j2mod.modbus.net.TCPMasterConnection;
+
+/**
+ * Executes a single request/response transaction on a blocking j2mod connection. Callers run on platform threads,
+ * since j2mod blocks inside synchronized methods.
+ */
+public final class ModbusTransactions {
+
+    // A j2mod transaction is only bound to a connection and request while it executes, so each thread reuses one
+    private static final ThreadLocal<ModbusTCPTransaction> transactions = ThreadLocal.withInitial(ModbusTCPTransaction::new);
+
+    private ModbusTransactions() {
+    }
+
+    public static ModbusResponse execute(TCPMasterConnection connection, ModbusRequest request) throws Exception {
+        ModbusTCPTransaction transaction = transactions.get();
+        transaction.setConnection(connection);
+        transaction.setRequest(request);
+        transaction.execute();
+        return transaction.getResponse();
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+
+package com.example.jmeter.modbus;
+
+import com.ghgande.j2mod.modbus.net.TCPMasterConnection;
+import org.apache.jmeter.samplers.SampleResult;
+
+import java.net.UnknownHostException;
+
+/**
+ * Creates the blocking connections of all samplers and the connection pool for their selected transport.
+ * The connections are returned unconnected. Modbus UDP does not use them; its samplers go through a {@link ModbusUdpChannel}.
+ */
+public final class ModbusTransports {
+    public static final String TRANSPORT_TCP = "Modbus TCP";
+    public static final String TRANSPORT_RTU_OVER_TCP = "RTU over TCP";
+    public static final String TRANSPORT_UDP = "Modbus UDP";
+    public static final String TRANSPORT_TLS = "Modbus/TCP Security";
+
+    private ModbusTransports() {
+    }
+
+    public static TCPMasterConnection newConnection(String host, int port, int timeout, String transport) throws UnknownHostException {
+        TCPMasterConnection connection = new TCPMasterConnection(ModbusEndpointCache.resolve(host));
+        connection.setPort(port);
+        connection.setTimeout(timeout);
+        // j2mod hands a transport set before connecting every new socket of the connection
+        if (isRtuOverTcp(transport)) {
+            connection.setModbusTransport(new ModbusRtuOverTcpTransport());
+        } else if (isTls(transport)) {
+            connection.setModbusTransport(new ModbusTlsTransport(host, port, timeout));
+        }
+        return connection;
+    }
+
+    public static boolean isRtuOverTcp(String transport) {
+        return TRANSPORT_RTU_OVER_TCP.equals(transport);
+    }
+
+    public static boolean isUdp(String transport) {
+        return TRANSPORT_UDP.equals(transport);
+    }
+
+    public static boolean isTls(String transport) {
+        return TRANSPORT_TLS.equals(transport);
+    }
+
+    /**
+     * Reports the TLS handshake of a connection that has just been opened; does nothing for other connections.
+     */
+    static void recordHandshake(SampleResult result, TCPMasterConnection connection) {
+        if (connection != null && connection.getModbusTransport() instanceof ModbusTlsTransport) {
+            ((ModbusTlsTransport) connection.getModbusTransport()).recordHandshake(result);
+        }
+    }
+
+    /**
+     * Rejects client modes that the transport cannot use: RTU frames have no transaction identifiers to match
+     * responses by, UDP has no stream for the pipelined and NIO clients, and those clients do not speak TLS.
+     */
+    static void checkClientMode(String transport, boolean pipelined, boolean nio) {
+        if (isRtuOverTcp(transport) && (pipelined || nio)) {
+            throw new IllegalArgumentException("RTU over TCP has no transaction identifiers and supports the Blocking client mode only.");
+        }
+        if (isUdp(transport) && (pipelined || nio)) {
+            throw new IllegalArgumentException("Modbus UDP keeps requests in flight on its own and supports the Blocking client mode only.");
+        }
+        if (isTls(transport) && (pipelined || nio)) {
+            throw new IllegalArgumentException("Modbus/TCP Security supports the Blocking client mode only.");
+        }
+    }
+}
@@ -0,0 +1,306 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+
+package com.example.jmeter.modbus;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import com.ghgande.j2mod.modbus.ModbusIOException;
+import com.ghgande.j2mod.modbus.msg.ModbusResponse;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.PortUnreachableException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Modbus/UDP client: MBAP frames in datagrams on a connected {@link DatagramChannel}, with no connection setup and
+ * no head-of-line blocking. Any number of requests may be in flight; a reader thread matches the responses to their
+ * requests by transaction identifier. A request that is not answered within the retransmit timeout is sent again
+ * with the same identifier, so whichever copy is answered first completes it and later answers count as duplicates.
+ * <p>
+ * Samplers share one channel per endpoint and timeouts; a Connection Sampler opens a channel of the thread's own.
+ */
+public class ModbusUdpChannel {
+    private static final Logger log = LogManager.getLogger(ModbusUdpChannel.class);
+
+    private static final Map<String, ModbusUdpChannel> channels = new ConcurrentHashMap<>();
+    private static final Set<ModbusUdpChannel> threadChannels = ConcurrentHashMap.newKeySet();
+    private static final ReentrantLock openLock = new ReentrantLock();
+
+    private final String key;
+    private final String endpoint;
+    private final int timeout;
+    private final int retransmitTimeout;
+    private final DatagramChannel channel;
+    private final Map<Integer, PendingTransaction> pending = new ConcurrentHashMap<>();
+    private final ReentrantLock writeLock = new ReentrantLock();
+    // Guarded by writeLock
+    private final ByteBuffer writeBuffer = ByteBuffer.allocate(ModbusFrames.MAX_FRAME_LENGTH);
+    private final AtomicInteger nextTransactionId = new AtomicInteger();
+    private final AtomicLong retransmits = new AtomicLong();
+    private final AtomicLong lostTransactions = new AtomicLong();
+    private final AtomicLong duplicateResponses = new AtomicLong();
+
+    private volatile boolean closed;
+
+    /**
+     * Opens a channel to host:port; key is its entry in the shared channel map, or null if it is not shared.
+     */
+    private ModbusUdpChannel(String key, String host, int port, int timeout, int retransmitTimeout) throws IOException {
+        this.key = key;
+        this.endpoint = host + ":" + port;
+        this.timeout = timeout;
+        this.retransmitTimeout = retransmitTimeout;
+        this.channel = DatagramChannel.open();
+        try {
+            // Connecting only fixes the peer, so the channel receives nothing but this endpoint's datagrams
+            channel.connect(new InetSocketAddress(ModbusEndpointCache.resolve(host), port));
+        } catch (IOException ex) {
+            channel.close();
+            throw ex;
+        }
+
+        ModbusThreads.newThread("modbus-udp-" + endpoint, this::readLoop).start();
+        log.info("Opened {} Modbus UDP channel to {}", key != null ? "shared" : "per-thread", endpoint);
+    }
+
+    /**
+     * Returns the channel shared by all threads for host:port and the given timeouts, opening it on first use.
+     */
+    public static ModbusUdpChannel getChannel(String host, int port, int timeout, int retransmitTimeout) throws IOException {
+        String key = host + ":" + port + "/" + timeout + "/" + retransmitTimeout;
+        ModbusUdpChannel channel = channels.get(key);
+        if (channel != null && channel.isConnected()) {
+            return channel;
+        }
+        openLock.lock();
+        try {
+            channel = channels.get(key);
+            if (channel == null || !channel.isConnected()) {
+                channel = new ModbusUdpChannel(key, host, port, timeout, retransmitTimeout);
+                channels.put(key, channel);
+            }
+            return channel;
+        } finally {
+            openLock.unlock();
+        }
+    }
+
+    /**
+     * Opens a channel that is not shared, for the thread of a Connection Sampler.
+     */
+    public static ModbusUdpChannel open(String host, int port, int timeout, int retransmitTimeout) throws IOException {
+        ModbusUdpChannel channel = new ModbusUdpChannel(null, host, port, timeout, retransmitTimeout);
+        threadChannels.add(channel);
+        return channel;
+    }
+
+    /**
+     * Closes the shared channels and every per-thread channel that is still open.
+     */
+    public static void closeAll() {
+        for (ModbusUdpChannel channel : channels.values()) {
+            channel.close();
+        }
+        channels.clear();
+        for (ModbusUdpChannel channel : threadChannels) {
+            channel.close();
+        }
+        threadChannels.clear();
+    }
+
+    public boolean isConnected() {
+        return !closed;
+    }
+
+    public long getRetransmits() {
+        return retransmits.get();
+    }
+
+    public long getLostTransactions() {
+        return lostTransactions.get();
+    }
+
+    /**
+     * Responses to transactions that were already answered or given up, e.g. the second answer to a retransmitted
+     * request, counted since the previous call. Such answers arrive after their own sample, so each is reported once,
+     * by whichever sample on the channel asks next.
+     */
+    public long takeDuplicateResponses() {
+        return duplicateResponses.getAndSet(0);
+    }
+
+    /**
+     * Sends the request, retransmitting it until the response carrying its transaction identifier arrives or the
+     * timeout runs out.
+     */
+    public ModbusResponse execute(ModbusFrameTemplate request, ModbusPipelinedConnection.Stats stats) throws Exception {
+        if (closed) {
+            throw new ModbusIOException("UDP channel to %s is closed", endpoint);
+        }
+        PendingTransaction transaction = register();
+        stats.maxInFlight = Math.max(stats.maxInFlight, pending.size());
+        try {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+            long interval = TimeUnit.MILLISECONDS.toNanos(retransmitTimeout > 0 ? Math.min(retransmitTimeout, timeout) : timeout);
+            int sent = 0;
+            ModbusResponse response;
+            while (true) {
+                send(request, transaction.transactionId);
+                if (sent++ > 0) {
+                    retransmits.incrementAndGet();
+                    stats.retransmits++;
+                }
+                long remaining = deadline - System.nanoTime();
+                try {
+                    response = transaction.future.get(Math.max(0, Math.min(interval, remaining)), TimeUnit.NANOSECONDS);
+                    break;
+                } catch (TimeoutException ex) {
+                    if (deadline - System.nanoTime() <= 0) {
+                        lostTransactions.incrementAndGet();
+                        stats.lostTransactions++;
+                        throw new ModbusIOException("No response for transaction %d from %s within %d ms (%d retransmits)",
+                                transaction.transactionId, endpoint, timeout, sent - 1);
+                    }
+                } catch (ExecutionException ex) {
+                    throw ex.getCause() instanceof Exception ? (Exception) ex.getCause() : ex;
+                }
+            }
+            stats.matchNanos += System.nanoTime() - transaction.receivedNanos;
+            stats.transactions++;
+
+            if ((response.getFunctionCode() & 0x7F) != request.getFunctionCode()) {
+                throw new ModbusIOException("Transaction %d answered with function code %d, expected %d",
+                        transaction.transactionId, response.getFunctionCode(), request.getFunctionCode());
+            }
+            return ModbusFrames.checkResponse(response);
+        } finally {
+            pending.remove(transaction.transactionId, transaction);
+        }
+    }
+
+    private PendingTransaction register() {
+        PendingTransaction transaction = new PendingTransaction();
+        int transactionId;
+        do {
+            transactionId = nextTransactionId.incrementAndGet() & 0xFFFF;
+        } while (pending.putIfAbsent(transactionId, transaction) != null);
+        transaction.transactionId = transactionId;
+        return transaction;
+    }
+
+    private void send(ModbusFrameTemplate request, int transactionId) throws IOException {
+        writeLock.lock();
+        try {
+            writeBuffer.clear();
+            request.writeTo(writeBuffer, transactionId);
+            writeBuffer.flip();
+            channel.write(writeBuffer);
+        } catch (IOException ex) {
+            if (ex instanceof ClosedChannelException) {
+                close();
+            }
+            throw ex;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void readLoop() {
+        // One byte more than the largest frame, so an oversized datagram is detected rather than truncated silently
+        ByteBuffer buffer = ByteBuffer.allocate(ModbusFrames.MAX_FRAME_LENGTH + 1);
+        byte[] frame = buffer.array();
+        while (!closed) {
+            int length;
+            try {
+                buffer.clear();
+                length = channel.read(buffer);
+            } catch (PortUnreachableException ex) {
+                // An ICMP error for an earlier datagram; the affected transactions time out on their own
+                log.debug("UDP endpoint {} unreachable", endpoint);
+                continue;
+            } catch (IOException ex) {
+                if (!closed) {
+                    log.warn("UDP channel to {} failed: {}", endpoint, ex.getMessage());
+                    close();
+                }
+                return;
+            }
+            try {
+                if (length < ModbusFrames.MBAP_HEADER_LENGTH + 1
+                        || ModbusFrames.bodyLength(frame) != length - ModbusFrames.MBAP_HEADER_LENGTH) {
+                    throw new IOException("Datagram length " + length + " does not match its MBAP header");
+                }
+                PendingTransaction transaction = pending.get(ModbusFrames.transactionId(frame));
+                if (transaction == null || transaction.future.isDone()) {
+                    duplicateResponses.incrementAndGet();
+                    continue;
+                }
+                transaction.receivedNanos = System.nanoTime();
+                transaction.future.complete(ModbusFrames.decode(frame, length));
+            } catch (IOException ex) {
+                log.debug("Discarding malformed datagram from {}: {}", endpoint, ex.getMessage());
+            }
+        }
+    }
+
+    public void close() {
+        closed = true;
+        if (key != null) {
+            channels.remove(key, this);
+        } else {
+            threadChannels.remove(this);
+        }
+        try {
+            channel.close();
+        } catch (IOException ex) {
+            log.debug("Error closing UDP channel to {}", endpoint, ex);
+        }
+        IOException cause = new IOException("UDP channel to " + endpoint + " closed");
+        for (PendingTransaction transaction : pending.values()) {
+            transaction.future.completeExceptionally(cause);
+        }
+        pending.clear();
+    }
+
+    private static final class PendingTransaction {
+        private final CompletableFuture<ModbusResponse> future = new CompletableFuture<>();
+        private int transactionId;
+        private volatile long receivedNanos;
+    }
+}
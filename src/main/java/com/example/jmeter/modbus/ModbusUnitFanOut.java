@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+
+package com.example.jmeter.modbus;
+
+import com.ghgande.j2mod.modbus.ModbusSlaveException;
+import com.ghgande.j2mod.modbus.msg.ModbusResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs one operation for each unit ID of a list, e.g. for every serial device behind a gateway, and records one
+ * sub-result per unit. Pipelined, NIO and UDP clients keep several units in flight on their one connection;
+ * a blocking connection serves the units one after another.
+ */
+final class ModbusUnitFanOut {
+    /**
+     * The work done for one unit, e.g. all chunks of a read. Called from several threads at once.
+     */
+    interface UnitOperation {
+        ModbusResponse execute(int index, ModbusPipelinedConnection.Stats stats) throws Exception;
+    }
+
+    private final String label;
+    private final int[] unitIds;
+    private final ModbusResponse[] responses;
+    private final ModbusSampleResult[] subResults;
+    private final boolean independent;
+    private final AtomicInteger transportFailures = new AtomicInteger();
+    private volatile Exception firstTransportFailure;
+
+    private ModbusUnitFanOut(String label, int[] unitIds, boolean independent) {
+        this.label = label;
+        this.unitIds = unitIds;
+        this.independent = independent;
+        this.responses = new ModbusResponse[unitIds.length];
+        this.subResults = new ModbusSampleResult[unitIds.length];
+    }
+
+    /**
+     * Parses a unit ID list such as "1", "1,2,3" or "1-8,17".
+     */
+    static int[] parseUnitIds(String value) {
+        if (value.trim().isEmpty()) {
+            throw new IllegalArgumentException("Unit ID cannot be empty.");
+        }
+        List<Integer> ids = new ArrayList<>();
+        for (String part : value.split(",")) {
+            String[] bounds = part.trim().split("-", 2);
+            int first = parseUnitId(bounds[0]);
+            int last = bounds.length > 1 ? parseUnitId(bounds[1]) : first;
+            if (last < first) {
+                throw new IllegalArgumentException("Invalid unit ID range: " + part.trim());
+            }
+            for (int id = first; id <= last; id++) {
+                ids.add(id);
+            }
+        }
+        int[] result = new int[ids.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = ids.get(i);
+        }
+        return result;
+    }
+
+    private static int parseUnitId(String value) {
+        int id = Integer.parseInt(value.trim());
+        if (id < 0 || id > 255) {
+            throw new IllegalArgumentException("Unit ID " + id + " is outside 0-255.");
+        }
+        return id;
+    }
+
+    /**
+     * Runs the operation for every unit, with this thread and up to parallelism - 1 helper workers claiming units.
+     * An exception response fails only its own unit. On a connection whose transactions are independent, i.e. matched
+     * by transaction ID, so does a timeout; the error is only rethrown if no unit got an answer at all. On a blocking
+     * connection any other error stops the fan-out and is rethrown once every worker has finished, since the
+     * connection itself is then suspect.
+     */
+    static ModbusUnitFanOut run(String label, int[] unitIds, int parallelism, boolean independent,
+                                ModbusPipelinedConnection.Stats stats, UnitOperation operation) throws Exception {
+        ModbusUnitFanOut fanOut = new ModbusUnitFanOut(label, unitIds, independent);
+        AtomicInteger nextUnit = new AtomicInteger();
+        int workers = Math.min(parallelism, unitIds.length) - 1;
+        List<Future<ModbusPipelinedConnection.Stats>> futures = new ArrayList<>(Math.max(workers, 0));
+        List<AtomicBoolean> started = new ArrayList<>(Math.max(workers, 0));
+        for (int i = 0; i < workers; i++) {
+            AtomicBoolean workerStarted = new AtomicBoolean();
+            started.add(workerStarted);
+            futures.add(ModbusReadChunks.submit(() -> {
+                ModbusPipelinedConnection.Stats workerStats = new ModbusPipelinedConnection.Stats();
+                if (!workerStarted.compareAndSet(false, true)) {
+                    return workerStats;
+                }
+                fanOut.runUnits(nextUnit, workerStats, operation);
+                return workerStats;
+            }));
+        }
+        Exception failure = null;
+        try {
+            fanOut.runUnits(nextUnit, stats, operation);
+        } catch (Exception ex) {
+            failure = ex;
+        }
+        for (int i = 0; i < futures.size(); i++) {
+            Future<ModbusPipelinedConnection.Stats> future = futures.get(i);
+            // A worker still queued behind other samples' work has no unit left to claim
+            if (started.get(i).compareAndSet(false, true)) {
+                future.cancel(false);
+                continue;
+            }
+            try {
+                stats.add(future.get());
+            } catch (ExecutionException ex) {
+                if (failure == null) {
+                    failure = ex.getCause() instanceof Exception ? (Exception) ex.getCause() : ex;
+                }
+            }
+        }
+        if (failure == null && fanOut.transportFailures.get() == unitIds.length) {
+            failure = fanOut.firstTransportFailure;
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return fanOut;
+    }
+
+    private void runUnits(AtomicInteger nextUnit, ModbusPipelinedConnection.Stats stats, UnitOperation operation) throws Exception {
+        int index;
+        while ((index = nextUnit.getAndIncrement()) < unitIds.length) {
+            ModbusSampleResult subResult = new ModbusSampleResult();
+            subResult.setSampleLabel(label + " [unit " + unitIds[index] + "]");
+            subResult.setSamplerData("Unit ID " + unitIds[index]);
+            subResults[index] = subResult;
+            subResult.sampleStart();
+            try {
+                responses[index] = operation.execute(index, stats);
+                subResult.setSuccessful(true);
+            } catch (ModbusSlaveException ex) {
+                // The gateway answered for this unit, so the remaining units still run
+                subResult.setResponseMessage("Error: " + ex.getMessage());
+                subResult.setSuccessful(false);
+            } catch (Exception ex) {
+                subResult.setResponseMessage("Error: " + ex.getMessage());
+                subResult.setSuccessful(false);
+                if (!independent) {
+                    nextUnit.set(unitIds.length);
+                    throw ex;
+                }
+                if (transportFailures.getAndIncrement() == 0) {
+                    firstTransportFailure = ex;
+                }
+            } finally {
+                subResult.sampleEnd();
+            }
+        }
+    }
+
+    int size() {
+        return unitIds.length;
+    }
+
+    /**
+     * The unit's response, or null if the unit failed.
+     */
+    ModbusResponse getResponse(int index) {
+        return responses[index];
+    }
+
+    ModbusSampleResult getSubResult(int index) {
+        return subResults[index];
+    }
+
+    int getFailedUnits() {
+        int failed = 0;
+        for (ModbusSampleResult subResult : subResults) {
+            if (!subResult.isSuccessful()) {
+                failed++;
+            }
+        }
+        return failed;
+    }
+}
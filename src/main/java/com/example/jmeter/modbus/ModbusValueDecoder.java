@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+
+package com.example.jmeter.modbus;
+
+import com.ghgande.j2mod.modbus.Modbus;
+import com.ghgande.j2mod.modbus.msg.ModbusResponse;
+import com.ghgande.j2mod.modbus.msg.ReadCoilsResponse;
+import com.ghgande.j2mod.modbus.msg.ReadInputDiscretesResponse;
+import com.ghgande.j2mod.modbus.msg.ReadInputRegistersResponse;
+import com.ghgande.j2mod.modbus.msg.ReadMultipleRegistersResponse;
+import com.ghgande.j2mod.modbus.msg.ReadWriteMultipleResponse;
+import com.ghgande.j2mod.modbus.procimg.InputRegister;
+
+/**
+ * Turns a read response into the text stored as the sample's response data.
+ * Decoders are chosen once per function code, data type and word order when a sampler plan is compiled.
+ */
+public interface ModbusValueDecoder {
+
+    String decode(ModbusResponse response);
+
+    static ModbusValueDecoder forRead(int functionCode, String dataType, ModbusWordOrder wordOrder) {
+        switch (functionCode) {
+            case Modbus.READ_COILS:
+                return response -> ((ReadCoilsResponse) response).getCoils().toString();
+            case Modbus.READ_INPUT_DISCRETES:
+                return response -> ((ReadInputDiscretesResponse) response).getDiscretes().toString();
+            case Modbus.READ_INPUT_REGISTERS: {
+                RegisterDecoder decoder = forRegisters(dataType, wordOrder);
+                return response -> decoder.decode(((ReadInputRegistersResponse) response).getRegisters());
+            }
+            case Modbus.READ_MULTIPLE_REGISTERS: {
+                RegisterDecoder decoder = forRegisters(dataType, wordOrder);
+                return response -> decoder.decode(((ReadMultipleRegistersResponse) response).getRegisters());
+            }
+            case Modbus.READ_WRITE_MULTIPLE: {
+                RegisterDecoder decoder = forRegisters(dataType, wordOrder);
+                return response -> decoder.decode(((ReadWriteMultipleResponse) response).getRegisters());
+            }
+            default:
+                throw new IllegalArgumentException("Unsupported read function code: " + functionCode);
+        }
+    }
+
+    static RegisterDecoder forRegisters(String dataType, ModbusWordOrder wordOrder) {
+        switch (dataType) {
+            case "Hexadecimal":
+                return registers -> {
+                    StringBuilder builder = new StringBuilder();
+                    for (InputRegister register : registers) {
+                        appendSeparator(builder).append(Integer.toHexString(register.getValue()));
+                    }
+                    return builder.toString();
+                };
+            case "Integer":
+                return registers -> {
+                    StringBuilder builder = new StringBuilder();
+                    for (InputRegister register : registers) {
+                        appendSeparator(builder).append(register.getValue());
+                    }
+                    return builder.toString();
+                };
+            case "Float":
+                return registers -> {
+                    StringBuilder builder = new StringBuilder();
+                    for (float value : ModbusRegisterCodec.decodeFloat32(ModbusRegisterCodec.words(registers), wordOrder)) {
+                        appendSeparator(builder).append(value);
+                    }
+                    return builder.toString();
+                };
+            case "Float64":
+                return registers -> {
+                    StringBuilder builder = new StringBuilder();
+                    for (double value : ModbusRegisterCodec.decodeFloat64(ModbusRegisterCodec.words(registers), wordOrder)) {
+                        appendSeparator(builder).append(value);
+                    }
+                    return builder.toString();
+                };
+            case "Int32":
+                return registers -> {
+                    StringBuilder builder = new StringBuilder();
+                    for (int value : ModbusRegisterCodec.decodeInt32(ModbusRegisterCodec.words(registers), wordOrder)) {
+                        appendSeparator(builder).append(value);
+                    }
+                    return builder.toString();
+                };
+            case "UInt32":
+                return registers -> {
+                    StringBuilder builder = new StringBuilder();
+                    for (long value : ModbusRegisterCodec.decodeUInt32(ModbusRegisterCodec.words(registers), wordOrder)) {
+                        appendSeparator(builder).append(value);
+                    }
+                    return builder.toString();
+                };
+            case "Int64":
+                return registers -> {
+                    StringBuilder builder = new StringBuilder();
+                    for (long value : ModbusRegisterCodec.decodeInt64(ModbusRegisterCodec.words(registers), wordOrder)) {
+                        appendSeparator(builder).append(value);
+                    }
+                    return builder.toString();
+                };
+            case "String":
+                return registers -> {
+                    StringBuilder builder = new StringBuilder(registers.length * 2);
+                    for (InputRegister register : registers) {
+                        builder.append((char) (register.getValue() & 0xFF)).append((char) ((register.getValue() >> 8) & 0xFF));
+                    }
+                    return builder.toString();
+                };
+            case "Boolean":
+                return registers -> {
+                    StringBuilder builder = new StringBuilder();
+                    for (InputRegister register : registers) {
+                        appendSeparator(builder).append(register.getValue() != 0);
+                    }
+                    return builder.toString();
+                };
+            default:
+                throw new IllegalArgumentException("Unsupported data type: " + dataType);
+        }
+    }
+
+    static StringBuilder appendSeparator(StringBuilder builder) {
+        return builder.length() > 0 ? builder.append(',') : builder;
+    }
+
+    /**
+     * Decodes raw register values for one data type.
+     */
+    interface RegisterDecoder {
+        String decode(InputRegister[] registers);
+    }
+}
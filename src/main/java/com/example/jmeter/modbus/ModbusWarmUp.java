@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+
+package com.example.jmeter.modbus;
+
+import org.apache.jmeter.util.JMeterUtils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Spaces out the connections opened during the warm-up phase so that ramping threads do not all connect at once.
+ * The rate is set with the JMeter property {@code modbus.warmup.connectsPerSecond} (default 50, 0 = unlimited).
+ */
+public final class ModbusWarmUp {
+    private static final int CONNECTS_PER_SECOND = JMeterUtils.getPropDefault("modbus.warmup.connectsPerSecond", 50);
+    private static final long INTERVAL_NANOS = CONNECTS_PER_SECOND > 0 ? TimeUnit.SECONDS.toNanos(1) / CONNECTS_PER_SECOND : 0;
+
+    private static final AtomicLong nextSlot = new AtomicLong(System.nanoTime());
+
+    private ModbusWarmUp() {
+    }
+
+    /**
+     * Reserves the next connect slot and sleeps until it is due.
+     */
+    public static void awaitConnectSlot() throws InterruptedException {
+        if (INTERVAL_NANOS == 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        long slot = Math.max(nextSlot.getAndAccumulate(now, (next, n) -> Math.max(next, n) + INTERVAL_NANOS), now);
+        if (slot > now) {
+            TimeUnit.NANOSECONDS.sleep(slot - now);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+
+package com.example.jmeter.modbus;
+
+/**
+ * Register layout of values wider than 16 bits, named after the order of the bytes A (most significant) to D.
+ * CDAB and DCBA reverse the order of the registers; BADC and DCBA swap the two bytes inside each register.
+ * For 64-bit values the same rules apply to all four registers.
+ */
+public enum ModbusWordOrder {
+    ABCD(false, false),
+    CDAB(true, false),
+    BADC(false, true),
+    DCBA(true, true);
+
+    final boolean reverseWords;
+    final boolean swapBytes;
+
+    ModbusWordOrder(boolean reverseWords, boolean swapBytes) {
+        this.reverseWords = reverseWords;
+        this.swapBytes = swapBytes;
+    }
+
+    /**
+     * Returns the word order with the given name, or ABCD if the name is empty.
+     */
+    public static ModbusWordOrder fromName(String name) {
+        return name == null || name.isEmpty() ? ABCD : valueOf(name);
+    }
+
+    public static String[] names() {
+        ModbusWordOrder[] orders = values();
+        String[] names = new String[orders.length];
+        for (int i = 0; i < orders.length; i++) {
+            names[i] = orders[i].name();
+        }
+        return names;
+    }
+}
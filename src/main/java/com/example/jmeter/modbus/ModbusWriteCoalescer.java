@@ -0,0 +1,221 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+
+package com.example.jmeter.modbus;
+
+import com.ghgande.j2mod.modbus.Modbus;
+import com.ghgande.j2mod.modbus.procimg.Register;
+import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.testelement.TestElement;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-thread state of a {@link ModbusWriteCoalescingController}. Joins runs of consecutive Write samplers with the
+ * same endpoint, unit ID, register or coil table and client mode, each writing right after the previous one's range,
+ * into Write Multiple Registers (FC16) or Write Multiple Coils (FC15) requests of at most the configured batch size.
+ * A batch is sent when its first sampler runs; since only samplers that run back to back are joined, no other
+ * sampler's request is moved across it.
+ */
+final class ModbusWriteCoalescer {
+    private static final Logger log = LogManager.getLogger(ModbusWriteCoalescer.class);
+
+    private final Map<ModbusWriteSampler, Member> members = new IdentityHashMap<>();
+    private final List<Batch> batches = new ArrayList<>();
+
+    /**
+     * Plans the batched writes for the given children, in tree order. Samplers whose settings are evaluated per sample,
+     * cannot be parsed, fan out over several units or reset old values first, and read/write or mask writes, are left
+     * to write on their own, and like any other sampler or controller they end the current batch. Writes are only
+     * joined when each starts where the previous one ends, so no address outside the original writes is ever written.
+     */
+    ModbusWriteCoalescer(List<TestElement> children, int maxBatchSize) {
+        Batch batch = null;
+        String batchKey = null;
+        for (TestElement child : children) {
+            Member member = candidate(child);
+            if (member == null) {
+                batch = null;
+                continue;
+            }
+            ModbusWritePlan plan = member.plan;
+            String key = plan.host + ":" + plan.port + "/" + plan.transport + "/" + plan.unitIds[0] + "/" + plan.writesCoils() + "/" + plan.pipelined + "/" + plan.nio
+                    + "/" + plan.useExistingConnection + "/" + plan.pooled;
+            if (batch == null || !key.equals(batchKey) || plan.address != batch.end() || batch.length + member.length() > maxLength(plan, maxBatchSize)) {
+                // The first sampler of a batch supplies the connection settings of the whole batch
+                batch = new Batch(member.sampler, plan, plan.address);
+                batchKey = key;
+                batches.add(batch);
+            }
+            batch.length += member.length();
+            batch.members.add(member);
+            member.batch = batch;
+        }
+        for (Batch planned : batches) {
+            if (planned.members.size() > 1) {
+                planned.createWriter();
+                for (Member member : planned.members) {
+                    members.put(member.sampler, member);
+                    member.sampler.setCoalescer(this);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the child as a batch member, or null if it has to run on its own.
+     */
+    private static Member candidate(TestElement child) {
+        if (!(child instanceof ModbusWriteSampler)) {
+            return null;
+        }
+        ModbusWriteSampler sampler = (ModbusWriteSampler) child;
+        ModbusWritePlan plan;
+        try {
+            plan = sampler.compilePlan();
+        } catch (IllegalArgumentException ex) {
+            log.debug("Not coalescing {}: {}", sampler.getName(), ex.getMessage());
+            return null;
+        }
+        if (plan.dynamic || plan.fanOut || plan.resetOldValues || !isPlainWrite(plan.functionCode)) {
+            return null;
+        }
+        return new Member(sampler, plan);
+    }
+
+    private static int maxLength(ModbusWritePlan plan, int maxBatchSize) {
+        int limit = ModbusWritePlan.maxWriteLength(plan.writesCoils() ? Modbus.WRITE_MULTIPLE_COILS : Modbus.WRITE_MULTIPLE_REGISTERS);
+        return maxBatchSize > 0 ? Math.min(maxBatchSize, limit) : limit;
+    }
+
+    private static boolean isPlainWrite(int functionCode) {
+        switch (functionCode) {
+            case Modbus.WRITE_SINGLE_REGISTER:
+            case Modbus.WRITE_MULTIPLE_REGISTERS:
+            case Modbus.WRITE_COIL:
+            case Modbus.WRITE_MULTIPLE_COILS:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Forgets the results of the previous iteration.
+     */
+    void reset() {
+        for (Batch batch : batches) {
+            batch.result = null;
+        }
+    }
+
+    /**
+     * Returns the sampler's share of its batched write, sending the batch on first use in this iteration,
+     * or null if the sampler is not coalesced.
+     */
+    SampleResult sample(ModbusWriteSampler sampler) {
+        Member member = members.get(sampler);
+        if (member == null) {
+            return null;
+        }
+        Batch batch = member.batch;
+        if (batch.result == null) {
+            batch.result = batch.writer.sample(null);
+        }
+        SampleResult batched = batch.result;
+        SampleResult result = new SampleResult();
+        result.setSampleLabel(sampler.getName());
+        result.setStampAndTime(batched.getStartTime(), batched.getTime() / batch.members.size());
+        result.setResponseHeaders(batched.getResponseHeaders());
+        ModbusSampleMetrics.add(result, "Coalesced-Write", batch.address + "-" + (batch.end() - 1));
+        ModbusSampleMetrics.add(result, "Coalesced-Samplers", batch.members.size());
+        result.setResponseMessage(batched.getResponseMessage());
+        result.setSuccessful(batched.isSuccessful());
+        return result;
+    }
+
+    private static final class Member {
+        private final ModbusWriteSampler sampler;
+        private final ModbusWritePlan plan;
+        private Batch batch;
+
+        private Member(ModbusWriteSampler sampler, ModbusWritePlan plan) {
+            this.sampler = sampler;
+            this.plan = plan;
+        }
+
+        private int length() {
+            return plan.coils != null ? plan.coils.length : plan.registers.length;
+        }
+    }
+
+    private static final class Batch {
+        private final ModbusWriteSampler leader;
+        private final ModbusWritePlan leaderPlan;
+        private final int address;
+        private int length;
+        private final List<Member> members = new ArrayList<>();
+        private ModbusWriteSampler writer;
+        private SampleResult result;
+
+        private Batch(ModbusWriteSampler leader, ModbusWritePlan leaderPlan, int address) {
+            this.leader = leader;
+            this.leaderPlan = leaderPlan;
+            this.address = address;
+        }
+
+        private int end() {
+            return address + length;
+        }
+
+        /**
+         * The batch is written by a copy of the leader running a merged plan, so it uses the leader's connection,
+         * retry and circuit breaker settings.
+         */
+        private void createWriter() {
+            Register[] registers = null;
+            boolean[] coils = null;
+            if (leaderPlan.writesCoils()) {
+                coils = new boolean[length];
+                for (Member member : members) {
+                    System.arraycopy(member.plan.coils, 0, coils, member.plan.address - address, member.plan.coils.length);
+                }
+            } else {
+                registers = new Register[length];
+                for (Member member : members) {
+                    System.arraycopy(member.plan.registers, 0, registers, member.plan.address - address, member.plan.registers.length);
+                }
+            }
+            writer = (ModbusWriteSampler) leader.clone();
+            writer.setPreConnect(false);
+            writer.setPlan(leaderPlan.merged(address, registers, coils));
+        }
+    }
+}
@@ -0,0 +1,485 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+
+package com.example.jmeter.modbus;
+
+import com.ghgande.j2mod.modbus.Modbus;
+import com.ghgande.j2mod.modbus.msg.MaskWriteRegisterRequest;
+import com.ghgande.j2mod.modbus.msg.ModbusRequest;
+import com.ghgande.j2mod.modbus.msg.ReadCoilsRequest;
+import com.ghgande.j2mod.modbus.msg.ReadMultipleRegistersRequest;
+import com.ghgande.j2mod.modbus.msg.ReadWriteMultipleRequest;
+import com.ghgande.j2mod.modbus.msg.WriteCoilRequest;
+import com.ghgande.j2mod.modbus.msg.WriteMultipleCoilsRequest;
+import com.ghgande.j2mod.modbus.msg.WriteMultipleRegistersRequest;
+import com.ghgande.j2mod.modbus.msg.WriteSingleRegisterRequest;
+import com.ghgande.j2mod.modbus.procimg.Register;
+import com.ghgande.j2mod.modbus.procimg.SimpleRegister;
+import com.ghgande.j2mod.modbus.util.BitVector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Immutable, pre-parsed settings of a {@link ModbusWriteSampler}, compiled once per thread.
+ * Values are parsed into registers or coils up front, so a sample only has to build the request.
+ * A plan whose properties contain JMeter variables or functions is dynamic and recompiled for every sample.
+ */
+public final class ModbusWritePlan {
+    final String host;
+    final int port;
+    final int timeout;
+    final int keepAlive;
+    /** Transport of the connections, one of the {@link ModbusTransports} transports. */
+    final String transport;
+    /** Modbus UDP through a shared channel, and how long to wait for a response before sending the request again. */
+    final boolean udp;
+    final int retransmitTimeout;
+    final int retryCount;
+    final ModbusRetryPolicy retryPolicy;
+    final boolean pipelined;
+    final boolean nio;
+    final boolean useExistingConnection;
+    final boolean pooled;
+    final int poolMinSize;
+    final int poolMaxSize;
+    final int pipelineDepth;
+    final int warmUpTransactions;
+    final int address;
+    final int functionCode;
+    /** Unit IDs to write to; more than one makes a fan-out with up to fanOutParallelism units in flight. */
+    final int[] unitIds;
+    final boolean fanOut;
+    final int fanOutParallelism;
+    final String value;
+    /** Parsed values of the write; exactly one of the two is set. */
+    final Register[] registers;
+    final boolean[] coils;
+    final boolean resetOldValues;
+    /** How old values are reset, e.g. "Single Frame" or "3 Frames"; null without a reset. */
+    final String resetStrategy;
+    /** Read block of a Read/Write Multiple Registers request and its decoder; the decoder is null otherwise. */
+    final int readAddress;
+    final int readLength;
+    final ModbusValueDecoder decoder;
+    /** The write to the first unit, and to each unit; unitRequests[0] is request. */
+    final ModbusFrameTemplate request;
+    final ModbusFrameTemplate[] unitRequests;
+    /** Zero writes for the part of the reset range the write frame cannot carry; sent before the write, per unit. */
+    final ModbusFrameTemplate[] resetRequests;
+    final ModbusFrameTemplate[][] unitResetRequests;
+    final ModbusFrameTemplate warmUpRequest;
+    final boolean dynamic;
+
+    private ModbusWritePlan(ModbusWriteSampler sampler) {
+        String clientMode = sampler.getClientMode();
+        pipelined = ModbusWriteSampler.CLIENT_MODE_PIPELINED.equals(clientMode);
+        nio = ModbusWriteSampler.CLIENT_MODE_NIO.equals(clientMode);
+        useExistingConnection = !pipelined && !nio && sampler.getUseExistingConnection();
+        transport = sampler.getTransport();
+        if (!useExistingConnection) {
+            ModbusTransports.checkClientMode(transport, pipelined, nio);
+        }
+        udp = !useExistingConnection && ModbusTransports.isUdp(transport);
+        pooled = !pipelined && !nio && !useExistingConnection && !udp && sampler.getUsePooledConnection();
+
+        host = sampler.getIpAddress();
+        retryCount = Integer.parseInt(sampler.getRetryCount());
+        retryPolicy = ModbusRetryPolicy.create(sampler.getRetryPolicy(),
+                Long.parseLong(sampler.getRetryDelay()), Long.parseLong(sampler.getRetryMaxDelay()));
+        if (useExistingConnection) {
+            // Connection settings are disabled in the GUI and may be left empty
+            port = 0;
+            timeout = 0;
+            keepAlive = 0;
+        } else {
+            port = Integer.parseInt(sampler.getPort());
+            timeout = Integer.parseInt(sampler.getTimeout());
+            keepAlive = Integer.parseInt(sampler.getKeepAlive());
+        }
+        poolMinSize = pooled ? Integer.parseInt(sampler.getPoolMinSize()) : 0;
+        poolMaxSize = pooled ? Integer.parseInt(sampler.getPoolMaxSize()) : 0;
+        pipelineDepth = pipelined ? Integer.parseInt(sampler.getPipelineDepth()) : 0;
+        retransmitTimeout = udp ? Integer.parseInt(sampler.getRetransmitTimeout()) : 0;
+        warmUpTransactions = sampler.getPreConnect() ? Integer.parseInt(sampler.getWarmUpTransactions()) : 0;
+
+        if (sampler.getAddress().isEmpty() || sampler.getValue().isEmpty()) {
+            throw new IllegalArgumentException("Address and Value fields cannot be empty.");
+        }
+        address = Integer.parseInt(sampler.getAddress());
+        value = sampler.getValue();
+        functionCode = functionCode(sampler.getWriteMethod());
+        unitIds = ModbusUnitFanOut.parseUnitIds(sampler.getUnitId());
+        fanOut = unitIds.length > 1;
+        fanOutParallelism = fanOut && (pipelined || nio || udp) ? Math.max(1, Integer.parseInt(sampler.getFanOutParallelism())) : 1;
+        String dataType = sampler.getDataType();
+        Register[] values;
+        boolean[] bits;
+        switch (functionCode) {
+            case Modbus.WRITE_SINGLE_REGISTER:
+                values = new Register[]{new SimpleRegister(parseValueAsInt(value, dataType))};
+                bits = null;
+                break;
+            case Modbus.WRITE_MULTIPLE_REGISTERS:
+            case Modbus.READ_WRITE_MULTIPLE:
+                values = parseMultipleRegisters(value, dataType, ModbusWordOrder.fromName(sampler.getWordOrder()));
+                bits = null;
+                break;
+            case Modbus.MASK_WRITE_REGISTER:
+                values = toRegisters(parseIntArray(value, dataType));
+                if (values.length != 2) {
+                    throw new IllegalArgumentException("Mask Write Register expects an AND mask and an OR mask, e.g. 0xFF00,0x0012.");
+                }
+                bits = null;
+                break;
+            case Modbus.WRITE_COIL:
+                values = null;
+                bits = new boolean[]{Boolean.parseBoolean(value)};
+                break;
+            default:
+                values = null;
+                bits = parseBooleanArray(value);
+                break;
+        }
+
+        if (functionCode == Modbus.READ_WRITE_MULTIPLE) {
+            if (sampler.getReadAddress().isEmpty() || sampler.getReadLength().isEmpty()) {
+                throw new IllegalArgumentException("Read Address and Read Length fields cannot be empty.");
+            }
+            readAddress = Integer.parseInt(sampler.getReadAddress());
+            readLength = Integer.parseInt(sampler.getReadLength());
+            decoder = ModbusValueDecoder.forRead(functionCode, dataType, ModbusWordOrder.fromName(sampler.getWordOrder()));
+        } else {
+            readAddress = 0;
+            readLength = 0;
+            decoder = null;
+        }
+
+        // A mask write changes selected bits only, so there are no old values to reset
+        resetOldValues = sampler.getResetOldValues() && functionCode != Modbus.MASK_WRITE_REGISTER;
+        List<int[]> resetFrames = new ArrayList<>();
+        if (resetOldValues && (functionCode == Modbus.WRITE_MULTIPLE_REGISTERS || functionCode == Modbus.WRITE_MULTIPLE_COILS
+                || functionCode == Modbus.READ_WRITE_MULTIPLE)) {
+            // The reset range and the write range both start at the address. The write frame carries the new values
+            // followed by zeros up to the protocol limit; only zeros beyond that limit need frames of their own.
+            int resetLength = Integer.parseInt(sampler.getLength());
+            int writeLength = values != null ? values.length : bits.length;
+            int frameLength = Math.max(writeLength, Math.min(resetLength, maxWriteLength(functionCode)));
+            if (values != null) {
+                values = Arrays.copyOf(values, frameLength);
+                Arrays.fill(values, writeLength, frameLength, new SimpleRegister(0));
+            } else {
+                bits = Arrays.copyOf(bits, frameLength);
+            }
+            int zeroLimit = maxWriteLength(values != null ? Modbus.WRITE_MULTIPLE_REGISTERS : Modbus.WRITE_MULTIPLE_COILS);
+            for (int offset = frameLength; offset < resetLength; offset += zeroLimit) {
+                resetFrames.add(new int[]{address + offset, Math.min(zeroLimit, resetLength - offset)});
+            }
+        }
+        // A single address reset is fully overwritten by the write itself
+        resetStrategy = !resetOldValues ? null : resetFrames.isEmpty() ? "Single Frame" : (resetFrames.size() + 1) + " Frames";
+        registers = values;
+        coils = bits;
+        unitRequests = new ModbusFrameTemplate[unitIds.length];
+        unitResetRequests = new ModbusFrameTemplate[unitIds.length][resetFrames.size()];
+        for (int unit = 0; unit < unitIds.length; unit++) {
+            unitRequests[unit] = new ModbusFrameTemplate(createRequest(registers, coils, unitIds[unit]));
+            for (int i = 0; i < resetFrames.size(); i++) {
+                int[] frame = resetFrames.get(i);
+                unitResetRequests[unit][i] = new ModbusFrameTemplate(createZeroRequest(frame[0], frame[1], registers != null, unitIds[unit]));
+            }
+        }
+        request = unitRequests[0];
+        resetRequests = unitResetRequests[0];
+        warmUpRequest = new ModbusFrameTemplate(createWarmUpRequest());
+        dynamic = ModbusReadPlan.containsFunctions(sampler);
+    }
+
+    /**
+     * A plan that writes the given registers or coils in one request, using the connection settings of base.
+     */
+    private ModbusWritePlan(ModbusWritePlan base, int address, Register[] registers, boolean[] coils) {
+        host = base.host;
+        port = base.port;
+        timeout = base.timeout;
+        keepAlive = base.keepAlive;
+        transport = base.transport;
+        udp = base.udp;
+        retransmitTimeout = base.retransmitTimeout;
+        retryCount = base.retryCount;
+        retryPolicy = base.retryPolicy;
+        pipelined = base.pipelined;
+        nio = base.nio;
+        useExistingConnection = base.useExistingConnection;
+        pooled = base.pooled;
+        poolMinSize = base.poolMinSize;
+        poolMaxSize = base.poolMaxSize;
+        pipelineDepth = base.pipelineDepth;
+        warmUpTransactions = 0;
+        this.address = address;
+        functionCode = registers != null ? Modbus.WRITE_MULTIPLE_REGISTERS : Modbus.WRITE_MULTIPLE_COILS;
+        unitIds = base.unitIds;
+        fanOut = false;
+        fanOutParallelism = 1;
+        value = registers != null ? registers.length + " registers" : coils.length + " coils";
+        this.registers = registers;
+        this.coils = coils;
+        resetOldValues = false;
+        resetStrategy = null;
+        readAddress = 0;
+        readLength = 0;
+        decoder = null;
+        request = new ModbusFrameTemplate(createRequest(registers, coils, unitIds[0]));
+        unitRequests = new ModbusFrameTemplate[]{request};
+        resetRequests = new ModbusFrameTemplate[0];
+        unitResetRequests = new ModbusFrameTemplate[][]{resetRequests};
+        warmUpRequest = new ModbusFrameTemplate(createWarmUpRequest());
+        dynamic = false;
+    }
+
+    /**
+     * Returns a plan that writes registers (or coils) starting at address in a single request to the unit of this plan.
+     */
+    ModbusWritePlan merged(int address, Register[] registers, boolean[] coils) {
+        return new ModbusWritePlan(this, address, registers, coils);
+    }
+
+    /**
+     * Returns the existing plan if it is still valid, otherwise compiles a new one.
+     */
+    static ModbusWritePlan compile(ModbusWriteSampler sampler, ModbusWritePlan previous) {
+        if (previous != null && !previous.dynamic) {
+            return previous;
+        }
+        return new ModbusWritePlan(sampler);
+    }
+
+    static int functionCode(String writeMethod) {
+        switch (writeMethod) {
+            case "Single Register":
+                return Modbus.WRITE_SINGLE_REGISTER;
+            case "Multiple Registers":
+                return Modbus.WRITE_MULTIPLE_REGISTERS;
+            case "Single Coil":
+                return Modbus.WRITE_COIL;
+            case "Multiple Coils":
+                return Modbus.WRITE_MULTIPLE_COILS;
+            case "Read/Write Multiple Registers":
+                return Modbus.READ_WRITE_MULTIPLE;
+            case "Mask Write Register":
+                return Modbus.MASK_WRITE_REGISTER;
+            default:
+                throw new IllegalArgumentException("Unsupported write method: " + writeMethod);
+        }
+    }
+
+    /**
+     * Returns the most registers or coils a single request of the given write function code may carry.
+     */
+    static int maxWriteLength(int functionCode) {
+        switch (functionCode) {
+            case Modbus.WRITE_MULTIPLE_REGISTERS:
+                return 123;
+            case Modbus.WRITE_MULTIPLE_COILS:
+                return 1968;
+            case Modbus.READ_WRITE_MULTIPLE:
+                return 121;
+            default:
+                return 1;
+        }
+    }
+
+    boolean writesCoils() {
+        return functionCode == Modbus.WRITE_COIL || functionCode == Modbus.WRITE_MULTIPLE_COILS;
+    }
+
+    /**
+     * Warm-up transactions read the first target address instead of writing, so the device state is left untouched.
+     */
+    private ModbusRequest createWarmUpRequest() {
+        ModbusRequest request = writesCoils() ? new ReadCoilsRequest(address, 1) : new ReadMultipleRegistersRequest(address, 1);
+        request.setUnitID(unitIds[0]);
+        return request;
+    }
+
+    private static ModbusRequest createZeroRequest(int address, int length, boolean registers, int unitId) {
+        ModbusRequest request;
+        if (registers) {
+            Register[] zeros = new Register[length];
+            Arrays.fill(zeros, new SimpleRegister(0));
+            request = new WriteMultipleRegistersRequest(address, zeros);
+        } else {
+            request = new WriteMultipleCoilsRequest(address, new BitVector(length));
+        }
+        request.setUnitID(unitId);
+        return request;
+    }
+
+    private ModbusRequest createRequest(Register[] registers, boolean[] coils, int unitId) {
+        ModbusRequest request;
+        switch (functionCode) {
+            case Modbus.WRITE_SINGLE_REGISTER:
+                request = new WriteSingleRegisterRequest(address, registers[0]);
+                break;
+            case Modbus.WRITE_MULTIPLE_REGISTERS:
+                request = new WriteMultipleRegistersRequest(address, registers);
+                break;
+            case Modbus.WRITE_COIL:
+                request = new WriteCoilRequest(address, coils[0]);
+                break;
+            case Modbus.MASK_WRITE_REGISTER:
+                request = new MaskWriteRegisterRequest(address, registers[0].getValue(), registers[1].getValue());
+                break;
+            case Modbus.READ_WRITE_MULTIPLE: {
+                ReadWriteMultipleRequest readWrite = new ReadWriteMultipleRequest(unitId, readAddress, readLength, address, registers.length);
+                readWrite.setRegisters(registers);
+                request = readWrite;
+                break;
+            }
+            default:
+                BitVector bitVector = new BitVector(coils.length);
+                for (int i = 0; i < coils.length; i++) {
+                    bitVector.setBit(i, coils[i]);
+                }
+                request = new WriteMultipleCoilsRequest(address, bitVector);
+                break;
+        }
+        request.setUnitID(unitId);
+        return request;
+    }
+
+    static int parseValueAsInt(String value, String dataType) {
+        switch (dataType) {
+            case "Hexadecimal":
+                return Integer.parseInt(value.replace("0x", ""), 16);
+            case "Integer":
+                return Integer.parseInt(value);
+            case "Float":
+                return Float.floatToIntBits(Float.parseFloat(value));
+            case "String":
+                return Integer.parseInt(value); // Assuming string represents an integer
+            case "Boolean":
+                return Boolean.parseBoolean(value) ? 1 : 0;
+            default:
+                throw new IllegalArgumentException("Unsupported data type: " + dataType);
+        }
+    }
+
+    static boolean[] parseBooleanArray(String value) {
+        String[] parts = value.split(",");
+        boolean[] result = new boolean[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            result[i] = Boolean.parseBoolean(parts[i].trim());
+        }
+        return result;
+    }
+
+    static int[] parseIntArray(String value, String dataType) {
+        String[] parts = value.split(",");
+        int[] result = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            result[i] = parseValueAsInt(parts[i].trim(), dataType);
+        }
+        return result;
+    }
+
+    /**
+     * Encodes a comma-separated list of values into registers; values wider than 16 bits use the given word order.
+     */
+    static Register[] parseMultipleRegisters(String value, String dataType, ModbusWordOrder wordOrder) {
+        switch (dataType) {
+            case "String":
+                return convertStringToRegisters(value);
+            case "Float":
+                return toRegisters(ModbusRegisterCodec.encodeFloat32(parseFloatArray(value), wordOrder));
+            case "Float64":
+                return toRegisters(ModbusRegisterCodec.encodeFloat64(parseDoubleArray(value), wordOrder));
+            case "Int32":
+                return toRegisters(ModbusRegisterCodec.encodeInt32(parseIntArray(value, "Integer"), wordOrder));
+            case "UInt32":
+                return toRegisters(ModbusRegisterCodec.encodeInt32(parseUnsignedIntArray(value), wordOrder));
+            case "Int64":
+                return toRegisters(ModbusRegisterCodec.encodeInt64(parseLongArray(value), wordOrder));
+            default:
+                return toRegisters(parseIntArray(value, dataType));
+        }
+    }
+
+    private static float[] parseFloatArray(String value) {
+        String[] parts = value.split(",");
+        float[] result = new float[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            result[i] = Float.parseFloat(parts[i].trim());
+        }
+        return result;
+    }
+
+    private static double[] parseDoubleArray(String value) {
+        String[] parts = value.split(",");
+        double[] result = new double[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            result[i] = Double.parseDouble(parts[i].trim());
+        }
+        return result;
+    }
+
+    private static long[] parseLongArray(String value) {
+        String[] parts = value.split(",");
+        long[] result = new long[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            result[i] = Long.parseLong(parts[i].trim());
+        }
+        return result;
+    }
+
+    private static int[] parseUnsignedIntArray(String value) {
+        String[] parts = value.split(",");
+        int[] result = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            result[i] = Integer.parseUnsignedInt(parts[i].trim());
+        }
+        return result;
+    }
+
+    static Register[] toRegisters(int[] values) {
+        Register[] registers = new Register[values.length];
+        for (int i = 0; i < values.length; i++) {
+            registers[i] = new SimpleRegister(values[i]);
+        }
+        return registers;
+    }
+
+    private static Register[] convertStringToRegisters(String value) {
+        char[] chars = value.toCharArray();
+        Register[] registers = new Register[(chars.length + 1) / 2];
+        for (int i = 0; i < chars.length; i += 2) {
+            int high = (i < chars.length) ? chars[i] : 0;
+            int low = (i + 1 < chars.length) ? chars[i + 1] : 0;
+            registers[i / 2] = new SimpleRegister((high & 0xFF) | (low << 8));
+        }
+        return registers;
+    }
+}
@@ -27,28 +27,36 @@ package com.example.jmeter.modbus;
 import org.apache.jmeter.samplers.AbstractSampler;
 import org.apache.jmeter.samplers.Entry;
 import org.apache.jmeter.samplers.SampleResult;
-import org.apache.jmeter.threads.JMeterContext;
+import org.apache.jmeter.testelement.TestStateListener;
+import org.apache.jmeter.testelement.ThreadListener;
 import org.apache.jmeter.threads.JMeterContextService;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import com.ghgande.j2mod.modbus.io.ModbusTCPTransaction;
-import com.ghgande.j2mod.modbus.msg.WriteMultipleRegistersRequest;
-import com.ghgande.j2mod.modbus.msg.WriteSingleRegisterRequest;
-import com.ghgande.j2mod.modbus.msg.WriteCoilRequest;
-import com.ghgande.j2mod.modbus.msg.WriteMultipleCoilsRequest;
+import com.ghgande.j2mod.modbus.ModbusSlaveException;
+import com.ghgande.j2mod.modbus.msg.ModbusResponse;
 import com.ghgande.j2mod.modbus.net.TCPMasterConnection;
-import com.ghgande.j2mod.modbus.procimg.Register;
-import com.ghgande.j2mod.modbus.procimg.SimpleRegister;
-import com.ghgande.j2mod.modbus.util.BitVector;
 
-import java.net.InetAddress;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
 
-public class ModbusWriteSampler extends AbstractSampler {
+public class ModbusWriteSampler extends AbstractSampler implements TestStateListener, ThreadListener {
     private static final Logger log = LogManager.getLogger(ModbusWriteSampler.class);
 
     public static final String USE_EXISTING_CONNECTION = "ModbusWriteSampler.useExistingConnection";
+    public static final String USE_POOLED_CONNECTION = "ModbusWriteSampler.usePooledConnection";
+    public static final String POOL_MIN_SIZE = "ModbusWriteSampler.poolMinSize";
+    public static final String POOL_MAX_SIZE = "ModbusWriteSampler.poolMaxSize";
+    public static final String CLIENT_MODE = "ModbusWriteSampler.clientMode";
+    public static final String TRANSPORT = "ModbusWriteSampler.transport";
+    public static final String RETRANSMIT_TIMEOUT = "ModbusWriteSampler.retransmitTimeout";
+    public static final String PIPELINE_DEPTH = "ModbusWriteSampler.pipelineDepth";
+    public static final String PRE_CONNECT = "ModbusWriteSampler.preConnect";
+    public static final String WARM_UP_TRANSACTIONS = "ModbusWriteSampler.warmUpTransactions";
+
+    public static final String CLIENT_MODE_BLOCKING = "Blocking";
+    public static final String CLIENT_MODE_PIPELINED = "Pipelined";
+    public static final String CLIENT_MODE_NIO = "NIO";
     public static final String IP_ADDRESS = "ModbusWriteSampler.ipAddress";
     public static final String PORT = "ModbusWriteSampler.port";
     public static final String ADDRESS = "ModbusWriteSampler.address";
@@ -58,10 +66,26 @@ public class ModbusWriteSampler extends AbstractSampler {
     public static final String DATA_TYPE = "ModbusWriteSampler.dataType";
     public static final String KEEP_ALIVE = "ModbusWriteSampler.keepAlive";
     public static final String RETRY_COUNT = "ModbusWriteSampler.retryCount";
+    public static final String RETRY_POLICY = "ModbusWriteSampler.retryPolicy";
+    public static final String RETRY_DELAY = "ModbusWriteSampler.retryDelay";
+    public static final String RETRY_MAX_DELAY = "ModbusWriteSampler.retryMaxDelay";
     public static final String TIMEOUT = "ModbusWriteSampler.timeout";
     public static final String RESET_OLD_VALUES = "ModbusWriteSampler.resetOldValues";
-
-    private Timer connectionCloseTimer;
+    public static final String WORD_ORDER = "ModbusWriteSampler.wordOrder";
+    public static final String READ_ADDRESS = "ModbusWriteSampler.readAddress";
+    public static final String READ_LENGTH = "ModbusWriteSampler.readLength";
+    public static final String UNIT_ID = "ModbusWriteSampler.unitId";
+    public static final String FAN_OUT_PARALLELISM = "ModbusWriteSampler.fanOutParallelism";
+
+    private ModbusTimerWheel.Timeout keepAliveTimeout;
+    private TCPMasterConnection keepAliveConnection;
+    private ModbusPipelinedConnection pipelinedConnection;
+    private ModbusNioSession nioSession;
+    private ModbusUdpChannel udpChannel;
+    private ModbusWritePlan plan;
+    private ModbusWriteCoalescer coalescer;
+    private TCPMasterConnection warmConnection;
+    private final ModbusPipelinedConnection.Stats pipelineStats = new ModbusPipelinedConnection.Stats();
 
     public void setUseExistingConnection(boolean useExistingConnection) {
         setProperty(USE_EXISTING_CONNECTION, useExistingConnection);
@@ -71,6 +95,78 @@ public class ModbusWriteSampler extends AbstractSampler {
         return getPropertyAsBoolean(USE_EXISTING_CONNECTION);
     }
 
+    public void setUsePooledConnection(boolean usePooledConnection) {
+        setProperty(USE_POOLED_CONNECTION, usePooledConnection);
+    }
+
+    public boolean getUsePooledConnection() {
+        return getPropertyAsBoolean(USE_POOLED_CONNECTION);
+    }
+
+    public void setPoolMinSize(String poolMinSize) {
+        setProperty(POOL_MIN_SIZE, poolMinSize);
+    }
+
+    public String getPoolMinSize() {
+        return getPropertyAsString(POOL_MIN_SIZE, "0");
+    }
+
+    public void setPoolMaxSize(String poolMaxSize) {
+        setProperty(POOL_MAX_SIZE, poolMaxSize);
+    }
+
+    public String getPoolMaxSize() {
+        return getPropertyAsString(POOL_MAX_SIZE, "10");
+    }
+
+    public void setClientMode(String clientMode) {
+        setProperty(CLIENT_MODE, clientMode);
+    }
+
+    public String getClientMode() {
+        return getPropertyAsString(CLIENT_MODE, CLIENT_MODE_BLOCKING);
+    }
+
+    public void setTransport(String transport) {
+        setProperty(TRANSPORT, transport);
+    }
+
+    public String getTransport() {
+        return getPropertyAsString(TRANSPORT, ModbusTransports.TRANSPORT_TCP);
+    }
+
+    public void setRetransmitTimeout(String retransmitTimeout) {
+        setProperty(RETRANSMIT_TIMEOUT, retransmitTimeout);
+    }
+
+    public String getRetransmitTimeout() {
+        return getPropertyAsString(RETRANSMIT_TIMEOUT, "0");
+    }
+
+    public void setPipelineDepth(String pipelineDepth) {
+        setProperty(PIPELINE_DEPTH, pipelineDepth);
+    }
+
+    public String getPipelineDepth() {
+        return getPropertyAsString(PIPELINE_DEPTH, "8");
+    }
+
+    public void setPreConnect(boolean preConnect) {
+        setProperty(PRE_CONNECT, preConnect);
+    }
+
+    public boolean getPreConnect() {
+        return getPropertyAsBoolean(PRE_CONNECT);
+    }
+
+    public void setWarmUpTransactions(String warmUpTransactions) {
+        setProperty(WARM_UP_TRANSACTIONS, warmUpTransactions);
+    }
+
+    public String getWarmUpTransactions() {
+        return getPropertyAsString(WARM_UP_TRANSACTIONS, "0");
+    }
+
     public void setIpAddress(String ipAddress) {
         setProperty(IP_ADDRESS, ipAddress);
     }
@@ -111,6 +207,22 @@ public class ModbusWriteSampler extends AbstractSampler {
         return getPropertyAsString(LENGTH);
     }
 
+    public void setReadAddress(String readAddress) {
+        setProperty(READ_ADDRESS, readAddress);
+    }
+
+    public String getReadAddress() {
+        return getPropertyAsString(READ_ADDRESS);
+    }
+
+    public void setReadLength(String readLength) {
+        setProperty(READ_LENGTH, readLength);
+    }
+
+    public String getReadLength() {
+        return getPropertyAsString(READ_LENGTH);
+    }
+
     public void setWriteMethod(String writeMethod) {
         setProperty(WRITE_METHOD, writeMethod);
     }
@@ -127,6 +239,14 @@ public class ModbusWriteSampler extends AbstractSampler {
         return getPropertyAsString(DATA_TYPE);
     }
 
+    public void setWordOrder(String wordOrder) {
+        setProperty(WORD_ORDER, wordOrder);
+    }
+
+    public String getWordOrder() {
+        return getPropertyAsString(WORD_ORDER, ModbusWordOrder.ABCD.name());
+    }
+
     public void setKeepAlive(String keepAlive) {
         setProperty(KEEP_ALIVE, keepAlive);
     }
@@ -143,6 +263,30 @@ public class ModbusWriteSampler extends AbstractSampler {
         return getPropertyAsString(RETRY_COUNT);
     }
 
+    public void setRetryPolicy(String retryPolicy) {
+        setProperty(RETRY_POLICY, retryPolicy);
+    }
+
+    public String getRetryPolicy() {
+        return getPropertyAsString(RETRY_POLICY, ModbusRetryPolicy.EXPONENTIAL);
+    }
+
+    public void setRetryDelay(String retryDelay) {
+        setProperty(RETRY_DELAY, retryDelay);
+    }
+
+    public String getRetryDelay() {
+        return getPropertyAsString(RETRY_DELAY, "100");
+    }
+
+    public void setRetryMaxDelay(String retryMaxDelay) {
+        setProperty(RETRY_MAX_DELAY, retryMaxDelay);
+    }
+
+    public String getRetryMaxDelay() {
+        return getPropertyAsString(RETRY_MAX_DELAY, "2000");
+    }
+
     public void setTimeout(String timeout) {
         setProperty(TIMEOUT, timeout);
     }
@@ -159,93 +303,178 @@ public class ModbusWriteSampler extends AbstractSampler {
         return getPropertyAsBoolean(RESET_OLD_VALUES);
     }
 
+    public void setUnitId(String unitId) {
+        setProperty(UNIT_ID, unitId);
+    }
+
+    public String getUnitId() {
+        return getPropertyAsString(UNIT_ID, "1");
+    }
+
+    public void setFanOutParallelism(String fanOutParallelism) {
+        setProperty(FAN_OUT_PARALLELISM, fanOutParallelism);
+    }
+
+    public String getFanOutParallelism() {
+        return getPropertyAsString(FAN_OUT_PARALLELISM, "8");
+    }
+
     @Override
     public SampleResult sample(Entry e) {
+        if (coalescer != null) {
+            SampleResult coalesced = coalescer.sample(this);
+            if (coalesced != null) {
+                return coalesced;
+            }
+        }
         SampleResult result = new SampleResult();
         result.setSampleLabel(getName());
+        Exception planError = null;
+        long resolveNanos = 0;
+        try {
+            plan = ModbusWritePlan.compile(this, plan);
+            resolveNanos = resolveEndpoint();
+        } catch (IllegalArgumentException ex) {
+            planError = ex;
+        }
         result.sampleStart();
+        ModbusSampleMetrics.addMillis(result, "Resolve-ms", resolveNanos);
 
         TCPMasterConnection connection = null;
-        String writeMethod = getWriteMethod();
-        int retryCount = Integer.parseInt(getRetryCount());
-        int keepAlive = Integer.parseInt(getKeepAlive());
+        ModbusConnectionPool pool = null;
         boolean success = false;
+        pipelinedConnection = null;
+        udpChannel = null;
+        pipelineStats.reset();
+        ModbusUnitFanOut fanOut = null;
 
         try {
-            for (int attempt = 0; attempt <= retryCount && !success; attempt++) {
+            if (planError != null) {
+                throw planError;
+            }
+            ModbusCircuitBreaker breaker = plan.useExistingConnection ? null : ModbusCircuitBreaker.forEndpoint(plan.host, plan.port);
+            long retryDelay = 0;
+            for (int attempt = 0; attempt <= plan.retryCount && !success; attempt++) {
                 try {
-                    if (getUseExistingConnection()) {
-                        connection = (TCPMasterConnection) JMeterContextService.getContext().getVariables().getObject("modbusConnection");
-                        if (connection == null || !connection.isConnected()) {
-                            throw new IllegalStateException("No existing Modbus connection available.");
+                    if (breaker != null) {
+                        breaker.acquire();
+                    }
+                    if (plan.udp) {
+                        udpChannel = ModbusUdpChannel.getChannel(plan.host, plan.port, plan.timeout, plan.retransmitTimeout);
+                    } else if (plan.pipelined) {
+                        pipelinedConnection = ModbusPipelinedConnection.getConnection(plan.host, plan.port, plan.timeout, plan.pipelineDepth);
+                    } else if (plan.nio) {
+                        if (nioSession == null || !nioSession.isConnectedTo(plan.host, plan.port)) {
+                            if (nioSession != null) {
+                                nioSession.close();
+                            }
+                            nioSession = ModbusNioEngine.getInstance().openSession(plan.host, plan.port, plan.timeout);
+                        }
+                    } else if (plan.useExistingConnection) {
+                        Object existing = JMeterContextService.getContext().getVariables().getObject("modbusConnection");
+                        if (existing instanceof ModbusUdpChannel && ((ModbusUdpChannel) existing).isConnected()) {
+                            udpChannel = (ModbusUdpChannel) existing;
+                        } else {
+                            connection = (TCPMasterConnection) existing;
+                            if (connection == null || !connection.isConnected()) {
+                                throw new IllegalStateException("No existing Modbus connection available.");
+                            }
                         }
+                    } else if (plan.pooled) {
+                        pool = ModbusConnectionPool.getPool(plan.host, plan.port, plan.timeout, plan.transport,
+                                plan.poolMinSize, plan.poolMaxSize, Math.max(plan.keepAlive, 0));
+                        connection = pool.borrow(plan.timeout);
+                    } else if (warmConnection != null) {
+                        // Opened during the warm-up phase in threadStarted()
+                        connection = warmConnection;
+                        warmConnection = null;
+                        if (!connection.isConnected()) {
+                            connection.connect();
+                        }
+                        JMeterContextService.getContext().getVariables().putObject("modbusConnection", connection);
                     } else {
-                        InetAddress address = InetAddress.getByName(getIpAddress());
-                        connection = new TCPMasterConnection(address);
-                        connection.setPort(Integer.parseInt(getPort()));
-                        connection.setTimeout(Integer.parseInt(getTimeout()));
+                        connection = ModbusTransports.newConnection(plan.host, plan.port, plan.timeout, plan.transport);
                         connection.connect();
                         JMeterContextService.getContext().getVariables().putObject("modbusConnection", connection);
                     }
+                    ModbusTransports.recordHandshake(result, connection);
 
-                    if (getAddress().isEmpty() || getValue().isEmpty()) {
-                        throw new IllegalArgumentException("Address and Value fields cannot be empty.");
+                    log.debug("Writing function code {} at address {} with value {}", plan.functionCode, plan.address, plan.value);
+                    if (plan.fanOut) {
+                        fanOut = executeFanOut(connection);
+                    } else {
+                        ModbusResponse response = executeUnit(connection, 0, pipelineStats);
+                        if (plan.decoder != null) {
+                            result.setResponseData(plan.decoder.decode(response), StandardCharsets.UTF_8.name());
+                        }
                     }
 
-                    int address = Integer.parseInt(getAddress());
-
-                    if (getResetOldValues()) {
-                        resetValues(connection, writeMethod, address, getDataType(), getLength());
+                    success = true; // If the operation is successful, exit the loop
+                    if (breaker != null) {
+                        breaker.recordSuccess();
                     }
-
-                    switch (writeMethod) {
-                        case "Single Register":
-                            log.info("Writing Single Register with address {} and value {}", address, getValue());
-                            writeSingleRegister(connection, address, parseValueAsInt(getValue(), getDataType()));
-                            break;
-                        case "Multiple Registers":
-                            log.info("Writing Multiple Registers with values {}", getValue());
-                            if (getDataType().equals("Float")) {
-                                writeMultipleRegisters(connection, address, parseFloatArray(getValue()));
-                            } else if (getDataType().equals("String")) {
-                                writeMultipleRegisters(connection, address, convertStringToRegisters(getValue()));
-                            } else {
-                                writeMultipleRegisters(connection, address, parseIntArray(getValue(), getDataType()));
-                            }
-                            break;
-                        case "Single Coil":
-                            log.info("Writing Single Coil with address {} and value {}", address, getValue());
-                            writeSingleCoil(connection, address, Boolean.parseBoolean(getValue()));
-                            break;
-                        case "Multiple Coils":
-                            log.info("Writing Multiple Coils with values {}", getValue());
-                            writeMultipleCoils(connection, address, parseBooleanArray(getValue()));
-                            break;
-                        default:
-                            throw new IllegalArgumentException("Unsupported write method: " + writeMethod);
+                    if (pool != null) {
+                        pool.release(connection);
+                        connection = null;
                     }
-
-                    success = true; // If the operation is successful, exit the loop
                 } catch (Exception ex) {
+                    if (pool != null && connection != null) {
+                        // A Modbus exception response means the socket itself is still healthy
+                        if (ex instanceof ModbusSlaveException) {
+                            pool.release(connection);
+                        } else {
+                            pool.invalidate(connection);
+                        }
+                        connection = null;
+                    }
                     log.info("Attempt {} failed: {}", attempt + 1, ex.getMessage());
-                    if (attempt >= retryCount) {
-                        throw ex; // Rethrow the exception if all retries are exhausted
+                    if (breaker != null && ModbusErrorClassifier.isDeviceFailure(ex)) {
+                        breaker.recordFailure();
+                    } else if (breaker != null && ex instanceof ModbusSlaveException) {
+                        breaker.recordSuccess();
+                    }
+                    if (attempt >= plan.retryCount || !ModbusErrorClassifier.isRetryable(ex)) {
+                        throw ex; // Rethrow if retries are exhausted or the error would repeat on every attempt
+                    }
+                    retryDelay = plan.retryPolicy.nextDelay(attempt + 1, retryDelay);
+                    if (retryDelay > 0) {
+                        try {
+                            TimeUnit.MILLISECONDS.sleep(retryDelay);
+                        } catch (InterruptedException interrupted) {
+                            // The test is stopping; report the last failure and keep the interrupt for JMeter
+                            Thread.currentThread().interrupt();
+                            throw ex;
+                        }
                     }
                 }
             }
 
-            result.setResponseMessage("Write operation successful.");
-            result.setSuccessful(true);
+            if (plan.resetOldValues) {
+                ModbusSampleMetrics.add(result, "Reset-Strategy", plan.resetStrategy);
+            }
+            if (fanOut != null) {
+                reportFanOut(result, fanOut);
+            } else {
+                result.setResponseMessage("Write operation successful.");
+                result.setSuccessful(true);
+            }
         } catch (Exception ex) {
             log.info("Error during Modbus write operation: {}", ex.getMessage());
             result.setResponseMessage("Error: " + ex.getMessage());
             result.setSuccessful(false);
         } finally {
             result.sampleEnd();
-            if (connection != null && !getUseExistingConnection()) {
-                if (keepAlive > 0) {
-                    scheduleConnectionClose(connection, keepAlive);
-                } else if (keepAlive == 0) {
+            if (pipelinedConnection != null) {
+                recordPipelineMetrics(result);
+            }
+            if (udpChannel != null) {
+                recordUdpMetrics(result);
+            }
+            if (connection != null && !plan.useExistingConnection && pool == null) {
+                if (plan.keepAlive > 0) {
+                    scheduleConnectionClose(connection, plan.keepAlive);
+                    ModbusSampleMetrics.add(result, "Pending-Timers", ModbusTimerWheel.getInstance().getPendingTimers());
+                } else if (plan.keepAlive == 0) {
                     log.info("Keeping the connection open indefinitely.");
                 } else {
                     connection.close();
@@ -257,180 +486,232 @@ public class ModbusWriteSampler extends AbstractSampler {
         return result;
     }
 
-    private void scheduleConnectionClose(TCPMasterConnection connection, int keepAlive) {
-        if (connectionCloseTimer != null) {
-            connectionCloseTimer.cancel();
+    /**
+     * Sends the reset frames and the write to the unit at the given index.
+     */
+    private ModbusResponse executeUnit(TCPMasterConnection connection, int unit, ModbusPipelinedConnection.Stats stats) throws Exception {
+        for (ModbusFrameTemplate resetRequest : plan.unitResetRequests[unit]) {
+            executeRequest(connection, resetRequest, stats);
         }
-        connectionCloseTimer = new Timer();
-        connectionCloseTimer.schedule(new TimerTask() {
-            @Override
-            public void run() {
-                closeConnection(connection);
-            }
-        }, keepAlive);
+        return executeRequest(connection, plan.unitRequests[unit], stats);
     }
 
-    private void closeConnection(TCPMasterConnection connection) {
-        try {
-            if (connection != null && connection.isConnected()) {
-                connection.close();
-                JMeterContext context = JMeterContextService.getContext();
-                if (context != null && context.getVariables() != null) {
-                    context.getVariables().remove("modbusConnection");
+    /**
+     * Writes to every unit of the fan-out, recording one sub-result per unit.
+     */
+    private ModbusUnitFanOut executeFanOut(TCPMasterConnection connection) throws Exception {
+        return ModbusUnitFanOut.run(getName(), plan.unitIds, plan.fanOutParallelism, isMultiplexed(), pipelineStats,
+                (unit, stats) -> executeUnit(connection, unit, stats));
+    }
+
+    private void reportFanOut(SampleResult result, ModbusUnitFanOut fanOut) {
+        for (int unit = 0; unit < fanOut.size(); unit++) {
+            ModbusSampleResult subResult = fanOut.getSubResult(unit);
+            if (subResult.isSuccessful()) {
+                subResult.setResponseMessage("Write operation successful.");
+                if (plan.decoder != null) {
+                    subResult.setResponseData(plan.decoder.decode(fanOut.getResponse(unit)), StandardCharsets.UTF_8.name());
                 }
-                log.info("Connection closed after keep-alive duration.");
             }
-        } catch (Exception ex) {
-            log.error("Error closing connection", ex);
+            result.addRawSubResult(subResult);
+        }
+        int failedUnits = fanOut.getFailedUnits();
+        ModbusSampleMetrics.add(result, "Fan-Out-Units", fanOut.size());
+        ModbusSampleMetrics.add(result, "Fan-Out-Failed-Units", failedUnits);
+        if (failedUnits > 0) {
+            result.setResponseMessage("Write failed for " + failedUnits + " of " + fanOut.size() + " units.");
+            result.setSuccessful(false);
+        } else {
+            result.setResponseMessage("Write operation successful.");
+            result.setSuccessful(true);
         }
     }
 
-    private void resetValues(TCPMasterConnection connection, String writeMethod, int address, String dataType, String length) throws Exception {
-        switch (writeMethod) {
-            case "Single Register":
-                writeSingleRegister(connection, address, 0);
-                break;
-            case "Multiple Registers":
-                int[] resetValues = new int[Integer.parseInt(length)];
-                for (int i = 0; i < resetValues.length; i++) {
-                    resetValues[i] = 0;
-                }
-                writeMultipleRegisters(connection, address, resetValues);
-                break;
-            case "Single Coil":
-                writeSingleCoil(connection, address, false);
-                break;
-            case "Multiple Coils":
-                boolean[] resetCoils = new boolean[Integer.parseInt(length)];
-                for (int i = 0; i < resetCoils.length; i++) {
-                    resetCoils[i] = false;
-                }
-                writeMultipleCoils(connection, address, resetCoils);
-                break;
-            default:
-                throw new IllegalArgumentException("Unsupported write method for reset: " + writeMethod);
-        }
+    /**
+     * Compiles this thread's plan ahead of the first sample, e.g. so a coalescing controller can inspect it.
+     */
+    ModbusWritePlan compilePlan() {
+        plan = ModbusWritePlan.compile(this, plan);
+        return plan;
     }
 
-    private void writeSingleRegister(TCPMasterConnection connection, int address, int value) throws Exception {
-        WriteSingleRegisterRequest request = new WriteSingleRegisterRequest(address, new SimpleRegister(value));
-        request.setUnitID(1);
-        ModbusTCPTransaction transaction = new ModbusTCPTransaction(connection);
-        transaction.setRequest(request);
-        transaction.execute();
+    /**
+     * Replaces the plan compiled from this sampler's properties; used for the batched writes of a coalescing controller.
+     */
+    void setPlan(ModbusWritePlan plan) {
+        this.plan = plan;
     }
 
-    private void writeMultipleRegisters(TCPMasterConnection connection, int address, int[] values) throws Exception {
-        Register[] registers = new Register[values.length];
-        for (int i = 0; i < values.length; i++) {
-            registers[i] = new SimpleRegister(values[i]);
-        }
-        WriteMultipleRegistersRequest request = new WriteMultipleRegistersRequest(address, registers);
-        request.setUnitID(1);
-        ModbusTCPTransaction transaction = new ModbusTCPTransaction(connection);
-        transaction.setRequest(request);
-        transaction.execute();
-    }
-
-    private void writeMultipleRegisters(TCPMasterConnection connection, int address, float[] values) throws Exception {
-        Register[] registers = convertToRegisters(values);
-        WriteMultipleRegistersRequest request = new WriteMultipleRegistersRequest(address, registers);
-        request.setUnitID(1);
-        ModbusTCPTransaction transaction = new ModbusTCPTransaction(connection);
-        transaction.setRequest(request);
-        transaction.execute();
-    }
-
-    private void writeMultipleRegisters(TCPMasterConnection connection, int address, Register[] registers) throws Exception {
-        WriteMultipleRegistersRequest request = new WriteMultipleRegistersRequest(address, registers);
-        request.setUnitID(1);
-        ModbusTCPTransaction transaction = new ModbusTCPTransaction(connection);
-        transaction.setRequest(request);
-        transaction.execute();
-    }
-
-    private void writeSingleCoil(TCPMasterConnection connection, int address, boolean value) throws Exception {
-        WriteCoilRequest request = new WriteCoilRequest(address, value);
-        request.setUnitID(1);
-        ModbusTCPTransaction transaction = new ModbusTCPTransaction(connection);
-        transaction.setRequest(request);
-        transaction.execute();
-    }
-
-    private void writeMultipleCoils(TCPMasterConnection connection, int address, boolean[] values) throws Exception {
-        BitVector bitVector = new BitVector(values.length);
-        for (int i = 0; i < values.length; i++) {
-            bitVector.setBit(i, values[i]);
+    void setCoalescer(ModbusWriteCoalescer coalescer) {
+        this.coalescer = coalescer;
+    }
+
+    @Override
+    public void testStarted() {
+        // Pools are created lazily by the first sampler that borrows from them
+    }
+
+    @Override
+    public void testStarted(String host) {
+        testStarted();
+    }
+
+    @Override
+    public void testEnded() {
+        ModbusConnectionPool.closeAll();
+        ModbusPipelinedConnection.closeAll();
+        ModbusNioEngine.closeAllSessions();
+        ModbusUdpChannel.closeAll();
+        ModbusTlsTransport.resetContext();
+        ModbusCircuitBreaker.resetAll();
+    }
+
+    @Override
+    public void testEnded(String host) {
+        testEnded();
+    }
+
+    /**
+     * Opens this thread's connection before its first sample and runs the configured warm-up transactions.
+     * Nothing done here is recorded as a sample result.
+     */
+    @Override
+    public void threadStarted() {
+        if (!getPreConnect()) {
+            return;
         }
-        WriteMultipleCoilsRequest request = new WriteMultipleCoilsRequest(address, bitVector);
-        request.setUnitID(1);
-        ModbusTCPTransaction transaction = new ModbusTCPTransaction(connection);
-        transaction.setRequest(request);
-        transaction.execute();
-    }
-
-    int parseValueAsInt(String value, String dataType) {
-        switch (dataType) {
-            case "Hexadecimal":
-                return Integer.parseInt(value.replace("0x", ""), 16);
-            case "Integer":
-                return Integer.parseInt(value);
-            case "Float":
-                return Float.floatToIntBits(Float.parseFloat(value));
-            case "String":
-                return Integer.parseInt(value); // Assuming string represents an integer
-            case "Boolean":
-                return Boolean.parseBoolean(value) ? 1 : 0;
-            default:
-                throw new IllegalArgumentException("Unsupported data type: " + dataType);
+        TCPMasterConnection connection = null;
+        ModbusConnectionPool pool = null;
+        try {
+            plan = ModbusWritePlan.compile(this, plan);
+            ModbusEndpointCache.resolve(plan.host);
+            ModbusWarmUp.awaitConnectSlot();
+            if (plan.udp) {
+                udpChannel = ModbusUdpChannel.getChannel(plan.host, plan.port, plan.timeout, plan.retransmitTimeout);
+            } else if (plan.pipelined) {
+                pipelinedConnection = ModbusPipelinedConnection.getConnection(plan.host, plan.port, plan.timeout, plan.pipelineDepth);
+            } else if (plan.nio) {
+                nioSession = ModbusNioEngine.getInstance().openSession(plan.host, plan.port, plan.timeout);
+            } else if (plan.useExistingConnection) {
+                Object existing = JMeterContextService.getContext().getVariables().getObject("modbusConnection");
+                if (existing instanceof ModbusUdpChannel) {
+                    udpChannel = (ModbusUdpChannel) existing;
+                } else {
+                    connection = (TCPMasterConnection) existing;
+                    if (connection == null || !connection.isConnected()) {
+                        log.debug("No existing Modbus connection to warm up for {}", getName());
+                        return;
+                    }
+                }
+            } else if (plan.pooled) {
+                pool = ModbusConnectionPool.getPool(plan.host, plan.port, plan.timeout, plan.transport,
+                        plan.poolMinSize, plan.poolMaxSize, Math.max(plan.keepAlive, 0));
+                connection = pool.borrow(plan.timeout);
+            } else {
+                connection = ModbusTransports.newConnection(plan.host, plan.port, plan.timeout, plan.transport);
+                connection.connect();
+                warmConnection = connection;
+            }
+
+            for (int i = 0; i < plan.warmUpTransactions; i++) {
+                executeRequest(connection, plan.warmUpRequest, pipelineStats);
+            }
+            log.debug("Warm-up for {} finished after {} transactions", getName(), plan.warmUpTransactions);
+        } catch (Exception ex) {
+            if (ex instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            log.warn("Warm-up for {} failed: {}", getName(), ex.getMessage());
+            if (pool != null && connection != null && !(ex instanceof ModbusSlaveException)) {
+                pool.invalidate(connection);
+                connection = null;
+            }
+        } finally {
+            if (pool != null && connection != null) {
+                pool.release(connection);
+            }
+            pipelinedConnection = null;
+            udpChannel = null;
         }
     }
 
-    private boolean[] parseBooleanArray(String value) {
-        String[] parts = value.split(",");
-        boolean[] result = new boolean[parts.length];
-        for (int i = 0; i < parts.length; i++) {
-            result[i] = Boolean.parseBoolean(parts[i].trim());
+    @Override
+    public void threadFinished() {
+        if (warmConnection != null) {
+            closeConnection(warmConnection);
+            warmConnection = null;
         }
-        return result;
     }
 
-    private int[] parseIntArray(String value, String dataType) {
-        String[] parts = value.split(",");
-        int[] result = new int[parts.length];
-        for (int i = 0; i < parts.length; i++) {
-            result[i] = parseValueAsInt(parts[i].trim(), dataType);
+    /**
+     * Warms the shared endpoint cache before the sample starts so name lookups are not part of the elapsed time.
+     * A failed lookup is reported by the connection attempt itself.
+     */
+    private long resolveEndpoint() {
+        if (plan.useExistingConnection) {
+            return 0;
         }
-        return result;
+        long start = System.nanoTime();
+        try {
+            ModbusEndpointCache.resolve(plan.host);
+        } catch (UnknownHostException ex) {
+            log.debug("Could not resolve {}: {}", plan.host, ex.getMessage());
+        }
+        return System.nanoTime() - start;
     }
 
-    private float[] parseFloatArray(String value) {
-        String[] parts = value.split(",");
-        float[] result = new float[parts.length];
-        for (int i = 0; i < parts.length; i++) {
-            result[i] = Float.parseFloat(parts[i].trim());
+    /**
+     * Returns true if this sample's requests are matched to responses by transaction ID, so they can be in flight together.
+     */
+    private boolean isMultiplexed() {
+        return udpChannel != null || pipelinedConnection != null || (nioSession != null && plan.nio);
+    }
+
+    private ModbusResponse executeRequest(TCPMasterConnection connection, ModbusFrameTemplate request,
+                                          ModbusPipelinedConnection.Stats stats) throws Exception {
+        if (udpChannel != null) {
+            return udpChannel.execute(request, stats);
         }
-        return result;
+        if (pipelinedConnection != null) {
+            return pipelinedConnection.execute(request, plan.timeout, stats);
+        }
+        if (nioSession != null && plan.nio) {
+            return nioSession.execute(request, plan.timeout);
+        }
+        return ModbusTransactions.execute(connection, request.getRequest());
     }
 
-    private Register[] convertToRegisters(float[] values) {
-        Register[] registers = new Register[values.length * 2];
-        for (int i = 0; i < values.length; i++) {
-            int intBits = Float.floatToIntBits(values[i]);
-            registers[i * 2] = new SimpleRegister((intBits >> 16) & 0xFFFF);
-            registers[i * 2 + 1] = new SimpleRegister(intBits & 0xFFFF);
+    private void recordPipelineMetrics(SampleResult result) {
+        ModbusSampleMetrics.add(result, "Pipeline-In-Flight", pipelineStats.getMaxInFlight());
+        ModbusSampleMetrics.addMillis(result, "Pipeline-Slot-Wait-ms", pipelineStats.getSlotWaitNanos());
+        ModbusSampleMetrics.addMillis(result, "Pipeline-Match-ms", pipelineStats.getMatchNanos());
+        ModbusSampleMetrics.add(result, "Pipeline-Lost-Responses", pipelineStats.getLostTransactions());
+        ModbusSampleMetrics.add(result, "Pipeline-Unmatched-Responses", pipelinedConnection.takeUnmatchedResponses());
+    }
+
+    private void recordUdpMetrics(SampleResult result) {
+        ModbusSampleMetrics.add(result, "UDP-Retransmits", pipelineStats.getRetransmits());
+        ModbusSampleMetrics.add(result, "UDP-Lost", pipelineStats.getLostTransactions());
+        ModbusSampleMetrics.add(result, "UDP-Duplicates", udpChannel.takeDuplicateResponses());
+    }
+
+    private void scheduleConnectionClose(TCPMasterConnection connection, int keepAlive) {
+        if (keepAliveTimeout != null && keepAliveTimeout.cancel() && keepAliveConnection != connection) {
+            // The previous connection has been replaced by a new one and would otherwise never be closed
+            closeConnection(keepAliveConnection);
         }
-        return registers;
+        keepAliveConnection = connection;
+        keepAliveTimeout = ModbusTimerWheel.getInstance().schedule(() -> closeConnection(connection), keepAlive, TimeUnit.MILLISECONDS);
     }
 
-    private Register[] convertStringToRegisters(String value) {
-        char[] chars = value.toCharArray();
-        Register[] registers = new Register[(chars.length + 1) / 2];
-        for (int i = 0; i < chars.length; i += 2) {
-            int high = (i < chars.length) ? chars[i] : 0;
-            int low = (i + 1 < chars.length) ? chars[i + 1] : 0;
-            registers[i / 2] = new SimpleRegister((high & 0xFF) | (low << 8));
+    private void closeConnection(TCPMasterConnection connection) {
+        try {
+            if (connection != null && connection.isConnected()) {
+                connection.close();
+                log.info("Connection closed after keep-alive duration.");
+            }
+        } catch (Exception ex) {
+            log.error("Error closing connection", ex);
         }
-        return registers;
     }
 }
@@ -42,15 +42,32 @@ public class ModbusWriteSamplerGui extends AbstractSamplerGui {
     private static final Logger logger = LogManager.getLogger(ModbusWriteSamplerGui.class);
 
     private JCheckBox useExistingConnectionCheckbox;
+    private JCheckBox usePooledConnectionCheckbox;
+    private JTextField poolMinSizeField;
+    private JTextField poolMaxSizeField;
+    private JComboBox<String> clientModeDropdown;
+    private JComboBox<String> transportDropdown;
+    private JTextField retransmitTimeoutField;
+    private JTextField pipelineDepthField;
+    private JCheckBox preConnectCheckbox;
+    private JTextField warmUpTransactionsField;
     private JTextField ipAddressField;
     private JTextField portField;
     private JTextField addressField;
     private JTextField valueField;
     private JTextField lengthField;
+    private JTextField readAddressField;
+    private JTextField readLengthField;
+    private JTextField unitIdField;
+    private JTextField fanOutParallelismField;
     private JComboBox<String> writeMethodDropdown;
     private JComboBox<String> dataTypeDropdown;
+    private JComboBox<String> wordOrderDropdown;
     private JTextField keepAliveField;
     private JTextField retryCountField;
+    private JComboBox<String> retryPolicyDropdown;
+    private JTextField retryDelayField;
+    private JTextField retryMaxDelayField;
     private JTextField timeoutField;
     private JCheckBox resetOldValuesCheckbox;
 
@@ -72,19 +89,41 @@ public class ModbusWriteSamplerGui extends AbstractSamplerGui {
 
         useExistingConnectionCheckbox = new JCheckBox("Use Existing Connection");
         useExistingConnectionCheckbox.addActionListener(e -> toggleConnectionFields());
+        usePooledConnectionCheckbox = new JCheckBox("Use Pooled Connection");
+        usePooledConnectionCheckbox.addActionListener(e -> toggleConnectionFields());
+        poolMinSizeField = new JTextField(5);
+        poolMaxSizeField = new JTextField(5);
+        clientModeDropdown = new JComboBox<>(new String[]{ModbusWriteSampler.CLIENT_MODE_BLOCKING, ModbusWriteSampler.CLIENT_MODE_PIPELINED, ModbusWriteSampler.CLIENT_MODE_NIO});
+        clientModeDropdown.addActionListener(e -> toggleConnectionFields());
+        transportDropdown = new JComboBox<>(new String[]{ModbusTransports.TRANSPORT_TCP, ModbusTransports.TRANSPORT_RTU_OVER_TCP, ModbusTransports.TRANSPORT_UDP, ModbusTransports.TRANSPORT_TLS});
+        transportDropdown.addActionListener(e -> toggleConnectionFields());
+        retransmitTimeoutField = new JTextField(5);
+        pipelineDepthField = new JTextField(5);
+        preConnectCheckbox = new JCheckBox("Pre-Connect on Thread Start");
+        preConnectCheckbox.addActionListener(e -> toggleConnectionFields());
+        warmUpTransactionsField = new JTextField(5);
 
         ipAddressField = new JTextField(15);
         portField = new JTextField(5);
         addressField = new JTextField(5);
         valueField = new JTextField(15);
         lengthField = new JTextField(5);
-
-        writeMethodDropdown = new JComboBox<>(new String[]{"Single Register", "Multiple Registers", "Single Coil", "Multiple Coils"});
-        dataTypeDropdown = new JComboBox<>(new String[]{"Integer", "Hexadecimal", "Float", "String", "Boolean"});
+        readAddressField = new JTextField(5);
+        readLengthField = new JTextField(5);
+        unitIdField = new JTextField(10);
+        fanOutParallelismField = new JTextField(5);
+
+        writeMethodDropdown = new JComboBox<>(new String[]{"Single Register", "Multiple Registers", "Single Coil", "Multiple Coils", "Read/Write Multiple Registers", "Mask Write Register"});
+        writeMethodDropdown.addActionListener(e -> toggleReadFields());
+        dataTypeDropdown = new JComboBox<>(new String[]{"Integer", "Hexadecimal", "Float", "Int32", "UInt32", "Int64", "Float64", "String", "Boolean"});
+        wordOrderDropdown = new JComboBox<>(ModbusWordOrder.names());
         dataTypeDropdown.addActionListener(e -> updateWriteMethodDropdown());
 
         keepAliveField = new JTextField(5);
         retryCountField = new JTextField(5);
+        retryPolicyDropdown = new JComboBox<>(new String[]{ModbusRetryPolicy.EXPONENTIAL, ModbusRetryPolicy.DECORRELATED_JITTER, ModbusRetryPolicy.FIXED});
+        retryDelayField = new JTextField(5);
+        retryMaxDelayField = new JTextField(5);
         timeoutField = new JTextField(5);
         resetOldValuesCheckbox = new JCheckBox("Reset Old Values");
         resetOldValuesCheckbox.addActionListener(e -> toggleLengthField());
@@ -167,6 +206,133 @@ public class ModbusWriteSamplerGui extends AbstractSamplerGui {
         timeoutField.setPreferredSize(fieldDimension);
         connectionPanel.add(timeoutField, gbc);
 
+        gbc.gridx = 0;
+        gbc.gridy = 6;
+        gbc.anchor = GridBagConstraints.LINE_END;
+        JLabel usePooledConnectionLabel = new JLabel("Use Pooled Connection:");
+        usePooledConnectionLabel.setPreferredSize(labelDimension);
+        connectionPanel.add(usePooledConnectionLabel, gbc);
+        gbc.gridx = 1;
+        gbc.anchor = GridBagConstraints.LINE_START;
+        connectionPanel.add(usePooledConnectionCheckbox, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 7;
+        gbc.anchor = GridBagConstraints.LINE_END;
+        JLabel poolMinSizeLabel = new JLabel("Pool Min Size:");
+        poolMinSizeLabel.setPreferredSize(labelDimension);
+        connectionPanel.add(poolMinSizeLabel, gbc);
+        gbc.gridx = 1;
+        gbc.anchor = GridBagConstraints.LINE_START;
+        poolMinSizeField.setPreferredSize(fieldDimension);
+        connectionPanel.add(poolMinSizeField, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 8;
+        gbc.anchor = GridBagConstraints.LINE_END;
+        JLabel poolMaxSizeLabel = new JLabel("Pool Max Size:");
+        poolMaxSizeLabel.setPreferredSize(labelDimension);
+        connectionPanel.add(poolMaxSizeLabel, gbc);
+        gbc.gridx = 1;
+        gbc.anchor = GridBagConstraints.LINE_START;
+        poolMaxSizeField.setPreferredSize(fieldDimension);
+        connectionPanel.add(poolMaxSizeField, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 9;
+        gbc.anchor = GridBagConstraints.LINE_END;
+        JLabel clientModeLabel = new JLabel("Client Mode:");
+        clientModeLabel.setPreferredSize(labelDimension);
+        connectionPanel.add(clientModeLabel, gbc);
+        gbc.gridx = 1;
+        gbc.anchor = GridBagConstraints.LINE_START;
+        connectionPanel.add(clientModeDropdown, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 10;
+        gbc.anchor = GridBagConstraints.LINE_END;
+        JLabel pipelineDepthLabel = new JLabel("Pipeline Depth:");
+        pipelineDepthLabel.setPreferredSize(labelDimension);
+        connectionPanel.add(pipelineDepthLabel, gbc);
+        gbc.gridx = 1;
+        gbc.anchor = GridBagConstraints.LINE_START;
+        pipelineDepthField.setPreferredSize(fieldDimension);
+        connectionPanel.add(pipelineDepthField, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 11;
+        gbc.anchor = GridBagConstraints.LINE_END;
+        JLabel preConnectLabel = new JLabel("Pre-Connect:");
+        preConnectLabel.setPreferredSize(labelDimension);
+        connectionPanel.add(preConnectLabel, gbc);
+        gbc.gridx = 1;
+        gbc.anchor = GridBagConstraints.LINE_START;
+        connectionPanel.add(preConnectCheckbox, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 12;
+        gbc.anchor = GridBagConstraints.LINE_END;
+        JLabel warmUpTransactionsLabel = new JLabel("Warm-Up Transactions:");
+        warmUpTransactionsLabel.setPreferredSize(labelDimension);
+        connectionPanel.add(warmUpTransactionsLabel, gbc);
+        gbc.gridx = 1;
+        gbc.anchor = GridBagConstraints.LINE_START;
+        warmUpTransactionsField.setPreferredSize(fieldDimension);
+        connectionPanel.add(warmUpTransactionsField, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 13;
+        gbc.anchor = GridBagConstraints.LINE_END;
+        JLabel retryPolicyLabel = new JLabel("Retry Policy:");
+        retryPolicyLabel.setPreferredSize(labelDimension);
+        connectionPanel.add(retryPolicyLabel, gbc);
+        gbc.gridx = 1;
+        gbc.anchor = GridBagConstraints.LINE_START;
+        connectionPanel.add(retryPolicyDropdown, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 14;
+        gbc.anchor = GridBagConstraints.LINE_END;
+        JLabel retryDelayLabel = new JLabel("Retry Delay (ms):");
+        retryDelayLabel.setPreferredSize(labelDimension);
+        connectionPanel.add(retryDelayLabel, gbc);
+        gbc.gridx = 1;
+        gbc.anchor = GridBagConstraints.LINE_START;
+        retryDelayField.setPreferredSize(fieldDimension);
+        connectionPanel.add(retryDelayField, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 15;
+        gbc.anchor = GridBagConstraints.LINE_END;
+        JLabel retryMaxDelayLabel = new JLabel("Max Retry Delay (ms):");
+        retryMaxDelayLabel.setPreferredSize(labelDimension);
+        connectionPanel.add(retryMaxDelayLabel, gbc);
+        gbc.gridx = 1;
+        gbc.anchor = GridBagConstraints.LINE_START;
+        retryMaxDelayField.setPreferredSize(fieldDimension);
+        connectionPanel.add(retryMaxDelayField, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 16;
+        gbc.anchor = GridBagConstraints.LINE_END;
+        JLabel transportLabel = new JLabel("Transport:");
+        transportLabel.setPreferredSize(labelDimension);
+        connectionPanel.add(transportLabel, gbc);
+        gbc.gridx = 1;
+        gbc.anchor = GridBagConstraints.LINE_START;
+        connectionPanel.add(transportDropdown, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 17;
+        gbc.anchor = GridBagConstraints.LINE_END;
+        JLabel retransmitTimeoutLabel = new JLabel("Retransmit Timeout (ms):");
+        retransmitTimeoutLabel.setPreferredSize(labelDimension);
+        connectionPanel.add(retransmitTimeoutLabel, gbc);
+        gbc.gridx = 1;
+        gbc.anchor = GridBagConstraints.LINE_START;
+        retransmitTimeoutField.setPreferredSize(fieldDimension);
+        connectionPanel.add(retransmitTimeoutField, gbc);
+
         // Modbus Write Settings
         gbc.gridx = 0;
         gbc.gridy = 0;
@@ -231,6 +397,61 @@ public class ModbusWriteSamplerGui extends AbstractSamplerGui {
         lengthField.setPreferredSize(fieldDimension);
         settingsPanel.add(lengthField, gbc);
 
+        gbc.gridx = 0;
+        gbc.gridy = 6;
+        gbc.anchor = GridBagConstraints.LINE_END;
+        JLabel wordOrderLabel = new JLabel("Word Order:");
+        wordOrderLabel.setPreferredSize(labelDimension);
+        settingsPanel.add(wordOrderLabel, gbc);
+        gbc.gridx = 1;
+        gbc.anchor = GridBagConstraints.LINE_START;
+        wordOrderDropdown.setPreferredSize(fieldDimension);
+        settingsPanel.add(wordOrderDropdown, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 7;
+        gbc.anchor = GridBagConstraints.LINE_END;
+        JLabel readAddressLabel = new JLabel("Read Address:");
+        readAddressLabel.setPreferredSize(labelDimension);
+        settingsPanel.add(readAddressLabel, gbc);
+        gbc.gridx = 1;
+        gbc.anchor = GridBagConstraints.LINE_START;
+        readAddressField.setPreferredSize(fieldDimension);
+        settingsPanel.add(readAddressField, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 8;
+        gbc.anchor = GridBagConstraints.LINE_END;
+        JLabel readLengthLabel = new JLabel("Read Length:");
+        readLengthLabel.setPreferredSize(labelDimension);
+        settingsPanel.add(readLengthLabel, gbc);
+        gbc.gridx = 1;
+        gbc.anchor = GridBagConstraints.LINE_START;
+        readLengthField.setPreferredSize(fieldDimension);
+        settingsPanel.add(readLengthField, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 9;
+        gbc.anchor = GridBagConstraints.LINE_END;
+        JLabel unitIdLabel = new JLabel("Unit ID (e.g. 1 or 1-8,17):");
+        unitIdLabel.setPreferredSize(labelDimension);
+        settingsPanel.add(unitIdLabel, gbc);
+        gbc.gridx = 1;
+        gbc.anchor = GridBagConstraints.LINE_START;
+        unitIdField.setPreferredSize(fieldDimension);
+        settingsPanel.add(unitIdField, gbc);
+
+        gbc.gridx = 0;
+        gbc.gridy = 10;
+        gbc.anchor = GridBagConstraints.LINE_END;
+        JLabel fanOutParallelismLabel = new JLabel("Fan-Out Parallelism:");
+        fanOutParallelismLabel.setPreferredSize(labelDimension);
+        settingsPanel.add(fanOutParallelismLabel, gbc);
+        gbc.gridx = 1;
+        gbc.anchor = GridBagConstraints.LINE_START;
+        fanOutParallelismField.setPreferredSize(fieldDimension);
+        settingsPanel.add(fanOutParallelismField, gbc);
+
         mainPanel.add(connectionPanel, BorderLayout.NORTH);
 
         JPanel centerPanel = new JPanel(new BorderLayout());
@@ -248,14 +469,19 @@ public class ModbusWriteSamplerGui extends AbstractSamplerGui {
 
         // Initial toggle for lengthField
         toggleLengthField();
+        toggleReadFields();
     }
 
     private void initDataTypeToWriteMethodsMap() {
         dataTypeToWriteMethods = new HashMap<>();
-        dataTypeToWriteMethods.put("Integer", new String[]{"Single Register", "Multiple Registers"});
-        dataTypeToWriteMethods.put("Hexadecimal", new String[]{"Single Register", "Multiple Registers"});
-        dataTypeToWriteMethods.put("Float", new String[]{"Multiple Registers"});
-        dataTypeToWriteMethods.put("String", new String[]{"Multiple Registers"});
+        dataTypeToWriteMethods.put("Integer", new String[]{"Single Register", "Multiple Registers", "Read/Write Multiple Registers", "Mask Write Register"});
+        dataTypeToWriteMethods.put("Hexadecimal", new String[]{"Single Register", "Multiple Registers", "Read/Write Multiple Registers", "Mask Write Register"});
+        dataTypeToWriteMethods.put("Float", new String[]{"Multiple Registers", "Read/Write Multiple Registers"});
+        dataTypeToWriteMethods.put("Int32", new String[]{"Multiple Registers", "Read/Write Multiple Registers"});
+        dataTypeToWriteMethods.put("UInt32", new String[]{"Multiple Registers", "Read/Write Multiple Registers"});
+        dataTypeToWriteMethods.put("Int64", new String[]{"Multiple Registers", "Read/Write Multiple Registers"});
+        dataTypeToWriteMethods.put("Float64", new String[]{"Multiple Registers", "Read/Write Multiple Registers"});
+        dataTypeToWriteMethods.put("String", new String[]{"Multiple Registers", "Read/Write Multiple Registers"});
         dataTypeToWriteMethods.put("Boolean", new String[]{"Single Coil", "Multiple Coils"});
     }
 
@@ -275,12 +501,29 @@ public class ModbusWriteSamplerGui extends AbstractSamplerGui {
     }
 
     private void toggleConnectionFields() {
-        boolean useExisting = useExistingConnectionCheckbox.isSelected();
+        boolean pipelined = ModbusWriteSampler.CLIENT_MODE_PIPELINED.equals(clientModeDropdown.getSelectedItem());
+        boolean customClient = pipelined || ModbusWriteSampler.CLIENT_MODE_NIO.equals(clientModeDropdown.getSelectedItem());
+        useExistingConnectionCheckbox.setEnabled(!customClient);
+        boolean useExisting = !customClient && useExistingConnectionCheckbox.isSelected();
         ipAddressField.setEnabled(!useExisting);
         portField.setEnabled(!useExisting);
         keepAliveField.setEnabled(!useExisting);
         retryCountField.setEnabled(!useExisting);
+        retryPolicyDropdown.setEnabled(!useExisting);
+        retryDelayField.setEnabled(!useExisting);
+        retryMaxDelayField.setEnabled(!useExisting);
         timeoutField.setEnabled(!useExisting);
+        usePooledConnectionCheckbox.setEnabled(!useExisting && !customClient);
+        boolean usePooled = !useExisting && !customClient && usePooledConnectionCheckbox.isSelected();
+        poolMinSizeField.setEnabled(usePooled);
+        poolMaxSizeField.setEnabled(usePooled);
+        // RTU frames carry no transaction identifier, so only blocking connections can use them
+        transportDropdown.setEnabled(!useExisting && !customClient);
+        retransmitTimeoutField.setEnabled(!useExisting && !customClient && ModbusTransports.isUdp((String) transportDropdown.getSelectedItem()));
+        // Only clients that match responses by transaction ID can keep several units in flight
+        fanOutParallelismField.setEnabled(customClient || ModbusTransports.isUdp((String) transportDropdown.getSelectedItem()));
+        pipelineDepthField.setEnabled(pipelined);
+        warmUpTransactionsField.setEnabled(preConnectCheckbox.isSelected());
     }
 
     private void toggleLengthField() {
@@ -288,25 +531,49 @@ public class ModbusWriteSamplerGui extends AbstractSamplerGui {
         lengthField.setEnabled(resetOldValues);
     }
 
+    private void toggleReadFields() {
+        boolean readWrite = "Read/Write Multiple Registers".equals(writeMethodDropdown.getSelectedItem());
+        readAddressField.setEnabled(readWrite);
+        readLengthField.setEnabled(readWrite);
+    }
+
     @Override
     public void configure(TestElement element) {
         super.configure(element);
         ModbusWriteSampler sampler = (ModbusWriteSampler) element;
         useExistingConnectionCheckbox.setSelected(sampler.getUseExistingConnection());
+        usePooledConnectionCheckbox.setSelected(sampler.getUsePooledConnection());
+        poolMinSizeField.setText(sampler.getPoolMinSize());
+        poolMaxSizeField.setText(sampler.getPoolMaxSize());
+        clientModeDropdown.setSelectedItem(sampler.getClientMode());
+        transportDropdown.setSelectedItem(sampler.getTransport());
+        retransmitTimeoutField.setText(sampler.getRetransmitTimeout());
+        pipelineDepthField.setText(sampler.getPipelineDepth());
+        preConnectCheckbox.setSelected(sampler.getPreConnect());
+        warmUpTransactionsField.setText(sampler.getWarmUpTransactions());
         ipAddressField.setText(sampler.getIpAddress());
         portField.setText(sampler.getPort());
         addressField.setText(sampler.getAddress());
         valueField.setText(sampler.getValue());
         lengthField.setText(sampler.getLength());
+        readAddressField.setText(sampler.getReadAddress());
+        readLengthField.setText(sampler.getReadLength());
+        unitIdField.setText(sampler.getUnitId());
+        fanOutParallelismField.setText(sampler.getFanOutParallelism());
         dataTypeDropdown.setSelectedItem(sampler.getDataType());
         // Update writeMethodDropdown after setting dataTypeDropdown
         updateWriteMethodDropdown();
         writeMethodDropdown.setSelectedItem(sampler.getWriteMethod());
+        wordOrderDropdown.setSelectedItem(sampler.getWordOrder());
         keepAliveField.setText(sampler.getKeepAlive());
         retryCountField.setText(sampler.getRetryCount());
+        retryPolicyDropdown.setSelectedItem(sampler.getRetryPolicy());
+        retryDelayField.setText(sampler.getRetryDelay());
+        retryMaxDelayField.setText(sampler.getRetryMaxDelay());
         timeoutField.setText(sampler.getTimeout());
         resetOldValuesCheckbox.setSelected(sampler.getResetOldValues());
         toggleLengthField();
+        toggleReadFields();
         toggleConnectionFields();
     }
 
@@ -322,15 +589,32 @@ public class ModbusWriteSamplerGui extends AbstractSamplerGui {
         super.configureTestElement(element);
         ModbusWriteSampler sampler = (ModbusWriteSampler) element;
         sampler.setUseExistingConnection(useExistingConnectionCheckbox.isSelected());
+        sampler.setUsePooledConnection(usePooledConnectionCheckbox.isSelected());
+        sampler.setPoolMinSize(poolMinSizeField.getText());
+        sampler.setPoolMaxSize(poolMaxSizeField.getText());
+        sampler.setClientMode(clientModeDropdown.getSelectedItem() != null ? clientModeDropdown.getSelectedItem().toString() : "");
+        sampler.setTransport(transportDropdown.getSelectedItem() != null ? transportDropdown.getSelectedItem().toString() : ModbusTransports.TRANSPORT_TCP);
+        sampler.setRetransmitTimeout(retransmitTimeoutField.getText());
+        sampler.setPipelineDepth(pipelineDepthField.getText());
+        sampler.setPreConnect(preConnectCheckbox.isSelected());
+        sampler.setWarmUpTransactions(warmUpTransactionsField.getText());
         sampler.setIpAddress(ipAddressField.getText());
         sampler.setPort(portField.getText());
         sampler.setAddress(addressField.getText());
         sampler.setValue(valueField.getText());
         sampler.setLength(lengthField.getText());
+        sampler.setReadAddress(readAddressField.getText());
+        sampler.setReadLength(readLengthField.getText());
+        sampler.setUnitId(unitIdField.getText());
+        sampler.setFanOutParallelism(fanOutParallelismField.getText());
         sampler.setWriteMethod(writeMethodDropdown.getSelectedItem() != null ? writeMethodDropdown.getSelectedItem().toString() : "");
         sampler.setDataType(dataTypeDropdown.getSelectedItem() != null ? dataTypeDropdown.getSelectedItem().toString() : "");
+        sampler.setWordOrder(wordOrderDropdown.getSelectedItem() != null ? wordOrderDropdown.getSelectedItem().toString() : "");
         sampler.setKeepAlive(keepAliveField.getText());
         sampler.setRetryCount(retryCountField.getText());
+        sampler.setRetryPolicy(retryPolicyDropdown.getSelectedItem() != null ? retryPolicyDropdown.getSelectedItem().toString() : "");
+        sampler.setRetryDelay(retryDelayField.getText());
+        sampler.setRetryMaxDelay(retryMaxDelayField.getText());
         sampler.setTimeout(timeoutField.getText());
         sampler.setResetOldValues(resetOldValuesCheckbox.isSelected());
     }
@@ -339,18 +623,36 @@ public class ModbusWriteSamplerGui extends AbstractSamplerGui {
     public void clearGui() {
         super.clearGui();
         useExistingConnectionCheckbox.setSelected(false);
+        usePooledConnectionCheckbox.setSelected(false);
+        poolMinSizeField.setText("0");
+        poolMaxSizeField.setText("10");
+        clientModeDropdown.setSelectedIndex(0);
+        transportDropdown.setSelectedIndex(0);
+        pipelineDepthField.setText("8");
+        preConnectCheckbox.setSelected(false);
+        warmUpTransactionsField.setText("0");
         ipAddressField.setText("");
         portField.setText("");
         addressField.setText("");
         valueField.setText("");
         lengthField.setText("");
+        readAddressField.setText("");
+        readLengthField.setText("");
+        unitIdField.setText("1");
+        fanOutParallelismField.setText("8");
         writeMethodDropdown.setSelectedIndex(0);
         dataTypeDropdown.setSelectedIndex(0);
+        wordOrderDropdown.setSelectedIndex(0);
         keepAliveField.setText("");
         retryCountField.setText("");
+        retryPolicyDropdown.setSelectedIndex(0);
+        retryDelayField.setText("100");
+        retryMaxDelayField.setText("2000");
+        retransmitTimeoutField.setText("0");
         timeoutField.setText("");
         resetOldValuesCheckbox.setSelected(false);
         toggleLengthField();
+        toggleReadFields();
         toggleConnectionFields();
     }
 
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+
+package com.example.jmeter.modbus;
+
+import com.ghgande.j2mod.modbus.net.TCPMasterConnection;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Borrows from pools while they pre-fill, against a stand-in server that accepts and holds every socket.
+ */
+class ModbusConnectionPoolTest {
+    private static final int POOL_SIZE = 4;
+    private static final int BORROWERS = 16;
+
+    private ServerSocket server;
+    private final List<Socket> accepted = new CopyOnWriteArrayList<>();
+    private ExecutorService borrowers;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = new ServerSocket(0, 100, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(() -> {
+            while (!server.isClosed()) {
+                try {
+                    accepted.add(server.accept());
+                } catch (IOException ex) {
+                    return;
+                }
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+        borrowers = Executors.newFixedThreadPool(BORROWERS);
+    }
+
+    @AfterEach
+    void stopServer() throws Exception {
+        ModbusConnectionPool.closeAll();
+        borrowers.shutdownNow();
+        server.close();
+        for (Socket socket : accepted) {
+            socket.close();
+        }
+    }
+
+    @Test
+    void neverOpensMoreThanMaxSizeWhileFilling() throws Exception {
+        // Every round creates a new pool, keyed by its own transport name, so fill and borrowers race from the start
+        for (int round = 0; round < 20; round++) {
+            String transport = "fill-test-" + round;
+            CountDownLatch start = new CountDownLatch(1);
+            AtomicInteger highest = new AtomicInteger();
+            List<Future<?>> results = new ArrayList<>();
+            for (int i = 0; i < BORROWERS; i++) {
+                results.add(borrowers.submit(() -> {
+                    start.await();
+                    ModbusConnectionPool pool = pool(transport);
+                    for (int n = 0; n < 5; n++) {
+                        TCPMasterConnection connection = pool.borrow(5000);
+                        highest.accumulateAndGet(pool.getOpenCount(), Math::max);
+                        pool.release(connection);
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> result : results) {
+                result.get(30, TimeUnit.SECONDS);
+            }
+            ModbusConnectionPool pool = pool(transport);
+            assertTrue(highest.get() <= POOL_SIZE, "open connections peaked at " + highest.get());
+            assertTrue(pool.getOpenCount() <= POOL_SIZE, "open connections: " + pool.getOpenCount());
+        }
+    }
+
+    @Test
+    void fillsToMinSize() throws Exception {
+        ModbusConnectionPool pool = pool("fill-only");
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (pool.getIdleCount() < POOL_SIZE && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(POOL_SIZE, pool.getIdleCount());
+        assertEquals(POOL_SIZE, pool.getOpenCount());
+    }
+
+    private ModbusConnectionPool pool(String transport) {
+        return ModbusConnectionPool.getPool("127.0.0.1", server.getLocalPort(), 2000, transport, POOL_SIZE, POOL_SIZE, 0);
+    }
+}
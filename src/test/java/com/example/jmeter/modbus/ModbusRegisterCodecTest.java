@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+
+package com.example.jmeter.modbus;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Round-trips every data type through every word order, and checks the register layouts against fixed values.
+ */
+class ModbusRegisterCodecTest {
+    private static final int[] INTS = {0, 1, -1, 0x11223344, Integer.MIN_VALUE, Integer.MAX_VALUE, 0x8000, 0xFFFF0000};
+    private static final long[] LONGS = {0L, 1L, -1L, 0x1122334455667788L, Long.MIN_VALUE, Long.MAX_VALUE, 0xFFFFFFFFL};
+    private static final float[] FLOATS = {0f, -0f, 1.5f, -273.15f, Float.MIN_VALUE, Float.MAX_VALUE,
+            Float.NEGATIVE_INFINITY, Float.NaN};
+    private static final double[] DOUBLES = {0d, -0d, 1.5d, -273.15d, Double.MIN_VALUE, Double.MAX_VALUE,
+            Double.POSITIVE_INFINITY, Double.NaN};
+
+    @Test
+    void int32RoundTripsInEveryOrder() {
+        for (ModbusWordOrder order : ModbusWordOrder.values()) {
+            int[] words = ModbusRegisterCodec.encodeInt32(INTS, order);
+            assertEquals(INTS.length * 2, words.length);
+            assertRegisters(words);
+            assertArrayEquals(INTS, ModbusRegisterCodec.decodeInt32(words, order), order.name());
+        }
+    }
+
+    @Test
+    void uint32RoundTripsInEveryOrder() {
+        for (ModbusWordOrder order : ModbusWordOrder.values()) {
+            long[] values = ModbusRegisterCodec.decodeUInt32(ModbusRegisterCodec.encodeInt32(INTS, order), order);
+            for (int i = 0; i < INTS.length; i++) {
+                assertEquals(INTS[i] & 0xFFFFFFFFL, values[i], order.name());
+            }
+        }
+    }
+
+    @Test
+    void int64RoundTripsInEveryOrder() {
+        for (ModbusWordOrder order : ModbusWordOrder.values()) {
+            int[] words = ModbusRegisterCodec.encodeInt64(LONGS, order);
+            assertEquals(LONGS.length * 4, words.length);
+            assertRegisters(words);
+            assertArrayEquals(LONGS, ModbusRegisterCodec.decodeInt64(words, order), order.name());
+        }
+    }
+
+    @Test
+    void float32RoundTripsInEveryOrder() {
+        for (ModbusWordOrder order : ModbusWordOrder.values()) {
+            int[] words = ModbusRegisterCodec.encodeFloat32(FLOATS, order);
+            assertRegisters(words);
+            float[] values = ModbusRegisterCodec.decodeFloat32(words, order);
+            for (int i = 0; i < FLOATS.length; i++) {
+                // Compare bit patterns, so -0 and NaN are checked exactly
+                assertEquals(Float.floatToIntBits(FLOATS[i]), Float.floatToIntBits(values[i]), order.name());
+            }
+        }
+    }
+
+    @Test
+    void float64RoundTripsInEveryOrder() {
+        for (ModbusWordOrder order : ModbusWordOrder.values()) {
+            int[] words = ModbusRegisterCodec.encodeFloat64(DOUBLES, order);
+            assertRegisters(words);
+            double[] values = ModbusRegisterCodec.decodeFloat64(words, order);
+            for (int i = 0; i < DOUBLES.length; i++) {
+                assertEquals(Double.doubleToLongBits(DOUBLES[i]), Double.doubleToLongBits(values[i]), order.name());
+            }
+        }
+    }
+
+    @Test
+    void thirtyTwoBitLayouts() {
+        int[] value = {0x11223344};
+        assertArrayEquals(new int[]{0x1122, 0x3344}, ModbusRegisterCodec.encodeInt32(value, ModbusWordOrder.ABCD));
+        assertArrayEquals(new int[]{0x3344, 0x1122}, ModbusRegisterCodec.encodeInt32(value, ModbusWordOrder.CDAB));
+        assertArrayEquals(new int[]{0x2211, 0x4433}, ModbusRegisterCodec.encodeInt32(value, ModbusWordOrder.BADC));
+        assertArrayEquals(new int[]{0x4433, 0x2211}, ModbusRegisterCodec.encodeInt32(value, ModbusWordOrder.DCBA));
+        // 1.0f is 0x3F800000
+        assertArrayEquals(new int[]{0x0000, 0x803F}, ModbusRegisterCodec.encodeFloat32(new float[]{1f}, ModbusWordOrder.DCBA));
+        assertEquals(1f, ModbusRegisterCodec.decodeFloat32(new int[]{0x0000, 0x3F80}, ModbusWordOrder.CDAB)[0]);
+    }
+
+    @Test
+    void sixtyFourBitLayouts() {
+        long[] value = {0x1122334455667788L};
+        assertArrayEquals(new int[]{0x1122, 0x3344, 0x5566, 0x7788}, ModbusRegisterCodec.encodeInt64(value, ModbusWordOrder.ABCD));
+        assertArrayEquals(new int[]{0x7788, 0x5566, 0x3344, 0x1122}, ModbusRegisterCodec.encodeInt64(value, ModbusWordOrder.CDAB));
+        assertArrayEquals(new int[]{0x2211, 0x4433, 0x6655, 0x8877}, ModbusRegisterCodec.encodeInt64(value, ModbusWordOrder.BADC));
+        assertArrayEquals(new int[]{0x8877, 0x6655, 0x4433, 0x2211}, ModbusRegisterCodec.encodeInt64(value, ModbusWordOrder.DCBA));
+        // 1.0d is 0x3FF0000000000000
+        assertEquals(1d, ModbusRegisterCodec.decodeFloat64(new int[]{0x0000, 0x0000, 0x0000, 0xF03F}, ModbusWordOrder.DCBA)[0]);
+    }
+
+    @Test
+    void oddRegisterCountsIgnoreTheIncompleteValue() {
+        int[] words = {0x1122, 0x3344, 0x5566, 0x7788, 0x99AA};
+        for (ModbusWordOrder order : ModbusWordOrder.values()) {
+            assertEquals(2, ModbusRegisterCodec.decodeInt32(words, order).length, order.name());
+            assertEquals(2, ModbusRegisterCodec.decodeUInt32(words, order).length, order.name());
+            assertEquals(2, ModbusRegisterCodec.decodeFloat32(words, order).length, order.name());
+            assertEquals(1, ModbusRegisterCodec.decodeInt64(words, order).length, order.name());
+            assertEquals(1, ModbusRegisterCodec.decodeFloat64(words, order).length, order.name());
+            assertEquals(0, ModbusRegisterCodec.decodeInt32(new int[]{0x1122}, order).length, order.name());
+            assertEquals(0, ModbusRegisterCodec.decodeFloat64(new int[]{0x1122, 0x3344, 0x5566}, order).length, order.name());
+        }
+        assertArrayEquals(new int[]{0x11223344, 0x55667788}, ModbusRegisterCodec.decodeInt32(words, ModbusWordOrder.ABCD));
+        // CDAB reverses all four registers of a 64-bit value; the trailing register is left over
+        assertArrayEquals(new long[]{0x5566778811223344L}, ModbusRegisterCodec.decodeInt64(
+                new int[]{0x3344, 0x1122, 0x7788, 0x5566, 0x99AA}, ModbusWordOrder.CDAB));
+    }
+
+    @Test
+    void wordsFromPayloadsAndShorts() {
+        byte[] payload = {0x7F, 0x03, (byte) 0x11, (byte) 0x22, (byte) 0xFF, (byte) 0xFE};
+        assertArrayEquals(new int[]{0x1122, 0xFFFE}, ModbusRegisterCodec.words(payload, 2, 2));
+        assertArrayEquals(new int[]{0x8000, 0xFFFF, 0x0001}, ModbusRegisterCodec.words(new short[]{Short.MIN_VALUE, -1, 1}));
+    }
+
+    @Test
+    void wordOrderNames() {
+        assertEquals(ModbusWordOrder.ABCD, ModbusWordOrder.fromName(""));
+        assertEquals(ModbusWordOrder.ABCD, ModbusWordOrder.fromName(null));
+        assertEquals(ModbusWordOrder.BADC, ModbusWordOrder.fromName("BADC"));
+        assertArrayEquals(new String[]{"ABCD", "CDAB", "BADC", "DCBA"}, ModbusWordOrder.names());
+    }
+
+    private static void assertRegisters(int[] words) {
+        for (int word : words) {
+            assertEquals(word & 0xFFFF, word, "register out of the 16-bit range");
+        }
+    }
+}
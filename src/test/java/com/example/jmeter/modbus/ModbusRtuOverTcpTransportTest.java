@@ -0,0 +1,239 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+
+package com.example.jmeter.modbus;
+
+import com.ghgande.j2mod.modbus.ModbusException;
+import com.ghgande.j2mod.modbus.ModbusIOException;
+import com.ghgande.j2mod.modbus.io.ModbusTCPTransaction;
+import com.ghgande.j2mod.modbus.msg.ExceptionResponse;
+import com.ghgande.j2mod.modbus.msg.ReadMultipleRegistersRequest;
+import com.ghgande.j2mod.modbus.msg.ReadMultipleRegistersResponse;
+import com.ghgande.j2mod.modbus.net.TCPMasterConnection;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the RTU-over-TCP transport against a stand-in gateway that answers each request with a canned RTU frame.
+ */
+class ModbusRtuOverTcpTransportTest {
+    private ServerSocket server;
+    private Socket socket;
+    private ModbusRtuOverTcpTransport transport;
+
+    @BeforeEach
+    void connect() throws IOException {
+        server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        socket = new Socket(server.getInetAddress(), server.getLocalPort());
+        socket.setSoTimeout(5000);
+        transport = new ModbusRtuOverTcpTransport();
+        transport.setSocket(socket);
+    }
+
+    @AfterEach
+    void close() throws IOException {
+        socket.close();
+        server.close();
+    }
+
+    @Test
+    void framesRequestWithUnitAndCrc() throws Exception {
+        CompletableFuture<byte[]> request = answer(frame(1, 3, 4, 0, 10, 0, 11));
+        transport.writeRequest(readRequest(1, 0, 2));
+
+        // The reference frame from the serial line specification, CRC low byte first
+        assertArrayEquals(bytes(0x01, 0x03, 0x00, 0x00, 0x00, 0x02, 0xC4, 0x0B), request.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void readsResponseWithRequestTransactionId() throws Exception {
+        answer(frame(7, 3, 4, 0, 10, 0, 11));
+        ReadMultipleRegistersRequest request = readRequest(7, 100, 2);
+        request.setTransactionID(42);
+        transport.writeRequest(request);
+
+        ReadMultipleRegistersResponse response = (ReadMultipleRegistersResponse) transport.readResponse();
+        assertEquals(7, response.getUnitID());
+        assertEquals(42, response.getTransactionID());
+        assertEquals(10, response.getRegisterValue(0));
+        assertEquals(11, response.getRegisterValue(1));
+    }
+
+    @Test
+    void readsExceptionResponse() throws Exception {
+        answer(frame(1, 0x83, 2));
+        transport.writeRequest(readRequest(1, 0, 2));
+
+        ExceptionResponse response = (ExceptionResponse) transport.readResponse();
+        assertEquals(2, response.getExceptionCode());
+    }
+
+    @Test
+    void rejectsResponseFromOtherUnit() throws Exception {
+        answer(frame(2, 3, 4, 0, 10, 0, 11));
+        transport.writeRequest(readRequest(1, 0, 2));
+
+        ModbusIOException ex = assertThrows(ModbusIOException.class, transport::readResponse);
+        assertTrue(ex.getMessage().contains("unit 2"), ex.getMessage());
+    }
+
+    @Test
+    void rejectsResponseWithOtherFunctionCode() throws Exception {
+        answer(frame(1, 4, 4, 0, 10, 0, 11));
+        transport.writeRequest(readRequest(1, 0, 2));
+
+        ModbusIOException ex = assertThrows(ModbusIOException.class, transport::readResponse);
+        assertTrue(ex.getMessage().contains("function code 4"), ex.getMessage());
+    }
+
+    @Test
+    void rejectsResponseWithBadCrc() throws Exception {
+        byte[] response = frame(1, 3, 4, 0, 10, 0, 11);
+        response[response.length - 1] ^= 0x01;
+        answer(response);
+        transport.writeRequest(readRequest(1, 0, 2));
+
+        ModbusIOException ex = assertThrows(ModbusIOException.class, transport::readResponse);
+        assertTrue(ex.getMessage().contains("CRC"), ex.getMessage());
+    }
+
+    @Test
+    void lateReplyIsNotTakenForTheNextAnswer() throws Exception {
+        Thread gateway = new Thread(() -> {
+            while (!server.isClosed()) {
+                try {
+                    Socket peer = server.accept();
+                    Thread connection = new Thread(() -> echoAddresses(peer));
+                    connection.setDaemon(true);
+                    connection.start();
+                } catch (IOException ex) {
+                    return;
+                }
+            }
+        });
+        gateway.setDaemon(true);
+        gateway.start();
+
+        TCPMasterConnection connection = ModbusTransports.newConnection("127.0.0.1", server.getLocalPort(), 300,
+                ModbusTransports.TRANSPORT_RTU_OVER_TCP);
+        connection.connect();
+        try {
+            ModbusTCPTransaction transaction = new ModbusTCPTransaction(connection);
+            transaction.setRetries(1);
+            transaction.setRequest(readRequest(1, 1, 1));
+            assertThrows(ModbusException.class, transaction::execute);
+
+            // The late reply to address 1 arrives while the next request waits for its own answer
+            for (int address = 2; address <= 3; address++) {
+                transaction.setRequest(readRequest(1, address, 1));
+                transaction.execute();
+                assertEquals(address, ((ReadMultipleRegistersResponse) transaction.getResponse()).getRegisterValue(0));
+            }
+        } finally {
+            connection.close();
+        }
+    }
+
+    /**
+     * Answers each single-register read with the register's address, for address 1 only after 500 ms.
+     */
+    private static void echoAddresses(Socket peer) {
+        try (Socket socket = peer) {
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            while (true) {
+                byte[] request = new byte[8];
+                in.readFully(request);
+                if (request[3] == 1) {
+                    Thread.sleep(500);
+                }
+                socket.getOutputStream().write(frame(request[0], 3, 2, request[2], request[3]));
+                socket.getOutputStream().flush();
+            }
+        } catch (IOException | InterruptedException ex) {
+            // The client closed the connection
+        }
+    }
+
+    /**
+     * Accepts the client, reads one 8-byte request frame, completes with it and sends the response.
+     */
+    private CompletableFuture<byte[]> answer(byte[] response) {
+        CompletableFuture<byte[]> received = new CompletableFuture<>();
+        CompletableFuture.runAsync(() -> {
+            try (Socket peer = server.accept()) {
+                byte[] request = new byte[8];
+                new DataInputStream(peer.getInputStream()).readFully(request);
+                received.complete(request);
+                peer.getOutputStream().write(response);
+                peer.getOutputStream().flush();
+                // Keep the connection open until the client closes it
+                peer.getInputStream().read();
+            } catch (IOException ex) {
+                received.completeExceptionally(ex);
+            }
+        });
+        return received;
+    }
+
+    private static ReadMultipleRegistersRequest readRequest(int unitId, int address, int count) {
+        ReadMultipleRegistersRequest request = new ReadMultipleRegistersRequest(address, count);
+        request.setUnitID(unitId);
+        return request;
+    }
+
+    /**
+     * Builds an RTU frame from unit ID, function code and data, and appends its CRC.
+     */
+    private static byte[] frame(int... values) {
+        byte[] frame = Arrays.copyOf(bytes(values), values.length + 2);
+        int crc = ModbusCrc16.compute(frame, 0, values.length);
+        frame[values.length] = (byte) crc;
+        frame[values.length + 1] = (byte) (crc >>> 8);
+        return frame;
+    }
+
+    private static byte[] bytes(int... values) {
+        byte[] bytes = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            bytes[i] = (byte) values[i];
+        }
+        return bytes;
+    }
+}
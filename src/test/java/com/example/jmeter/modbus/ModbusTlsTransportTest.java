@@ -0,0 +1,238 @@
+/*
+ * Copyright (c) 2024 Mohammed Hlayel
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * This project includes the use of third-party libraries. For more information, please refer to the NOTICE file.
+ */
+
+
+package com.example.jmeter.modbus;
+
+import com.ghgande.j2mod.modbus.io.ModbusTCPTransaction;
+import com.ghgande.j2mod.modbus.msg.ReadMultipleRegistersRequest;
+import com.ghgande.j2mod.modbus.msg.ReadMultipleRegistersResponse;
+import com.ghgande.j2mod.modbus.net.TCPMasterConnection;
+import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.util.JMeterUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLServerSocket;
+import javax.net.ssl.SSLSocket;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.KeyStore;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the Modbus/TCP Security transport against a stand-in TLS device with a throwaway self-signed certificate for
+ * 127.0.0.1. The device answers Read Holding Registers with each register's own address.
+ */
+class ModbusTlsTransportTest {
+    private static final String PASSWORD = "changeit";
+
+    @TempDir
+    static Path keys;
+
+    private static Path keyStore;
+    private static Path trustStore;
+
+    private SSLServerSocket server;
+    private Thread acceptor;
+
+    @BeforeAll
+    static void createKeys() throws Exception {
+        keyStore = keys.resolve("device.p12");
+        trustStore = keys.resolve("trust.p12");
+        Path certificate = keys.resolve("device.cer");
+        keytool("-genkeypair", "-alias", "device", "-keyalg", "RSA", "-keysize", "2048", "-validity", "1",
+                "-dname", "CN=device", "-ext", "SAN=ip:127.0.0.1", "-storetype", "PKCS12",
+                "-keystore", keyStore.toString(), "-storepass", PASSWORD, "-keypass", PASSWORD);
+        keytool("-exportcert", "-alias", "device", "-keystore", keyStore.toString(), "-storepass", PASSWORD,
+                "-file", certificate.toString());
+        keytool("-importcert", "-noprompt", "-alias", "device", "-file", certificate.toString(), "-storetype", "PKCS12",
+                "-keystore", trustStore.toString(), "-storepass", PASSWORD);
+
+        File properties = keys.resolve("jmeter.properties").toFile();
+        assertTrue(properties.createNewFile());
+        JMeterUtils.loadJMeterProperties(properties.getPath());
+    }
+
+    @BeforeEach
+    void startDevice() throws Exception {
+        JMeterUtils.setProperty("modbus.tls.trustStore", trustStore.toString());
+        JMeterUtils.setProperty("modbus.tls.trustStorePassword", PASSWORD);
+        JMeterUtils.setProperty("modbus.tls.verifyHostname", "true");
+
+        KeyStore store = KeyStore.getInstance("PKCS12");
+        try (InputStream in = Files.newInputStream(keyStore)) {
+            store.load(in, PASSWORD.toCharArray());
+        }
+        KeyManagerFactory keyManagers = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagers.init(store, PASSWORD.toCharArray());
+        SSLContext context = SSLContext.getInstance("TLS");
+        context.init(keyManagers.getKeyManagers(), null, null);
+        server = (SSLServerSocket) context.getServerSocketFactory().createServerSocket(0, 5, InetAddress.getLoopbackAddress());
+        acceptor = new Thread(() -> {
+            while (!server.isClosed()) {
+                try {
+                    SSLSocket socket = (SSLSocket) server.accept();
+                    Thread device = new Thread(() -> serve(socket));
+                    device.setDaemon(true);
+                    device.start();
+                } catch (IOException ex) {
+                    return;
+                }
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    @AfterEach
+    void stopDevice() throws Exception {
+        server.close();
+        acceptor.join(TimeUnit.SECONDS.toMillis(5));
+        ModbusTlsTransport.resetContext();
+    }
+
+    @Test
+    void handshakesAndReadsRegisters() throws Exception {
+        TCPMasterConnection connection = connect("127.0.0.1");
+        try {
+            SampleResult result = new SampleResult();
+            ModbusTransports.recordHandshake(result, connection);
+            assertTrue(result.getResponseHeaders().contains("TLS-Handshake-ms: "), result.getResponseHeaders());
+            assertTrue(result.getResponseHeaders().contains("TLS-Session-Resumed: false"), result.getResponseHeaders());
+
+            ReadMultipleRegistersResponse response = read(connection, 40, 3);
+            assertEquals(3, response.getWordCount());
+            assertEquals(40, response.getRegisterValue(0));
+            assertEquals(42, response.getRegisterValue(2));
+        } finally {
+            connection.close();
+        }
+    }
+
+    @Test
+    void resumesSessionOnReconnect() throws Exception {
+        TCPMasterConnection first = connect("127.0.0.1");
+        // Reading takes in the session ticket that TLS 1.3 servers send after the handshake
+        read(first, 0, 1);
+        first.close();
+
+        TCPMasterConnection second = connect("127.0.0.1");
+        try {
+            SampleResult result = new SampleResult();
+            ModbusTransports.recordHandshake(result, second);
+            assertTrue(result.getResponseHeaders().contains("TLS-Session-Resumed: true"), result.getResponseHeaders());
+            assertEquals(7, read(second, 7, 1).getRegisterValue(0));
+        } finally {
+            second.close();
+        }
+    }
+
+    @Test
+    void rejectsCertificateForOtherHost() {
+        // The certificate names 127.0.0.1 only
+        assertThrows(Exception.class, () -> connect("localhost").close());
+    }
+
+    @Test
+    void skipsHostNameCheckWhenDisabled() throws Exception {
+        JMeterUtils.setProperty("modbus.tls.verifyHostname", "false");
+        TCPMasterConnection connection = connect("localhost");
+        try {
+            assertEquals(5, read(connection, 5, 1).getRegisterValue(0));
+        } finally {
+            connection.close();
+        }
+    }
+
+    private TCPMasterConnection connect(String host) throws Exception {
+        TCPMasterConnection connection = ModbusTransports.newConnection(host, server.getLocalPort(), 5000, ModbusTransports.TRANSPORT_TLS);
+        connection.connect();
+        return connection;
+    }
+
+    private static ReadMultipleRegistersResponse read(TCPMasterConnection connection, int address, int count) throws Exception {
+        ModbusTCPTransaction transaction = new ModbusTCPTransaction(connection);
+        transaction.setRequest(new ReadMultipleRegistersRequest(address, count));
+        transaction.execute();
+        return (ReadMultipleRegistersResponse) transaction.getResponse();
+    }
+
+    /**
+     * Answers Read Holding Registers requests until the client closes the connection.
+     */
+    private static void serve(SSLSocket socket) {
+        try (SSLSocket device = socket) {
+            DataInputStream in = new DataInputStream(device.getInputStream());
+            OutputStream out = device.getOutputStream();
+            while (true) {
+                byte[] request = new byte[12];
+                in.readFully(request);
+                int address = (request[8] & 0xFF) << 8 | request[9] & 0xFF;
+                int count = (request[10] & 0xFF) << 8 | request[11] & 0xFF;
+                byte[] response = Arrays.copyOf(request, 9 + 2 * count);
+                response[4] = 0;
+                response[5] = (byte) (3 + 2 * count);
+                response[8] = (byte) (2 * count);
+                for (int i = 0; i < count; i++) {
+                    response[9 + 2 * i] = (byte) ((address + i) >>> 8);
+                    response[10 + 2 * i] = (byte) (address + i);
+                }
+                out.write(response);
+                out.flush();
+            }
+        } catch (EOFException ex) {
+            // The client closed the connection
+        } catch (IOException ex) {
+            // A rejected handshake ends the connection
+        }
+    }
+
+    private static void keytool(String... args) throws Exception {
+        String[] command = new String[args.length + 1];
+        command[0] = Paths.get(System.getProperty("java.home"), "bin", "keytool").toString();
+        System.arraycopy(args, 0, command, 1, args.length);
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        assertTrue(process.waitFor(60, TimeUnit.SECONDS), "keytool timed out");
+        assertEquals(0, process.exitValue(), "keytool failed");
+    }
+}